@@ -0,0 +1,120 @@
+-- SignLab1 性能升级脚本
+-- 适用于已有数据库，可重复执行
+-- 执行方式: mysql -u root -p signlab1 < database/performance_upgrade.sql
+
+USE signlab1;
+
+DELIMITER //
+
+-- 索引不存在时创建
+DROP PROCEDURE IF EXISTS add_index_if_absent //
+CREATE PROCEDURE add_index_if_absent(IN p_table VARCHAR(64), IN p_index VARCHAR(64), IN p_ddl TEXT)
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.statistics
+                   WHERE table_schema = DATABASE() AND table_name = p_table AND index_name = p_index) THEN
+        SET @ddl = p_ddl;
+        PREPARE stmt FROM @ddl;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END IF;
+END //
+
+-- 字段不存在时添加
+DROP PROCEDURE IF EXISTS add_column_if_absent //
+CREATE PROCEDURE add_column_if_absent(IN p_table VARCHAR(64), IN p_column VARCHAR(64), IN p_ddl TEXT)
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = DATABASE() AND table_name = p_table AND column_name = p_column) THEN
+        SET @ddl = p_ddl;
+        PREPARE stmt FROM @ddl;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END IF;
+END //
+
+DELIMITER ;
+
+-- ----------------------------------------------------------------
+-- 多班级课程表（旧版初始化脚本中缺失）
+-- ----------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS multi_class_courses (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT 'ID',
+    course_id VARCHAR(20) NOT NULL COMMENT '课程ID',
+    class_code VARCHAR(20) NOT NULL COMMENT '班级编号',
+    teacher_username VARCHAR(50) NOT NULL COMMENT '老师用户名',
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    is_deleted TINYINT DEFAULT 0 COMMENT '是否删除',
+    KEY idx_multi_class_course_id (course_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='多班级课程表';
+
+-- ----------------------------------------------------------------
+-- 课程签到名单：按班级取学生（覆盖索引）
+-- ----------------------------------------------------------------
+CALL add_index_if_absent('student_class_relations', 'idx_relations_class_code',
+    'CREATE INDEX idx_relations_class_code ON student_class_relations(class_code, is_deleted, student_username)');
+
+-- ----------------------------------------------------------------
+-- 老师课程列表：按老师取课程并按日期、时间段、课程ID排序（游标分页）
+-- ----------------------------------------------------------------
+CALL add_index_if_absent('courses', 'idx_courses_teacher_date',
+    'CREATE INDEX idx_courses_teacher_date ON courses(teacher_username, course_date, time_slot, course_id)');
+
+-- ----------------------------------------------------------------
+-- 课程签到统计表：统计页面按主键读取签到人数
+-- 建表后应用启动时会为已有课程自动补齐统计行
+-- ----------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS course_attendance_summary (
+    course_id VARCHAR(20) PRIMARY KEY COMMENT '课程ID',
+    roster_size INT NOT NULL DEFAULT 0 COMMENT '花名册人数',
+    attended_count INT NOT NULL DEFAULT 0 COMMENT '已签到人数',
+    cross_class_count INT NOT NULL DEFAULT 0 COMMENT '跨班签到人数',
+    manual_count INT NOT NULL DEFAULT 0 COMMENT '手动补签人数',
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='课程签到统计表';
+
+-- ----------------------------------------------------------------
+-- 学期签到汇总表：按班级+周、学生+课程名称预先汇总，供学期分析页面查询
+-- 建表后应用启动时会执行一次全量重建
+-- ----------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS class_week_attendance_rollup (
+    class_code VARCHAR(20) NOT NULL COMMENT '班级编号',
+    week_start DATE NOT NULL COMMENT '周一日期',
+    session_count INT NOT NULL DEFAULT 0 COMMENT '课次数',
+    expected_count INT NOT NULL DEFAULT 0 COMMENT '应到人次',
+    attended_count INT NOT NULL DEFAULT 0 COMMENT '实到人次（不含跨班）',
+    update_time DATETIME NOT NULL COMMENT '更新时间',
+    PRIMARY KEY (class_code, week_start)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='班级周签到汇总表';
+
+-- 学生课程签到汇总表
+CREATE TABLE IF NOT EXISTS student_course_attendance_rollup (
+    student_username VARCHAR(50) NOT NULL COMMENT '学生学号',
+    course_name VARCHAR(200) NOT NULL COMMENT '课程名称',
+    session_count INT NOT NULL DEFAULT 0 COMMENT '应到课次数',
+    attended_count INT NOT NULL DEFAULT 0 COMMENT '签到次数（含跨班补签）',
+    update_time DATETIME NOT NULL COMMENT '更新时间',
+    PRIMARY KEY (student_username, course_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='学生课程签到汇总表';
+
+-- ----------------------------------------------------------------
+-- 签到记录：写入时保存学生所在班级和是否跨班，跨班报表直接按索引查询
+-- 已有记录为空值，应用启动时在后台分批回填
+-- ----------------------------------------------------------------
+CALL add_column_if_absent('attendance_records', 'class_code',
+    'ALTER TABLE attendance_records ADD COLUMN class_code VARCHAR(20) COMMENT ''学生签到时所在班级'' AFTER ip_address');
+CALL add_column_if_absent('attendance_records', 'is_cross_class',
+    'ALTER TABLE attendance_records ADD COLUMN is_cross_class TINYINT COMMENT ''是否跨班签到：0-否，1-是'' AFTER class_code');
+CALL add_index_if_absent('attendance_records', 'idx_attendance_course_cross',
+    'CREATE INDEX idx_attendance_course_cross ON attendance_records(course_id, is_cross_class)');
+CALL add_index_if_absent('attendance_records', 'idx_attendance_class_code',
+    'CREATE INDEX idx_attendance_class_code ON attendance_records(class_code)');
+
+-- ----------------------------------------------------------------
+-- 学生最近一次签到：按学号和签到时间倒序取第一条，缓存未命中时使用
+-- ----------------------------------------------------------------
+CALL add_index_if_absent('attendance_records', 'idx_attendance_student_time',
+    'CREATE INDEX idx_attendance_student_time ON attendance_records(student_username, attendance_time)');
+
+DROP PROCEDURE IF EXISTS add_index_if_absent;
+DROP PROCEDURE IF EXISTS add_column_if_absent;
@@ -63,12 +63,57 @@ CREATE TABLE IF NOT EXISTS attendance_records (
     attendance_time DATETIME NOT NULL COMMENT '签到时间',
     attendance_status TINYINT DEFAULT 1 COMMENT '签到状态',
     ip_address VARCHAR(50) COMMENT '签到IP地址',
+    class_code VARCHAR(20) COMMENT '学生签到时所在班级',
+    is_cross_class TINYINT COMMENT '是否跨班签到：0-否，1-是',
     create_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     is_deleted TINYINT DEFAULT 0 COMMENT '是否删除',
     UNIQUE KEY uk_course_student (course_id, student_username)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='签到记录表';
 
+-- 多班级课程表（一门课程覆盖多个班级）
+CREATE TABLE IF NOT EXISTS multi_class_courses (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT 'ID',
+    course_id VARCHAR(20) NOT NULL COMMENT '课程ID',
+    class_code VARCHAR(20) NOT NULL COMMENT '班级编号',
+    teacher_username VARCHAR(50) NOT NULL COMMENT '老师用户名',
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    is_deleted TINYINT DEFAULT 0 COMMENT '是否删除',
+    KEY idx_multi_class_course_id (course_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='多班级课程表';
+
+-- 课程签到统计表（签到时增量更新，每天按签到记录对账）
+CREATE TABLE IF NOT EXISTS course_attendance_summary (
+    course_id VARCHAR(20) PRIMARY KEY COMMENT '课程ID',
+    roster_size INT NOT NULL DEFAULT 0 COMMENT '花名册人数',
+    attended_count INT NOT NULL DEFAULT 0 COMMENT '已签到人数',
+    cross_class_count INT NOT NULL DEFAULT 0 COMMENT '跨班签到人数',
+    manual_count INT NOT NULL DEFAULT 0 COMMENT '手动补签人数',
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='课程签到统计表';
+
+-- 班级周签到汇总表
+CREATE TABLE IF NOT EXISTS class_week_attendance_rollup (
+    class_code VARCHAR(20) NOT NULL COMMENT '班级编号',
+    week_start DATE NOT NULL COMMENT '周一日期',
+    session_count INT NOT NULL DEFAULT 0 COMMENT '课次数',
+    expected_count INT NOT NULL DEFAULT 0 COMMENT '应到人次',
+    attended_count INT NOT NULL DEFAULT 0 COMMENT '实到人次（不含跨班）',
+    update_time DATETIME NOT NULL COMMENT '更新时间',
+    PRIMARY KEY (class_code, week_start)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='班级周签到汇总表';
+
+-- 学生课程签到汇总表
+CREATE TABLE IF NOT EXISTS student_course_attendance_rollup (
+    student_username VARCHAR(50) NOT NULL COMMENT '学生学号',
+    course_name VARCHAR(200) NOT NULL COMMENT '课程名称',
+    session_count INT NOT NULL DEFAULT 0 COMMENT '应到课次数',
+    attended_count INT NOT NULL DEFAULT 0 COMMENT '签到次数（含跨班补签）',
+    update_time DATETIME NOT NULL COMMENT '更新时间',
+    PRIMARY KEY (student_username, course_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='学生课程签到汇总表';
+
 -- 课堂照片表
 CREATE TABLE IF NOT EXISTS class_photos (
     id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '照片ID',
@@ -136,8 +181,13 @@ CREATE INDEX idx_courses_course_id ON courses(course_id);
 CREATE INDEX idx_courses_teacher_username ON courses(teacher_username);
 CREATE INDEX idx_courses_class_code ON courses(class_code);
 CREATE INDEX idx_courses_course_date ON courses(course_date);
+CREATE INDEX idx_courses_teacher_date ON courses(teacher_username, course_date, time_slot, course_id);
 CREATE INDEX idx_attendance_course_id ON attendance_records(course_id);
 CREATE INDEX idx_attendance_student_username ON attendance_records(student_username);
+CREATE INDEX idx_attendance_course_cross ON attendance_records(course_id, is_cross_class);
+CREATE INDEX idx_attendance_class_code ON attendance_records(class_code);
+CREATE INDEX idx_attendance_student_time ON attendance_records(student_username, attendance_time);
+CREATE INDEX idx_relations_class_code ON student_class_relations(class_code, is_deleted, student_username);
 CREATE INDEX idx_photos_course_id ON class_photos(course_id);
 CREATE INDEX idx_photos_student_username ON class_photos(student_username);
 CREATE INDEX idx_documents_course_id ON student_documents(course_id);
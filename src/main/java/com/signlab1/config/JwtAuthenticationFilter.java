@@ -1,6 +1,7 @@
 package com.signlab1.config;
 
 import com.signlab1.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -14,6 +15,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Date;
 
 /**
  * JWT认证过滤器
@@ -34,11 +36,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String token = authHeader.substring(7);
             
             try {
-                // 验证token
-                String username = jwtUtil.getUsernameFromToken(token);
-                String role = jwtUtil.getRoleFromToken(token);
+                // 验证token（验签和解析只做一次）
+                Claims claims = jwtUtil.parseClaims(token);
+                String username = claims.getSubject();
+                String role = claims.get("role", String.class);
+                Date expirationDate = claims.getExpiration();
                 
-                if (username != null && role != null && !jwtUtil.isTokenExpired(token)) {
+                if (username != null && role != null && expirationDate != null && expirationDate.after(new Date())) {
                     // 创建认证对象
                     UsernamePasswordAuthenticationToken authToken = 
                         new UsernamePasswordAuthenticationToken(
@@ -1,5 +1,6 @@
 package com.signlab1.config;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -38,7 +39,10 @@ public class SecurityConfig {
                 .requestMatchers("/api/health/**").permitAll() // 健康检查接口无需认证
                 .requestMatchers("/api/student/bind-class").permitAll() // 学生绑定班级无需认证
                 .requestMatchers("/api/student/photo/**").permitAll() // 照片查看接口无需认证
-                .requestMatchers("/actuator/**").permitAll() // Spring Boot Actuator健康检查
+                .requestMatchers("/actuator/health", "/actuator/health/**").permitAll() // Spring Boot Actuator健康检查
+                .requestMatchers("/actuator/**").hasRole("ADMIN") // 运行指标包含缓存、登录耗时等内部信息，仅管理员可见
+                // SSE推送、流式导出结束时的异步分派及错误分派不经过JWT过滤器，首次请求已完成认证
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 .anyRequest().authenticated()
             )
             .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
@@ -1,10 +1,17 @@
 package com.signlab1.controller;
 
 import com.signlab1.dto.*;
+import com.signlab1.exception.TooManyRequestsException;
 import com.signlab1.service.AuthService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * 用户认证控制器
  */
@@ -20,13 +27,29 @@ public class AuthController {
      * 用户登录
      */
     @PostMapping("/login")
-    public ApiResponse<LoginResponse> login(@RequestBody LoginRequest request) {
+    public CompletableFuture<ResponseEntity<ApiResponse<LoginResponse>>> login(@RequestBody LoginRequest request) {
         try {
-            LoginResponse response = authService.login(request);
-            return ApiResponse.success(response, "登录成功");
+            // 密码校验完成前释放请求线程
+            return authService.login(request)
+                    .thenApply(response -> ResponseEntity.ok(ApiResponse.success(response, "登录成功")))
+                    .exceptionally(this::loginError);
         } catch (Exception e) {
-            return ApiResponse.error(500, e.getMessage());
+            return CompletableFuture.completedFuture(loginError(e));
+        }
+    }
+    
+    /**
+     * 登录失败响应，限流时返回HTTP 429
+     */
+    private ResponseEntity<ApiResponse<LoginResponse>> loginError(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof TooManyRequestsException) {
+            TooManyRequestsException tooManyRequests = (TooManyRequestsException) cause;
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(tooManyRequests.getRetryAfterSeconds()))
+                    .body(ApiResponse.error(tooManyRequests.getCode(), tooManyRequests.getMessage()));
         }
+        return ResponseEntity.ok(ApiResponse.error(500, cause.getMessage()));
     }
     
     /**
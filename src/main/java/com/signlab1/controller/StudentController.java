@@ -367,6 +367,31 @@ public class StudentController {
         }
     }
     
+    /**
+     * 按日期区间查询学生的课程（如一周课表）
+     */
+    @GetMapping("/courses/range")
+    public ApiResponse<List<CourseInfoDto>> getStudentCoursesBetween(@RequestParam String startDate,
+                                                                     @RequestParam String endDate) {
+        try {
+            // 从SecurityContext获取当前登录学生的学号
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication == null) {
+                return ApiResponse.error(401, "未登录，请先登录");
+            }
+            
+            String studentCode = authentication.getName();
+            if (studentCode == null || studentCode.isEmpty()) {
+                return ApiResponse.error(401, "用户信息获取失败，请重新登录");
+            }
+            
+            List<CourseInfoDto> courses = studentService.getStudentCoursesBetween(studentCode, startDate, endDate);
+            return ApiResponse.success(courses, "按日期区间查询课程成功");
+        } catch (Exception e) {
+            return ApiResponse.error(500, "按日期区间查询课程失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 获取正在进行的课程
      */
@@ -3,18 +3,27 @@ package com.signlab1.controller;
 import com.signlab1.dto.*;
 import com.signlab1.service.TeacherService;
 import com.signlab1.service.AdminImportService;
+import com.signlab1.service.AttendanceExportService;
+import com.signlab1.service.AttendanceRollupService;
+import com.signlab1.service.AttendanceStreamService;
 import com.signlab1.service.ExcelTemplateService;
+import com.signlab1.service.QrImageService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -29,6 +38,9 @@ public class TeacherController {
     private final TeacherService teacherService;
     private final AdminImportService adminImportService;
     private final ExcelTemplateService excelTemplateService;
+    private final AttendanceStreamService attendanceStreamService;
+    private final AttendanceExportService attendanceExportService;
+    private final AttendanceRollupService attendanceRollupService;
     
     /**
      * 检查当前用户是否为教师角色
@@ -121,6 +133,28 @@ public class TeacherController {
         }
     }
     
+    /**
+     * 游标分页获取老师课程（按日期顺序滚动加载）
+     */
+    @GetMapping("/courses/scroll")
+    public ApiResponse<CursorPageDto<CourseInfoDto>> getCoursesByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            // 检查教师权限
+            ApiResponse<String> permissionCheck = checkTeacherPermission();
+            if (!permissionCheck.isSuccess()) {
+                return ApiResponse.error(permissionCheck.getCode(), permissionCheck.getMessage());
+            }
+            
+            String teacherUsername = permissionCheck.getData();
+            CursorPageDto<CourseInfoDto> page = teacherService.getCoursesByCursor(teacherUsername, cursor, size);
+            return ApiResponse.success(page, "获取课程成功");
+        } catch (Exception e) {
+            return ApiResponse.error(500, "获取课程失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 根据日期获取老师课程
      */
@@ -198,6 +232,82 @@ public class TeacherController {
         }
     }
     
+    /**
+     * 获取签到二维码图片（PNG），支持ETag协商缓存
+     */
+    @GetMapping("/attendance/qr/{courseId}/image")
+    public ResponseEntity<byte[]> getAttendanceQrImage(@PathVariable String courseId,
+                                                       @RequestParam(defaultValue = "false") boolean universal,
+                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            // 检查教师权限
+            ApiResponse<String> permissionCheck = checkTeacherPermission();
+            if (!permissionCheck.isSuccess()) {
+                return ResponseEntity.status(permissionCheck.getCode()).build();
+            }
+            
+            QrImageService.RenderedQr qr = teacherService.getAttendanceQrImage(courseId, universal);
+            
+            // 同一时间窗口内图片不变，直接返回304
+            if (etagMatches(ifNoneMatch, qr.getEtag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(qr.getEtag())
+                        .cacheControl(CacheControl.noCache())
+                        .build();
+            }
+            
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .eTag(qr.getEtag())
+                    .cacheControl(CacheControl.noCache())
+                    .header("X-QR-Timestamp", String.valueOf(qr.getTimestamp()))
+                    .body(qr.getPng());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * If-None-Match 是否命中当前ETag：按逗号分隔的列表逐个比较，
+     * 使用弱比较（忽略 W/ 前缀），* 匹配任意ETag（RFC 9110 13.1.2）
+     */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String opaqueTag = stripWeakPrefix(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag) || stripWeakPrefix(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String stripWeakPrefix(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+    
+    /**
+     * 订阅课程签到实时推送（SSE）
+     * 连接建立后推送snapshot事件，之后每次签到变更推送attendance事件
+     */
+    @GetMapping(value = "/attendance/stream/{courseId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeAttendance(@PathVariable String courseId) {
+        try {
+            // 检查教师权限
+            ApiResponse<String> permissionCheck = checkTeacherPermission();
+            if (!permissionCheck.isSuccess()) {
+                return ResponseEntity.status(permissionCheck.getCode()).build();
+            }
+            
+            return ResponseEntity.ok(attendanceStreamService.subscribe(courseId));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+    
     /**
      * 配置多班级课程
      */
@@ -297,7 +407,10 @@ public class TeacherController {
      * 查看课程签到情况
      */
     @GetMapping("/attendance/course/{courseId}")
-    public ApiResponse<List<StudentAttendanceDto>> getCourseAttendance(@PathVariable String courseId) {
+    public ApiResponse<List<StudentAttendanceDto>> getCourseAttendance(
+            @PathVariable String courseId,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String sortOrder) {
         try {
             // 检查教师权限
             ApiResponse<String> permissionCheck = checkTeacherPermission();
@@ -305,13 +418,84 @@ public class TeacherController {
                 return ApiResponse.error(permissionCheck.getCode(), permissionCheck.getMessage());
             }
             
-            List<StudentAttendanceDto> attendance = teacherService.getCourseAttendance(courseId);
+            List<StudentAttendanceDto> attendance = teacherService.getCourseAttendance(courseId, sortBy, sortOrder);
             return ApiResponse.success(attendance, "获取课程签到情况成功");
         } catch (Exception e) {
             return ApiResponse.error(500, "获取课程签到情况失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 分页查看课程签到情况
+     */
+    @GetMapping("/attendance/course/{courseId}/page")
+    public ApiResponse<PageResultDto<StudentAttendanceDto>> getCourseAttendancePage(
+            @PathVariable String courseId,
+            @RequestParam(defaultValue = "1") long page,
+            @RequestParam(defaultValue = "50") long size,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String sortOrder) {
+        try {
+            // 检查教师权限
+            ApiResponse<String> permissionCheck = checkTeacherPermission();
+            if (!permissionCheck.isSuccess()) {
+                return ApiResponse.error(permissionCheck.getCode(), permissionCheck.getMessage());
+            }
+            
+            PageResultDto<StudentAttendanceDto> attendance =
+                    teacherService.getCourseAttendancePage(courseId, page, size, sortBy, sortOrder);
+            return ApiResponse.success(attendance, "获取课程签到情况成功");
+        } catch (Exception e) {
+            return ApiResponse.error(500, "获取课程签到情况失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 导出学期签到矩阵（学生 x 课次），每个班级一个工作表
+     * @param classCode 班级代码（可选，为空时导出所有班级）
+     * @param startDate 开始日期 yyyy-MM-dd（可选）
+     * @param endDate 结束日期 yyyy-MM-dd（可选）
+     */
+    @GetMapping("/attendance/export")
+    public ResponseEntity<StreamingResponseBody> exportAttendanceMatrix(
+            @RequestParam(required = false) String classCode,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate) {
+        try {
+            // 检查教师权限
+            ApiResponse<String> permissionCheck = checkTeacherPermission();
+            if (!permissionCheck.isSuccess()) {
+                return ResponseEntity.status(permissionCheck.getCode()).build();
+            }
+            
+            LocalDate start = startDate != null && !startDate.isEmpty() ? LocalDate.parse(startDate) : LocalDate.of(2000, 1, 1);
+            LocalDate end = endDate != null && !endDate.isEmpty() ? LocalDate.parse(endDate) : LocalDate.of(2099, 12, 31);
+            StreamingResponseBody body = attendanceExportService.exportAttendanceMatrix(
+                    permissionCheck.getData(), classCode, start, end);
+            
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType(
+                    "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
+            String encodedFileName = URLEncoder.encode("签到矩阵.xlsx", StandardCharsets.UTF_8);
+            headers.set("Content-Disposition", "attachment; filename=\"" + encodedFileName + "\"; filename*=UTF-8''" + encodedFileName);
+            
+            return ResponseEntity.ok()
+                    .headers(headers)
+                    .body(body);
+        } catch (Exception e) {
+            // 返回错误信息文件
+            byte[] errorBytes = ("导出签到矩阵失败: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.TEXT_PLAIN);
+            headers.set("Content-Disposition", "attachment; filename=\"error.txt\"");
+            
+            return ResponseEntity.internalServerError()
+                    .headers(headers)
+                    .body(outputStream -> outputStream.write(errorBytes));
+        }
+    }
+    
     /**
      * 修改学生签到状态
      */
@@ -331,6 +515,26 @@ public class TeacherController {
         }
     }
     
+    /**
+     * 批量修改学生签到状态
+     */
+    @PutMapping("/attendance/bulk-update")
+    public ApiResponse<BulkUpdateAttendanceResultDto> bulkUpdateAttendance(@RequestBody BulkUpdateAttendanceRequest request) {
+        try {
+            // 检查教师权限
+            ApiResponse<String> permissionCheck = checkTeacherPermission();
+            if (!permissionCheck.isSuccess()) {
+                return ApiResponse.error(permissionCheck.getCode(), permissionCheck.getMessage());
+            }
+            
+            BulkUpdateAttendanceResultDto result =
+                    teacherService.bulkUpdateAttendance(permissionCheck.getData(), request);
+            return ApiResponse.success(result, "批量修改签到状态完成");
+        } catch (Exception e) {
+            return ApiResponse.error(500, "批量修改签到状态失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 导入学生数据
      */
@@ -742,6 +946,58 @@ public class TeacherController {
         }
     }
     
+    /**
+     * 获取班级每周出勤统计（学期分析）
+     * @param classCode 班级代码
+     * @param startDate 开始日期 yyyy-MM-dd（可选）
+     * @param endDate 结束日期 yyyy-MM-dd（可选）
+     */
+    @GetMapping("/analytics/class-weekly")
+    public ApiResponse<List<ClassWeekAttendanceDto>> getClassWeeklyAttendance(
+            @RequestParam String classCode,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate) {
+        try {
+            // 检查教师权限
+            ApiResponse<String> permissionCheck = checkTeacherPermission();
+            if (!permissionCheck.isSuccess()) {
+                return ApiResponse.error(permissionCheck.getCode(), permissionCheck.getMessage());
+            }
+            
+            LocalDate start = startDate != null && !startDate.isEmpty() ? LocalDate.parse(startDate) : null;
+            LocalDate end = endDate != null && !endDate.isEmpty() ? LocalDate.parse(endDate) : null;
+            List<ClassWeekAttendanceDto> weeks = attendanceRollupService.getClassWeeklyAttendance(
+                    permissionCheck.getData(), classCode, start, end);
+            return ApiResponse.success(weeks, "获取班级周出勤统计成功");
+        } catch (Exception e) {
+            return ApiResponse.error(500, "获取班级周出勤统计失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 获取班级中出勤率低于阈值的学生（学期分析）
+     * @param classCode 班级代码
+     * @param threshold 出勤率阈值，默认0.8
+     */
+    @GetMapping("/analytics/low-attendance")
+    public ApiResponse<List<StudentCourseAttendanceDto>> getLowAttendanceStudents(
+            @RequestParam String classCode,
+            @RequestParam(defaultValue = "0.8") double threshold) {
+        try {
+            // 检查教师权限
+            ApiResponse<String> permissionCheck = checkTeacherPermission();
+            if (!permissionCheck.isSuccess()) {
+                return ApiResponse.error(permissionCheck.getCode(), permissionCheck.getMessage());
+            }
+            
+            List<StudentCourseAttendanceDto> students = attendanceRollupService.getLowAttendanceStudents(
+                    permissionCheck.getData(), classCode, threshold);
+            return ApiResponse.success(students, "获取低出勤率学生成功");
+        } catch (Exception e) {
+            return ApiResponse.error(500, "获取低出勤率学生失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 更新学生信息
      */
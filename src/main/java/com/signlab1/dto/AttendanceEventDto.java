@@ -0,0 +1,51 @@
+package com.signlab1.dto;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 签到实时推送DTO（老师端使用）
+ */
+@Data
+public class AttendanceEventDto {
+    
+    /**
+     * 课程ID
+     */
+    private String courseId;
+    
+    /**
+     * 学生学号，快照事件为null
+     */
+    private String studentCode;
+    
+    /**
+     * 学生姓名
+     */
+    private String studentName;
+    
+    /**
+     * 签到状态：0-未签到，1-已签到
+     */
+    private Integer attendanceStatus;
+    
+    /**
+     * 签到时间
+     */
+    private LocalDateTime attendanceTime;
+    
+    /**
+     * 变更来源：scan-扫码签到，manual-老师修改
+     */
+    private String source;
+    
+    /**
+     * 当前已签到人数（含跨班签到）
+     */
+    private Integer attendedCount;
+    
+    /**
+     * 花名册人数
+     */
+    private Integer rosterSize;
+}
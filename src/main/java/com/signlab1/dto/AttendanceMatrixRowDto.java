@@ -0,0 +1,36 @@
+package com.signlab1.dto;
+
+import lombok.Data;
+
+/**
+ * 签到矩阵导出的游标行：一个学生在一节课上的签到情况
+ * 同一学生的行连续返回，未签到任何课程的学生只有一行且课程ID为空
+ */
+@Data
+public class AttendanceMatrixRowDto {
+    
+    /**
+     * 学生学号
+     */
+    private String studentCode;
+    
+    /**
+     * 学生姓名
+     */
+    private String studentName;
+    
+    /**
+     * 是否为本班学生：1-本班，0-跨班签到
+     */
+    private Integer inRoster;
+    
+    /**
+     * 已签到的课程ID
+     */
+    private String courseId;
+    
+    /**
+     * 签到状态：1-已签到
+     */
+    private Integer attendanceStatus;
+}
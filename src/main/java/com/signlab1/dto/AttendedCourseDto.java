@@ -0,0 +1,67 @@
+package com.signlab1.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 已签到课程DTO
+ */
+@Data
+public class AttendedCourseDto {
+    
+    /**
+     * 课程ID
+     */
+    private String courseId;
+    
+    /**
+     * 课程名称
+     */
+    private String courseName;
+    
+    /**
+     * 授课老师姓名
+     */
+    private String teacherName;
+    
+    /**
+     * 班级名称（跨班签到时为课程所属班级）
+     */
+    private String className;
+    
+    /**
+     * 上课地点
+     */
+    private String location;
+    
+    /**
+     * 课程日期
+     */
+    private String courseDate;
+    
+    /**
+     * 上课开始时间
+     */
+    private String startTime;
+    
+    /**
+     * 上课结束时间
+     */
+    private String endTime;
+    
+    /**
+     * 签到次数
+     */
+    private Integer attendanceCount;
+    
+    /**
+     * 最近一次签到时间
+     */
+    private LocalDateTime attendanceTime;
+    
+    /**
+     * 是否为跨班签到
+     */
+    private Boolean isCrossClass;
+}
@@ -0,0 +1,78 @@
+package com.signlab1.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 学生已签到课程的聚合查询行：一门课程一行，附带课程、老师和班级信息
+ * 课程已删除时课程相关字段为空
+ */
+@Data
+public class AttendedCourseRowDto {
+    
+    /**
+     * 课程ID
+     */
+    private String courseId;
+    
+    /**
+     * 签到次数
+     */
+    private Integer attendanceCount;
+    
+    /**
+     * 最近一次签到时间
+     */
+    private LocalDateTime attendanceTime;
+    
+    /**
+     * 签到记录上的跨班标记：1-跨班，0-本班，为空表示尚未回填
+     */
+    private Integer isCrossClass;
+    
+    /**
+     * 签到记录上的学生班级代码
+     */
+    private String studentClassCode;
+    
+    /**
+     * 学生班级名称
+     */
+    private String studentClassName;
+    
+    /**
+     * 课程名称
+     */
+    private String courseName;
+    
+    /**
+     * 上课地点
+     */
+    private String location;
+    
+    /**
+     * 课程日期
+     */
+    private String courseDate;
+    
+    /**
+     * 上课时间段
+     */
+    private String timeSlot;
+    
+    /**
+     * 课程所属班级代码
+     */
+    private String courseClassCode;
+    
+    /**
+     * 课程所属班级名称
+     */
+    private String courseClassName;
+    
+    /**
+     * 授课老师姓名
+     */
+    private String teacherName;
+}
@@ -0,0 +1,37 @@
+package com.signlab1.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * 批量更新签到请求DTO
+ */
+@Data
+public class BulkUpdateAttendanceRequest {
+    
+    /**
+     * 课程ID
+     */
+    private String courseId;
+    
+    /**
+     * 学生签到状态列表
+     */
+    private List<StudentStatus> students;
+    
+    /**
+     * 单个学生的签到状态
+     */
+    @Data
+    public static class StudentStatus {
+        /**
+         * 学生学号
+         */
+        private String studentCode;
+        
+        /**
+         * 签到状态：0-未签到，1-已签到
+         */
+        private Integer status;
+    }
+}
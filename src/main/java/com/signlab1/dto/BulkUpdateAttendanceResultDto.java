@@ -0,0 +1,62 @@
+package com.signlab1.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * 批量更新签到结果DTO
+ */
+@Data
+public class BulkUpdateAttendanceResultDto {
+    
+    /**
+     * 课程ID
+     */
+    private String courseId;
+    
+    /**
+     * 成功条数
+     */
+    private Integer successCount;
+    
+    /**
+     * 失败条数
+     */
+    private Integer failedCount;
+    
+    /**
+     * 每个学生的处理结果，顺序与请求一致
+     */
+    private List<RowResult> results;
+    
+    /**
+     * 单个学生的处理结果
+     */
+    @Data
+    public static class RowResult {
+        /**
+         * 学生学号
+         */
+        private String studentCode;
+        
+        /**
+         * 请求的签到状态
+         */
+        private Integer status;
+        
+        /**
+         * 是否处理成功
+         */
+        private Boolean success;
+        
+        /**
+         * 签到状态是否发生变化
+         */
+        private Boolean changed;
+        
+        /**
+         * 处理说明
+         */
+        private String message;
+    }
+}
@@ -0,0 +1,40 @@
+package com.signlab1.dto;
+
+import lombok.Data;
+
+/**
+ * 班级周签到汇总：一个班级一周内所有课次的应到、实到人次
+ */
+@Data
+public class ClassWeekAttendanceDto {
+    
+    /**
+     * 班级编号
+     */
+    private String classCode;
+    
+    /**
+     * 周一日期 yyyy-MM-dd
+     */
+    private String weekStart;
+    
+    /**
+     * 课次数
+     */
+    private Integer sessionCount;
+    
+    /**
+     * 应到人次（各课次花名册人数之和）
+     */
+    private Integer expectedCount;
+    
+    /**
+     * 实到人次（不含跨班签到）
+     */
+    private Integer attendedCount;
+    
+    /**
+     * 出勤率，0~1
+     */
+    private Double attendanceRate;
+}
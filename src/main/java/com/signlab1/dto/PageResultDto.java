@@ -0,0 +1,32 @@
+package com.signlab1.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 分页结果DTO
+ */
+@Data
+public class PageResultDto<T> {
+    
+    /**
+     * 当前页数据
+     */
+    private List<T> records;
+    
+    /**
+     * 总条数
+     */
+    private Long total;
+    
+    /**
+     * 页码（从1开始）
+     */
+    private Long page;
+    
+    /**
+     * 每页条数
+     */
+    private Long size;
+}
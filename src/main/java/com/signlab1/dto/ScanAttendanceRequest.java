@@ -9,7 +9,7 @@ import lombok.Data;
 public class ScanAttendanceRequest {
     
     /**
-     * 二维码数据（Base64编码）
+     * 二维码数据（URL安全Base64编码的签名令牌）
      */
     private String qrData;
 }
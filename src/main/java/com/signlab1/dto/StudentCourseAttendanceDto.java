@@ -0,0 +1,40 @@
+package com.signlab1.dto;
+
+import lombok.Data;
+
+/**
+ * 学生课程签到汇总：一个学生在同名课程所有课次上的签到情况
+ */
+@Data
+public class StudentCourseAttendanceDto {
+    
+    /**
+     * 学生学号
+     */
+    private String studentCode;
+    
+    /**
+     * 学生姓名
+     */
+    private String studentName;
+    
+    /**
+     * 课程名称
+     */
+    private String courseName;
+    
+    /**
+     * 应到课次数（截至今天）
+     */
+    private Integer sessionCount;
+    
+    /**
+     * 签到次数（含到其他班级补签）
+     */
+    private Integer attendedCount;
+    
+    /**
+     * 出勤率，0~1，补签导致签到次数超过应到课次时按1计
+     */
+    private Double attendanceRate;
+}
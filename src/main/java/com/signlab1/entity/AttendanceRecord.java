@@ -47,6 +47,18 @@ public class AttendanceRecord {
     @TableField("ip_address")
     private String ipAddress;
     
+    /**
+     * 学生签到时所在的班级
+     */
+    @TableField("class_code")
+    private String classCode;
+    
+    /**
+     * 是否跨班签到：0-花名册内学生，1-不在课程花名册中，null-尚未回填
+     */
+    @TableField("is_cross_class")
+    private Integer isCrossClass;
+    
     /**
      * 创建时间
      */
@@ -0,0 +1,52 @@
+package com.signlab1.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * 课程签到统计表 - 每门课程一行，签到时增量更新
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@TableName("course_attendance_summary")
+public class CourseAttendanceSummary {
+    
+    /**
+     * 课程ID
+     */
+    @TableId(value = "course_id", type = IdType.INPUT)
+    private String courseId;
+    
+    /**
+     * 花名册人数（本班及多班级配置中的班级学生）
+     */
+    @TableField("roster_size")
+    private Integer rosterSize;
+    
+    /**
+     * 已签到人数（含跨班签到）
+     */
+    @TableField("attended_count")
+    private Integer attendedCount;
+    
+    /**
+     * 跨班签到人数（不在花名册中的学生）
+     */
+    @TableField("cross_class_count")
+    private Integer crossClassCount;
+    
+    /**
+     * 老师手动补签人数
+     */
+    @TableField("manual_count")
+    private Integer manualCount;
+    
+    /**
+     * 更新时间
+     */
+    @TableField("update_time")
+    private LocalDateTime updateTime;
+}
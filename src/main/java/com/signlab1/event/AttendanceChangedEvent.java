@@ -0,0 +1,40 @@
+package com.signlab1.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 签到状态变更事件
+ * 学生扫码签到或老师修改签到状态后发布
+ */
+@Getter
+@AllArgsConstructor
+public class AttendanceChangedEvent {
+
+    /**
+     * 课程ID
+     */
+    private final String courseId;
+
+    /**
+     * 学生学号
+     */
+    private final String studentCode;
+
+    /**
+     * 是否已签到
+     */
+    private final boolean attended;
+
+    /**
+     * 签到时间，取消签到时为null
+     */
+    private final LocalDateTime attendanceTime;
+
+    /**
+     * 变更来源：scan-扫码签到，manual-老师修改
+     */
+    private final String source;
+}
@@ -2,6 +2,7 @@ package com.signlab1.exception;
 
 import com.signlab1.dto.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -34,6 +35,17 @@ public class GlobalExceptionHandler {
         return ResponseEntity.ok(ApiResponse.error(e.getCode(), e.getMessage()));
     }
 
+    /**
+     * 处理限流异常
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ApiResponse<Void>> handleTooManyRequestsException(TooManyRequestsException e) {
+        log.warn("请求被限流: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(ApiResponse.error(e.getCode(), e.getMessage()));
+    }
+
     /**
      * 处理参数校验异常
      */
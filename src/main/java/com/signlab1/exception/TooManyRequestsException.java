@@ -0,0 +1,18 @@
+package com.signlab1.exception;
+
+import com.signlab1.enums.ResponseCode;
+import lombok.Getter;
+
+/**
+ * 限流异常，返回HTTP 429并附带Retry-After
+ */
+@Getter
+public class TooManyRequestsException extends BusinessException {
+    
+    private final long retryAfterSeconds;
+    
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(ResponseCode.TOO_MANY_REQUESTS.getCode(), message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -1,13 +1,193 @@
 package com.signlab1.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.signlab1.dto.AttendanceMatrixRowDto;
+import com.signlab1.dto.AttendedCourseRowDto;
 import com.signlab1.entity.AttendanceRecord;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 签到记录Mapper接口
  */
 @Mapper
 public interface AttendanceRecordMapper extends BaseMapper<AttendanceRecord> {
-}
 
+    /**
+     * 导出范围内的课程：老师在某班级、某日期区间内的课程
+     */
+    String MATRIX_COURSE_FILTER =
+            "c.teacher_username = #{teacherUsername} AND c.class_code = #{classCode} AND c.is_deleted = 0 " +
+            "AND c.course_date BETWEEN #{startDate} AND #{endDate}";
+
+    /**
+     * 学生在课程中应归属的班级：优先课程本班，其次多班级配置中的班级
+     */
+    String ROSTER_CLASS_CODE =
+            "(SELECT r.class_code FROM student_class_relations r " +
+            "WHERE r.student_username = a.student_username AND r.is_deleted = 0 " +
+            "AND (r.class_code = c.class_code OR r.class_code IN (SELECT m.class_code FROM multi_class_courses m " +
+            "WHERE m.course_id = c.course_id AND m.is_deleted = 0)) " +
+            "ORDER BY r.class_code = c.class_code DESC LIMIT 1)";
+
+    /**
+     * 批量插入签到记录，(课程, 学生) 已存在的记录（包括已逻辑删除的）保持不变
+     * @return 新插入的记录数
+     */
+    @Insert("<script>" +
+            "INSERT IGNORE INTO attendance_records " +
+            "(course_id, student_username, attendance_time, attendance_status, ip_address, class_code, is_cross_class, " +
+            "create_time, update_time, is_deleted) VALUES " +
+            "<foreach collection='records' item='r' separator=','>" +
+            "(#{r.courseId}, #{r.studentUsername}, #{r.attendanceTime}, #{r.attendanceStatus}, #{r.ipAddress}, " +
+            "#{r.classCode}, #{r.isCrossClass}, NOW(), NOW(), 0)" +
+            "</foreach>" +
+            "</script>")
+    int batchInsertIgnore(@Param("records") List<AttendanceRecord> records);
+
+    /**
+     * 将已被逻辑删除的记录恢复为本次签到，有效记录保持不变
+     * @return 1-已恢复；0-记录不存在或未被删除
+     */
+    @Update("UPDATE attendance_records SET attendance_time = #{r.attendanceTime}, " +
+            "attendance_status = #{r.attendanceStatus}, ip_address = #{r.ipAddress}, class_code = #{r.classCode}, " +
+            "is_cross_class = #{r.isCrossClass}, update_time = NOW(), is_deleted = 0 " +
+            "WHERE course_id = #{r.courseId} AND student_username = #{r.studentUsername} AND is_deleted = 1")
+    int reviveDeleted(@Param("r") AttendanceRecord record);
+
+    /**
+     * 锁定并读取课程中指定学生的签到记录（包括已逻辑删除的记录），需在事务内调用
+     */
+    @Select("<script>" +
+            "SELECT id, course_id, student_username, attendance_status, ip_address, is_cross_class, is_deleted " +
+            "FROM attendance_records WHERE course_id = #{courseId} AND student_username IN " +
+            "<foreach collection='studentUsernames' item='s' open='(' separator=',' close=')'>#{s}</foreach> " +
+            "FOR UPDATE" +
+            "</script>")
+    List<AttendanceRecord> selectForUpdate(@Param("courseId") String courseId,
+                                           @Param("studentUsernames") Collection<String> studentUsernames);
+
+    /**
+     * 老师批量设置为已签到
+     * 新记录和已被逻辑删除的记录按手动补签写入；已存在的有效记录只更新状态、时间和班级归属
+     * @param records 学生学号及其班级归属，课程ID和签到时间以参数为准
+     */
+    @Insert("<script>" +
+            "INSERT INTO attendance_records " +
+            "(course_id, student_username, attendance_time, attendance_status, ip_address, class_code, is_cross_class, " +
+            "create_time, update_time, is_deleted) VALUES " +
+            "<foreach collection='records' item='r' separator=','>" +
+            "(#{courseId}, #{r.studentUsername}, #{attendanceTime}, 1, #{ipAddress}, #{r.classCode}, #{r.isCrossClass}, " +
+            "NOW(), NOW(), 0)" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE " +
+            "ip_address = CASE WHEN is_deleted = 1 THEN VALUES(ip_address) ELSE ip_address END, " +
+            "attendance_time = VALUES(attendance_time), " +
+            "attendance_status = 1, " +
+            "class_code = VALUES(class_code), " +
+            "is_cross_class = VALUES(is_cross_class), " +
+            "update_time = NOW(), " +
+            "is_deleted = 0" +
+            "</script>")
+    int batchMarkAttended(@Param("courseId") String courseId,
+                          @Param("records") Collection<AttendanceRecord> records,
+                          @Param("attendanceTime") LocalDateTime attendanceTime,
+                          @Param("ipAddress") String ipAddress);
+
+    /**
+     * 老师批量设置为未签到（逻辑删除）
+     */
+    @Update("<script>" +
+            "UPDATE attendance_records SET is_deleted = 1, update_time = NOW() " +
+            "WHERE course_id = #{courseId} AND is_deleted = 0 AND student_username IN " +
+            "<foreach collection='studentUsernames' item='s' open='(' separator=',' close=')'>#{s}</foreach>" +
+            "</script>")
+    int batchMarkAbsent(@Param("courseId") String courseId,
+                        @Param("studentUsernames") Collection<String> studentUsernames);
+
+    /**
+     * 尚未回填班级归属的最小签到记录ID，没有时返回null
+     */
+    @Select("SELECT MIN(id) FROM attendance_records WHERE is_cross_class IS NULL")
+    Long selectMinUnclassifiedId();
+
+    /**
+     * 尚未回填班级归属的最大签到记录ID，没有时返回null
+     */
+    @Select("SELECT MAX(id) FROM attendance_records WHERE is_cross_class IS NULL")
+    Long selectMaxUnclassifiedId();
+
+    /**
+     * 按当前班级绑定关系回填一段ID内签到记录的班级归属（包括已逻辑删除的记录）
+     * 花名册内学生记为课程所属班级；跨班学生记为其绑定的第一个班级，未绑定班级时为空
+     * @return 回填的记录数
+     */
+    @Update("UPDATE attendance_records a JOIN courses c ON c.course_id = a.course_id " +
+            "SET a.class_code = COALESCE(" + ROSTER_CLASS_CODE + ", " +
+            "    (SELECT MIN(r.class_code) FROM student_class_relations r " +
+            "     WHERE r.student_username = a.student_username AND r.is_deleted = 0)), " +
+            "a.is_cross_class = CASE WHEN " + ROSTER_CLASS_CODE + " IS NULL THEN 1 ELSE 0 END, " +
+            "a.update_time = a.update_time " +
+            "WHERE a.id BETWEEN #{fromId} AND #{toId} AND a.is_cross_class IS NULL")
+    int classifyRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * 按学生顺序流式读取签到矩阵：本班学生和在导出课程中签到过的跨班学生，
+     * 每个学生的签到记录连续返回（MySQL下 fetchSize=Integer.MIN_VALUE 为逐行流式读取）
+     * 需在事务内遍历
+     */
+    @Select("SELECT s.student_username AS student_code, u.name AS student_name, s.in_roster, " +
+            "a.course_id, a.attendance_status " +
+            "FROM (" +
+            "  SELECT t.student_username, MAX(t.in_roster) AS in_roster FROM (" +
+            "    SELECT r.student_username, 1 AS in_roster FROM student_class_relations r " +
+            "    WHERE r.class_code = #{classCode} AND r.is_deleted = 0 " +
+            "    UNION ALL " +
+            "    SELECT a.student_username, 0 AS in_roster FROM attendance_records a " +
+            "    JOIN courses c ON c.course_id = a.course_id " +
+            "    WHERE " + MATRIX_COURSE_FILTER + " AND a.is_deleted = 0" +
+            "  ) t GROUP BY t.student_username" +
+            ") s " +
+            "LEFT JOIN users u ON u.username = s.student_username AND u.is_deleted = 0 " +
+            "LEFT JOIN (" +
+            "  SELECT a.student_username, a.course_id, a.attendance_status FROM attendance_records a " +
+            "  JOIN courses c ON c.course_id = a.course_id " +
+            "  WHERE " + MATRIX_COURSE_FILTER + " AND a.is_deleted = 0" +
+            ") a ON a.student_username = s.student_username " +
+            "ORDER BY s.student_username")
+    @Options(fetchSize = Integer.MIN_VALUE)
+    Cursor<AttendanceMatrixRowDto> selectAttendanceMatrix(@Param("teacherUsername") String teacherUsername,
+                                                         @Param("classCode") String classCode,
+                                                         @Param("startDate") String startDate,
+                                                         @Param("endDate") String endDate);
+
+    /**
+     * 学生已签到的课程：按课程聚合签到记录，并一次关联课程、老师、课程班级和学生班级，按最近签到时间降序
+     */
+    @Select("SELECT g.course_id, g.attendance_count, g.attendance_time, g.is_cross_class, " +
+            "g.class_code AS student_class_code, sc.class_name AS student_class_name, " +
+            "c.course_name, c.location, c.course_date, c.time_slot, " +
+            "c.class_code AS course_class_code, cc.class_name AS course_class_name, u.name AS teacher_name " +
+            "FROM (" +
+            "  SELECT course_id, COUNT(*) AS attendance_count, MAX(attendance_time) AS attendance_time, " +
+            "  MAX(is_cross_class) AS is_cross_class, MAX(class_code) AS class_code " +
+            "  FROM attendance_records " +
+            "  WHERE student_username = #{studentUsername} AND attendance_status = 1 AND is_deleted = 0 " +
+            "  GROUP BY course_id" +
+            ") g " +
+            "LEFT JOIN courses c ON c.course_id = g.course_id AND c.is_deleted = 0 " +
+            "LEFT JOIN users u ON u.username = c.teacher_username AND u.is_deleted = 0 " +
+            "LEFT JOIN classes cc ON cc.class_code = c.class_code AND cc.is_deleted = 0 " +
+            "LEFT JOIN classes sc ON sc.class_code = g.class_code AND sc.is_deleted = 0 " +
+            "ORDER BY g.attendance_time DESC, g.course_id")
+    List<AttendedCourseRowDto> selectAttendedCourses(@Param("studentUsername") String studentUsername);
+}
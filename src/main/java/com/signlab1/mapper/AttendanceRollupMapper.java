@@ -0,0 +1,171 @@
+package com.signlab1.mapper;
+
+import com.signlab1.dto.ClassWeekAttendanceDto;
+import com.signlab1.dto.StudentCourseAttendanceDto;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 学期签到汇总Mapper
+ * 班级周汇总由 course_attendance_summary 聚合得到，课程计入其上课班级（多班级课程不重复计入附加班级）；
+ * 学生课程汇总按课程名称聚合；
+ * 只统计今天以前的课次，当天的课次（可能尚未上课）在次日全量重建后计入，汇总有一天的延迟
+ */
+@Mapper
+public interface AttendanceRollupMapper {
+
+    /**
+     * 学生应到的课程：本班课程及多班级配置中包含该班级的课程
+     */
+    String STUDENT_COURSE_JOIN =
+            "JOIN courses c ON c.is_deleted = 0 AND c.course_date &lt; CURDATE() " +
+            "AND (c.class_code = r.class_code OR EXISTS (SELECT 1 FROM multi_class_courses m " +
+            "WHERE m.course_id = c.course_id AND m.class_code = r.class_code AND m.is_deleted = 0)) ";
+
+    /**
+     * 重建某班级某一周的汇总，该周没有课程时写入课次数为0的行
+     */
+    @Insert("INSERT INTO class_week_attendance_rollup " +
+            "(class_code, week_start, session_count, expected_count, attended_count, update_time) " +
+            "SELECT #{classCode}, #{weekStart}, COUNT(c.course_id), " +
+            "COALESCE(SUM(s.roster_size), 0), COALESCE(SUM(s.attended_count - s.cross_class_count), 0), NOW() " +
+            "FROM courses c LEFT JOIN course_attendance_summary s ON s.course_id = c.course_id " +
+            "WHERE c.class_code = #{classCode} AND c.is_deleted = 0 " +
+            "AND c.course_date BETWEEN #{weekStart} AND #{weekEnd} AND c.course_date < CURDATE() " +
+            "ON DUPLICATE KEY UPDATE " +
+            "session_count = VALUES(session_count), " +
+            "expected_count = VALUES(expected_count), " +
+            "attended_count = VALUES(attended_count), " +
+            "update_time = VALUES(update_time)")
+    int rebuildClassWeek(@Param("classCode") String classCode,
+                         @Param("weekStart") String weekStart,
+                         @Param("weekEnd") String weekEnd);
+
+    /**
+     * 重建指定班级所有周的汇总
+     */
+    @Insert("<script>" +
+            "INSERT INTO class_week_attendance_rollup " +
+            "(class_code, week_start, session_count, expected_count, attended_count, update_time) " +
+            "SELECT c.class_code, DATE_SUB(c.course_date, INTERVAL WEEKDAY(c.course_date) DAY) AS week_start, " +
+            "COUNT(c.course_id), COALESCE(SUM(s.roster_size), 0), " +
+            "COALESCE(SUM(s.attended_count - s.cross_class_count), 0), NOW() " +
+            "FROM courses c LEFT JOIN course_attendance_summary s ON s.course_id = c.course_id " +
+            "WHERE c.is_deleted = 0 AND c.course_date &lt; CURDATE() AND c.class_code IN " +
+            "<foreach collection='classCodes' item='classCode' open='(' separator=',' close=')'>#{classCode}</foreach> " +
+            "GROUP BY c.class_code, week_start " +
+            "ON DUPLICATE KEY UPDATE " +
+            "session_count = VALUES(session_count), " +
+            "expected_count = VALUES(expected_count), " +
+            "attended_count = VALUES(attended_count), " +
+            "update_time = VALUES(update_time)" +
+            "</script>")
+    int rebuildClasses(@Param("classCodes") Collection<String> classCodes);
+
+    /**
+     * 删除指定学生的课程汇总，重建前调用
+     */
+    @Delete("<script>" +
+            "DELETE FROM student_course_attendance_rollup WHERE student_username IN " +
+            "<foreach collection='studentUsernames' item='s' open='(' separator=',' close=')'>#{s}</foreach>" +
+            "</script>")
+    int deleteStudents(@Param("studentUsernames") Collection<String> studentUsernames);
+
+    /**
+     * 根据课程和签到记录生成指定学生的课程汇总
+     * 签到数与课次数使用同一课程范围（应到且今天以前的课程），跨班签到不计入
+     */
+    @Insert("<script>" +
+            "INSERT INTO student_course_attendance_rollup " +
+            "(student_username, course_name, session_count, attended_count, update_time) " +
+            "SELECT x.student_username, x.course_name, SUM(x.session_count), SUM(x.attended_count), NOW() FROM (" +
+            "  SELECT r.student_username, c.course_name, COUNT(DISTINCT c.course_id) AS session_count, 0 AS attended_count " +
+            "  FROM student_class_relations r " + STUDENT_COURSE_JOIN +
+            "  WHERE r.is_deleted = 0 AND r.student_username IN " +
+            "  <foreach collection='studentUsernames' item='s' open='(' separator=',' close=')'>#{s}</foreach> " +
+            "  GROUP BY r.student_username, c.course_name " +
+            "  UNION ALL " +
+            "  SELECT r.student_username, c.course_name, 0, COUNT(DISTINCT a.course_id) " +
+            "  FROM student_class_relations r " + STUDENT_COURSE_JOIN +
+            "  JOIN attendance_records a ON a.course_id = c.course_id AND a.student_username = r.student_username " +
+            "  AND a.is_deleted = 0 " +
+            "  WHERE r.is_deleted = 0 AND r.student_username IN " +
+            "  <foreach collection='studentUsernames' item='s' open='(' separator=',' close=')'>#{s}</foreach> " +
+            "  GROUP BY r.student_username, c.course_name" +
+            ") x GROUP BY x.student_username, x.course_name " +
+            "ON DUPLICATE KEY UPDATE " +
+            "session_count = VALUES(session_count), " +
+            "attended_count = VALUES(attended_count), " +
+            "update_time = VALUES(update_time)" +
+            "</script>")
+    int insertStudents(@Param("studentUsernames") Collection<String> studentUsernames);
+
+    /**
+     * 有课程的班级编号，用于全量重建
+     */
+    @Select("SELECT DISTINCT class_code FROM courses WHERE is_deleted = 0 ORDER BY class_code")
+    List<String> selectAllClassCodes();
+
+    /**
+     * 绑定了班级或有签到记录的学生，用于全量重建
+     */
+    @Select("SELECT student_username FROM student_class_relations WHERE is_deleted = 0 " +
+            "UNION " +
+            "SELECT student_username FROM attendance_records WHERE is_deleted = 0 " +
+            "ORDER BY student_username")
+    List<String> selectAllStudentUsernames();
+
+    /**
+     * 数据库当前时间，全量重建以此判断哪些汇总行已过期
+     */
+    @Select("SELECT NOW()")
+    LocalDateTime selectDatabaseTime();
+
+    /**
+     * 删除全量重建中未被更新的班级周汇总（班级或课程已删除）及没有课次的行
+     */
+    @Delete("DELETE FROM class_week_attendance_rollup WHERE update_time < #{before} OR session_count = 0")
+    int deleteStaleClassWeeks(@Param("before") LocalDateTime before);
+
+    /**
+     * 删除全量重建中未被更新的学生课程汇总
+     */
+    @Delete("DELETE FROM student_course_attendance_rollup WHERE update_time < #{before}")
+    int deleteStaleStudentCourses(@Param("before") LocalDateTime before);
+
+    /**
+     * 班级日期区间内的每周签到汇总，按周升序
+     */
+    @Select("SELECT class_code, DATE_FORMAT(week_start, '%Y-%m-%d') AS week_start, session_count, " +
+            "expected_count, attended_count, " +
+            "CASE WHEN expected_count > 0 THEN attended_count / expected_count ELSE 0 END AS attendance_rate " +
+            "FROM class_week_attendance_rollup " +
+            "WHERE class_code = #{classCode} AND session_count > 0 " +
+            "AND week_start BETWEEN #{startDate} AND #{endDate} " +
+            "ORDER BY week_start")
+    List<ClassWeekAttendanceDto> selectClassWeeks(@Param("classCode") String classCode,
+                                                  @Param("startDate") String startDate,
+                                                  @Param("endDate") String endDate);
+
+    /**
+     * 班级中出勤率低于阈值的学生课程，按出勤率升序
+     */
+    @Select("SELECT t.student_username AS student_code, u.name AS student_name, t.course_name, " +
+            "t.session_count, t.attended_count, " +
+            "LEAST(t.attended_count / t.session_count, 1) AS attendance_rate " +
+            "FROM student_course_attendance_rollup t " +
+            "JOIN student_class_relations r ON r.student_username = t.student_username " +
+            "AND r.class_code = #{classCode} AND r.is_deleted = 0 " +
+            "LEFT JOIN users u ON u.username = t.student_username AND u.is_deleted = 0 " +
+            "WHERE t.session_count > 0 AND t.attended_count < #{threshold} * t.session_count " +
+            "ORDER BY attendance_rate, t.student_username, t.course_name")
+    List<StudentCourseAttendanceDto> selectStudentsBelowRate(@Param("classCode") String classCode,
+                                                            @Param("threshold") double threshold);
+}
@@ -0,0 +1,88 @@
+package com.signlab1.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.signlab1.entity.CourseAttendanceSummary;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 课程签到统计Mapper
+ */
+@Mapper
+public interface CourseAttendanceSummaryMapper extends BaseMapper<CourseAttendanceSummary> {
+
+    /**
+     * 增量更新计数
+     * @return 影响行数，0表示统计行尚未生成
+     */
+    @Update("UPDATE course_attendance_summary SET "
+            + "attended_count = GREATEST(attended_count + #{attended}, 0), "
+            + "cross_class_count = GREATEST(cross_class_count + #{crossClass}, 0), "
+            + "manual_count = GREATEST(manual_count + #{manual}, 0), "
+            + "update_time = NOW() "
+            + "WHERE course_id = #{courseId}")
+    int addCounts(@Param("courseId") String courseId,
+                  @Param("attended") int attended,
+                  @Param("crossClass") int crossClass,
+                  @Param("manual") int manual);
+
+    /**
+     * 根据签到记录和班级绑定关系重建课程统计
+     * 手动补签以签到IP为 127.0.0.1 识别
+     */
+    @Insert("<script>"
+            + "INSERT INTO course_attendance_summary "
+            + "(course_id, roster_size, attended_count, cross_class_count, manual_count, update_time) "
+            + "SELECT c.course_id, "
+            + "  (SELECT COUNT(DISTINCT r.student_username) FROM student_class_relations r "
+            + "   WHERE r.is_deleted = 0 AND (r.class_code = c.class_code OR r.class_code IN "
+            + "     (SELECT m.class_code FROM multi_class_courses m WHERE m.course_id = c.course_id AND m.is_deleted = 0))), "
+            + "  (SELECT COUNT(*) FROM attendance_records a WHERE a.course_id = c.course_id AND a.is_deleted = 0), "
+            + "  (SELECT COUNT(*) FROM attendance_records a WHERE a.course_id = c.course_id AND a.is_deleted = 0 "
+            + "   AND NOT EXISTS (SELECT 1 FROM student_class_relations r "
+            + "     WHERE r.student_username = a.student_username AND r.is_deleted = 0 "
+            + "     AND (r.class_code = c.class_code OR r.class_code IN "
+            + "       (SELECT m.class_code FROM multi_class_courses m WHERE m.course_id = c.course_id AND m.is_deleted = 0)))), "
+            + "  (SELECT COUNT(*) FROM attendance_records a WHERE a.course_id = c.course_id AND a.is_deleted = 0 "
+            + "   AND a.ip_address = '127.0.0.1'), "
+            + "  NOW() "
+            + "FROM courses c "
+            + "WHERE c.is_deleted = 0 AND c.course_id IN "
+            + "<foreach collection='courseIds' item='courseId' open='(' separator=',' close=')'>#{courseId}</foreach> "
+            + "ON DUPLICATE KEY UPDATE "
+            + "roster_size = VALUES(roster_size), "
+            + "attended_count = VALUES(attended_count), "
+            + "cross_class_count = VALUES(cross_class_count), "
+            + "manual_count = VALUES(manual_count), "
+            + "update_time = VALUES(update_time)"
+            + "</script>")
+    int rebuildCourses(@Param("courseIds") Collection<String> courseIds);
+
+    /**
+     * 覆盖某班级的所有课程（本班课程及多班级配置）
+     */
+    @Select("SELECT course_id FROM courses WHERE class_code = #{classCode} AND is_deleted = 0 "
+            + "UNION "
+            + "SELECT course_id FROM multi_class_courses WHERE class_code = #{classCode} AND is_deleted = 0")
+    List<String> selectCourseIdsByClass(@Param("classCode") String classCode);
+
+    /**
+     * 所有课程ID（按ID排序），用于全量对账
+     */
+    @Select("SELECT course_id FROM courses WHERE is_deleted = 0 ORDER BY course_id")
+    List<String> selectAllCourseIds();
+
+    /**
+     * 尚未生成统计行的课程ID
+     */
+    @Select("SELECT c.course_id FROM courses c "
+            + "LEFT JOIN course_attendance_summary s ON s.course_id = c.course_id "
+            + "WHERE c.is_deleted = 0 AND s.course_id IS NULL")
+    List<String> selectCourseIdsWithoutSummary();
+}
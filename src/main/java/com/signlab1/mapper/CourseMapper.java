@@ -1,13 +1,52 @@
 package com.signlab1.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.signlab1.dto.CourseInfoDto;
 import com.signlab1.entity.Course;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 /**
  * 课程Mapper接口
  */
 @Mapper
 public interface CourseMapper extends BaseMapper<Course> {
-}
 
+    /**
+     * 查询老师的课程列表，一次带出班级名称和学生文档数量
+     * 按 (course_date, time_slot, course_id) 排序；传入after*参数时返回该位置之后的数据（游标分页）
+     * @param courseDate 课程日期（可选）
+     * @param limit 返回条数（可选）
+     */
+    @Select("<script>"
+            + "SELECT c.course_id, c.course_name, c.class_code, c.teacher_username, c.time_slot, c.location, c.course_date, "
+            + "COALESCE(cl.class_name, c.class_code) AS class_name, "
+            + "COALESCE(d.document_count, 0) AS document_count "
+            + "FROM courses c "
+            + "LEFT JOIN classes cl ON cl.class_code = c.class_code AND cl.is_deleted = 0 "
+            + "LEFT JOIN (SELECT sd.course_id, COUNT(*) AS document_count "
+            + "           FROM student_documents sd "
+            + "           JOIN courses tc ON tc.course_id = sd.course_id "
+            + "           WHERE tc.teacher_username = #{teacherUsername} AND tc.is_deleted = 0 AND sd.is_deleted = 0 "
+            + "           <if test='courseDate != null'>AND tc.course_date = #{courseDate} </if>"
+            + "           GROUP BY sd.course_id) d ON d.course_id = c.course_id "
+            + "WHERE c.teacher_username = #{teacherUsername} AND c.is_deleted = 0 "
+            + "<if test='courseDate != null'>AND c.course_date = #{courseDate} </if>"
+            + "<if test='afterCourseId != null'>"
+            + "AND (c.course_date &gt; #{afterDate} "
+            + "     OR (c.course_date = #{afterDate} AND (c.time_slot &gt; #{afterTimeSlot} "
+            + "         OR (c.time_slot = #{afterTimeSlot} AND c.course_id &gt; #{afterCourseId})))) "
+            + "</if>"
+            + "ORDER BY c.course_date, c.time_slot, c.course_id "
+            + "<if test='limit != null'>LIMIT #{limit}</if>"
+            + "</script>")
+    List<CourseInfoDto> selectTeacherCourses(@Param("teacherUsername") String teacherUsername,
+                                             @Param("courseDate") String courseDate,
+                                             @Param("afterDate") String afterDate,
+                                             @Param("afterTimeSlot") String afterTimeSlot,
+                                             @Param("afterCourseId") String afterCourseId,
+                                             @Param("limit") Integer limit);
+}
@@ -1,13 +1,55 @@
 package com.signlab1.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.signlab1.dto.StudentAttendanceDto;
 import com.signlab1.entity.StudentClassRelation;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 /**
  * 学生班级关联Mapper接口
  */
 @Mapper
 public interface StudentClassRelationMapper extends BaseMapper<StudentClassRelation> {
-}
 
+    /**
+     * 课程花名册及签到状态：本班和多班级配置中所有班级的学生，左连接姓名和签到记录
+     * orderBy 只能传入白名单内的排序表达式
+     */
+    String COURSE_ATTENDANCE_SQL = "<script>"
+            + "SELECT r.student_username AS student_code, "
+            + "COALESCE(u.name, '未知学生') AS student_name, "
+            + "CASE WHEN a.id IS NULL THEN 0 ELSE 1 END AS attendance_status, "
+            + "a.attendance_time AS attendance_time "
+            + "FROM (SELECT DISTINCT student_username FROM student_class_relations "
+            + "      WHERE is_deleted = 0 "
+            + "        AND (class_code = #{classCode} "
+            + "             OR class_code IN (SELECT class_code FROM multi_class_courses "
+            + "                               WHERE course_id = #{courseId} AND is_deleted = 0))) r "
+            + "LEFT JOIN users u ON u.username = r.student_username AND u.is_deleted = 0 "
+            + "LEFT JOIN attendance_records a ON a.course_id = #{courseId} "
+            + "     AND a.student_username = r.student_username AND a.is_deleted = 0 "
+            + "ORDER BY ${orderBy}"
+            + "</script>";
+
+    /**
+     * 查询课程花名册及签到状态
+     */
+    @Select(COURSE_ATTENDANCE_SQL)
+    List<StudentAttendanceDto> selectCourseAttendance(@Param("courseId") String courseId,
+                                                      @Param("classCode") String classCode,
+                                                      @Param("orderBy") String orderBy);
+
+    /**
+     * 分页查询课程花名册及签到状态
+     */
+    @Select(COURSE_ATTENDANCE_SQL)
+    IPage<StudentAttendanceDto> selectCourseAttendancePage(IPage<StudentAttendanceDto> page,
+                                                           @Param("courseId") String courseId,
+                                                           @Param("classCode") String classCode,
+                                                           @Param("orderBy") String orderBy);
+}
@@ -43,6 +43,12 @@ public class AdminImportService {
     private final StudentClassRelationMapper studentClassRelationMapper;
     private final ScheduleParserService scheduleParserService;
     private final PasswordUtil passwordUtil;
+    private final ReferenceDataCacheService referenceDataCacheService;
+    private final CourseRosterService courseRosterService;
+    private final CourseSessionIndexService courseSessionIndexService;
+    private final CourseSnapshotService courseSnapshotService;
+    private final StudentTimetableService studentTimetableService;
+    private final CourseAttendanceSummaryService courseAttendanceSummaryService;
     
     // 用于格式化单元格值，保持原始格式
     private final DataFormatter dataFormatter = new DataFormatter();
@@ -85,6 +91,7 @@ public class AdminImportService {
                     queryWrapper.eq("username", user.getUsername());
                     if (userMapper.selectOne(queryWrapper) == null) {
                         userMapper.insert(user);
+                        referenceDataCacheService.evictUser(user.getUsername());
                         successCount++;
                     } else {
                         errorCount++;
@@ -134,6 +141,7 @@ public class AdminImportService {
                     queryWrapper.eq("class_code", clazz.getClassCode());
                     if (classMapper.selectOne(queryWrapper) == null) {
                         classMapper.insert(clazz);
+                        referenceDataCacheService.evictClass(clazz.getClassCode());
                         successCount++;
                     } else {
                         errorCount++;
@@ -213,6 +221,7 @@ public class AdminImportService {
                         newClass.setIsDeleted(0);
                         
                         classMapper.insert(newClass);
+                        referenceDataCacheService.evictClass(newClass.getClassCode());
                         course.setClassCode(newClass.getClassCode());
                     }
                     
@@ -264,6 +273,7 @@ public class AdminImportService {
                         newTeacher.setIsDeleted(0);
                         
                         userMapper.insert(newTeacher);
+                        referenceDataCacheService.evictUser(newTeacher.getUsername());
                     }
                     
                     // 生成课程ID：KC + 年份后2位 + 6位自增数
@@ -275,6 +285,10 @@ public class AdminImportService {
                     course.setIsDeleted(0);
                     
                     courseMapper.insert(course);
+                    referenceDataCacheService.evictCourse(course.getCourseId());
+                    courseSessionIndexService.invalidateDate(course.getCourseDate());
+                    courseSnapshotService.invalidateDate(course.getCourseDate());
+                    studentTimetableService.invalidateByClass(course.getClassCode());
                     successCount++;
                 } catch (Exception e) {
                     errorCount++;
@@ -380,6 +394,7 @@ public class AdminImportService {
                             course.setUpdateTime(LocalDateTime.now());
                             
                             classMapper.insert(course);
+                            referenceDataCacheService.evictClass(course.getClassCode());
                             courseCount++;
                             System.out.println("创建新班级: " + courseName + ", 班级编号: " + course.getClassCode());
                         }
@@ -451,6 +466,7 @@ public class AdminImportService {
             if (!newStudents.isEmpty()) {
                 for (User student : newStudents) {
                     userMapper.insert(student);
+                    referenceDataCacheService.evictUser(student.getUsername());
                 }
             }
             
@@ -461,6 +477,16 @@ public class AdminImportService {
                 for (StudentClassRelation relation : studentCourseRelations) {
                     studentClassRelationMapper.insert(relation);
                 }
+                courseRosterService.invalidateAll();
+                // 只重建导入涉及班级的课程统计
+                Set<String> importedClassCodes = new HashSet<>();
+                for (StudentClassRelation relation : studentCourseRelations) {
+                    importedClassCodes.add(relation.getClassCode());
+                }
+                for (String classCode : importedClassCodes) {
+                    courseAttendanceSummaryService.rebuildByClass(classCode);
+                }
+                studentTimetableService.invalidateAll();
             }
             
             // 更新课程选课人数统计
@@ -471,6 +497,7 @@ public class AdminImportService {
                 
                 course.setStudentCount((int) studentCount);
                 classMapper.updateById(course);
+                referenceDataCacheService.evictClass(course.getClassCode());
             }
             
             workbook.close();
@@ -623,16 +650,22 @@ public class AdminImportService {
             // 批量插入新创建的班级
             for (Class clazz : createdClasses.values()) {
                 classMapper.insert(clazz);
+                referenceDataCacheService.evictClass(clazz.getClassCode());
             }
             
             // 批量插入新创建的教师
             for (User teacher : createdTeachers.values()) {
                 userMapper.insert(teacher);
+                referenceDataCacheService.evictUser(teacher.getUsername());
             }
             
             // 批量插入课程
             for (Course course : courses) {
                 courseMapper.insert(course);
+                referenceDataCacheService.evictCourse(course.getCourseId());
+                courseSessionIndexService.invalidateDate(course.getCourseDate());
+                courseSnapshotService.invalidateDate(course.getCourseDate());
+                studentTimetableService.invalidateByClass(course.getClassCode());
             }
             
             workbook.close();
@@ -678,6 +711,7 @@ public class AdminImportService {
                             existingClass.setStudentCount(newStudentCount);
                             existingClass.setUpdateTime(LocalDateTime.now());
                             classMapper.updateById(existingClass);
+                            referenceDataCacheService.evictClass(existingClass.getClassCode());
                             System.out.println("更新班级 " + className + " 的学生人数: " + oldCount + " -> " + newStudentCount);
                         }
                     } catch (NumberFormatException e) {
@@ -0,0 +1,175 @@
+package com.signlab1.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.signlab1.entity.AttendanceRecord;
+import com.signlab1.entity.StudentClassRelation;
+import com.signlab1.mapper.AttendanceRecordMapper;
+import com.signlab1.mapper.StudentClassRelationMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 签到记录班级归属服务
+ * 签到记录写入时保存学生所在班级和是否跨班（以课程花名册为准），跨班报表不再逐条反查班级；
+ * 升级前的历史记录在启动时按ID分段并行回填
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttendanceClassificationService {
+
+    private final CourseRosterService courseRosterService;
+    private final StudentClassRelationMapper studentClassRelationMapper;
+    private final AttendanceRecordMapper attendanceRecordMapper;
+
+    @Value("${attendance.classify.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    @Value("${attendance.classify.threads:4}")
+    private int threads;
+
+    // 每条回填SQL覆盖的ID跨度
+    @Value("${attendance.classify.batch-size:5000}")
+    private int batchSize;
+
+    private ExecutorService backfillExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        backfillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attendance-classify");
+            thread.setDaemon(true);
+            return thread;
+        });
+        backfillExecutor.execute(this::backfillQuietly);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (backfillExecutor != null) {
+            backfillExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 为同一课程的签到记录填充班级归属，已设置的字段保持不变
+     * 花名册内学生记为其在课程中的班级（优先课程本班）；否则为跨班，记为学生绑定的第一个班级
+     */
+    public void classify(String courseId, Collection<AttendanceRecord> records) {
+        CourseRosterService.CourseRoster roster = courseRosterService.getRoster(courseId);
+
+        // 1. 批量查询需要确定班级的学生的绑定关系
+        List<String> students = new ArrayList<>();
+        for (AttendanceRecord record : records) {
+            if (record.getClassCode() == null) {
+                students.add(record.getStudentUsername());
+            }
+        }
+        Map<String, String> classCodes = new HashMap<>();
+        if (!students.isEmpty()) {
+            QueryWrapper<StudentClassRelation> relationQuery = new QueryWrapper<>();
+            relationQuery.in("student_username", students).eq("is_deleted", 0).orderByAsc("class_code");
+            for (StudentClassRelation relation : studentClassRelationMapper.selectList(relationQuery)) {
+                classCodes.merge(relation.getStudentUsername(), relation.getClassCode(),
+                        (current, candidate) -> preferRosterClass(roster, current, candidate));
+            }
+        }
+
+        // 2. 填充班级和跨班标记
+        for (AttendanceRecord record : records) {
+            if (record.getClassCode() == null) {
+                record.setClassCode(classCodes.get(record.getStudentUsername()));
+            }
+            if (record.getIsCrossClass() == null) {
+                boolean inRoster = roster != null && roster.isInRoster(record.getStudentUsername());
+                record.setIsCrossClass(inRoster ? 0 : 1);
+            }
+        }
+    }
+
+    /**
+     * 按ID分段并行回填历史记录
+     * @return 回填的记录数
+     */
+    public int backfill() {
+        Long minId = attendanceRecordMapper.selectMinUnclassifiedId();
+        Long maxId = attendanceRecordMapper.selectMaxUnclassifiedId();
+        if (minId == null || maxId == null) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        List<long[]> ranges = new ArrayList<>();
+        for (long fromId = minId; fromId <= maxId; fromId += batchSize) {
+            ranges.add(new long[]{fromId, Math.min(fromId + batchSize - 1, maxId)});
+        }
+
+        // 回填时才创建线程池，结束后释放
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, ranges.size())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "attendance-classify-worker-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        int updated = 0;
+        try {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>(ranges.size());
+            for (long[] range : ranges) {
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> attendanceRecordMapper.classifyRange(range[0], range[1]), pool));
+            }
+            for (CompletableFuture<Integer> future : futures) {
+                updated += future.join();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        log.info("签到记录班级归属回填完成: records={}, elapsedMs={}",
+                updated, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return updated;
+    }
+
+    private void backfillQuietly() {
+        try {
+            backfill();
+        } catch (Exception e) {
+            log.error("签到记录班级归属回填失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 学生有多个班级时优先取课程本班，其次花名册中的班级，否则保留排序靠前的班级
+     */
+    private static String preferRosterClass(CourseRosterService.CourseRoster roster, String current, String candidate) {
+        if (roster == null) {
+            return current;
+        }
+        if (candidate.equals(roster.getCourse().getClassCode())) {
+            return candidate;
+        }
+        Set<String> rosterClassCodes = roster.getClassCodes();
+        if (!rosterClassCodes.contains(current) && rosterClassCodes.contains(candidate)) {
+            return candidate;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,258 @@
+package com.signlab1.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.signlab1.dto.AttendanceMatrixRowDto;
+import com.signlab1.entity.Class;
+import com.signlab1.entity.Course;
+import com.signlab1.mapper.AttendanceRecordMapper;
+import com.signlab1.mapper.CourseMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 学期签到矩阵导出服务
+ * 每个班级一个工作表，行是学生、列是课次；签到记录通过MyBatis游标按学生顺序读取，
+ * 使用SXSSF流式写入，内存中只保留当前学生的一行和最近的少量已写出行
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttendanceExportService {
+
+    // SXSSF内存中保留的行数，超出的行写入临时文件
+    private static final int ROW_ACCESS_WINDOW = 100;
+
+    // 学号、姓名、类型三列之后是课次列
+    private static final int FIXED_COLUMNS = 3;
+
+    private final CourseMapper courseMapper;
+    private final AttendanceRecordMapper attendanceRecordMapper;
+    private final ReferenceDataCacheService referenceDataCacheService;
+    private final ExcelTemplateService excelTemplateService;
+    private final PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void init() {
+        // 游标需要在同一个数据库连接上遍历完
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 导出老师在日期区间内的签到矩阵
+     * 课程在调用时立即查询校验，工作簿在响应输出时才生成
+     * @param classCode 班级代码（可选，为空时导出老师的所有班级）
+     */
+    public StreamingResponseBody exportAttendanceMatrix(String teacherUsername, String classCode,
+                                                        LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            throw new RuntimeException("开始日期不能晚于结束日期");
+        }
+
+        // 1. 查询范围内的课程，按班级分组
+        QueryWrapper<Course> courseQuery = new QueryWrapper<>();
+        courseQuery.eq("teacher_username", teacherUsername)
+                   .between("course_date", startDate.toString(), endDate.toString());
+        if (classCode != null && !classCode.trim().isEmpty()) {
+            courseQuery.eq("class_code", classCode);
+        }
+        courseQuery.orderByAsc("class_code", "course_date", "time_slot", "course_id");
+        List<Course> courses = courseMapper.selectList(courseQuery);
+        if (courses.isEmpty()) {
+            throw new RuntimeException("所选日期范围内没有课程");
+        }
+
+        Map<String, List<Course>> coursesByClass = new LinkedHashMap<>();
+        for (Course course : courses) {
+            coursesByClass.computeIfAbsent(course.getClassCode(), k -> new ArrayList<>()).add(course);
+        }
+
+        // 2. 输出时逐个班级写入工作表
+        return outputStream -> writeWorkbook(outputStream, teacherUsername, coursesByClass,
+                startDate.toString(), endDate.toString());
+    }
+
+    private void writeWorkbook(OutputStream outputStream, String teacherUsername,
+                               Map<String, List<Course>> coursesByClass,
+                               String startDate, String endDate) throws IOException {
+        long start = System.currentTimeMillis();
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle headerStyle = excelTemplateService.createHeaderStyle(workbook);
+            CellStyle dataStyle = excelTemplateService.createDataStyle(workbook);
+            Set<String> sheetNames = new HashSet<>();
+
+            for (Map.Entry<String, List<Course>> entry : coursesByClass.entrySet()) {
+                String classCode = entry.getKey();
+                SXSSFSheet sheet = workbook.createSheet(sheetName(classCode, sheetNames));
+                writeClassSheet(sheet, headerStyle, dataStyle, teacherUsername, classCode,
+                        entry.getValue(), startDate, endDate);
+            }
+
+            workbook.write(outputStream);
+            outputStream.flush();
+            log.info("签到矩阵导出完成: teacher={}, classes={}, elapsedMs={}",
+                    teacherUsername, coursesByClass.size(), System.currentTimeMillis() - start);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private void writeClassSheet(SXSSFSheet sheet, CellStyle headerStyle, CellStyle dataStyle,
+                                 String teacherUsername, String classCode, List<Course> courses,
+                                 String startDate, String endDate) {
+        // 1. 标题行：学号、姓名、类型、各课次、出勤次数、出勤率
+        int sessionCount = courses.size();
+        Map<String, Integer> sessionIndex = new HashMap<>();
+        Row headerRow = sheet.createRow(0);
+        headerRow.setHeightInPoints(48);
+        createCell(headerRow, 0, "学号", headerStyle);
+        createCell(headerRow, 1, "姓名", headerStyle);
+        createCell(headerRow, 2, "类型", headerStyle);
+        for (int i = 0; i < sessionCount; i++) {
+            Course course = courses.get(i);
+            sessionIndex.put(course.getCourseId(), i);
+            createCell(headerRow, FIXED_COLUMNS + i,
+                    course.getCourseDate() + "\n" + course.getTimeSlot() + "\n" + course.getCourseName(), headerStyle);
+            sheet.setColumnWidth(FIXED_COLUMNS + i, 14 * 256);
+        }
+        createCell(headerRow, FIXED_COLUMNS + sessionCount, "出勤次数", headerStyle);
+        createCell(headerRow, FIXED_COLUMNS + sessionCount + 1, "出勤率", headerStyle);
+        sheet.setColumnWidth(0, 14 * 256);
+        sheet.setColumnWidth(1, 12 * 256);
+        sheet.setColumnWidth(2, 8 * 256);
+        sheet.createFreezePane(FIXED_COLUMNS, 1);
+
+        // 2. 按学生顺序读取游标，学生变化时写出上一个学生的行
+        StudentRow current = new StudentRow(sessionCount);
+        int[] sessionTotals = new int[sessionCount];
+        int[] rowIndex = {1};
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Cursor<AttendanceMatrixRowDto> cursor = attendanceRecordMapper.selectAttendanceMatrix(
+                    teacherUsername, classCode, startDate, endDate)) {
+                for (AttendanceMatrixRowDto row : cursor) {
+                    if (!row.getStudentCode().equals(current.studentCode)) {
+                        if (current.studentCode != null) {
+                            writeStudentRow(sheet.createRow(rowIndex[0]++), current, dataStyle);
+                        }
+                        current.reset(row);
+                    }
+                    Integer index = row.getCourseId() != null ? sessionIndex.get(row.getCourseId()) : null;
+                    if (index != null && !current.attended[index]) {
+                        current.attended[index] = true;
+                        current.attendedCount++;
+                        sessionTotals[index]++;
+                    }
+                }
+                if (current.studentCode != null) {
+                    writeStudentRow(sheet.createRow(rowIndex[0]++), current, dataStyle);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // 3. 汇总行：每个课次的签到人数
+        Row totalRow = sheet.createRow(rowIndex[0]);
+        createCell(totalRow, 0, "签到人数", headerStyle);
+        createCell(totalRow, 1, "", headerStyle);
+        createCell(totalRow, 2, "", headerStyle);
+        for (int i = 0; i < sessionCount; i++) {
+            Cell cell = totalRow.createCell(FIXED_COLUMNS + i);
+            cell.setCellValue(sessionTotals[i]);
+            cell.setCellStyle(headerStyle);
+        }
+    }
+
+    private void writeStudentRow(Row row, StudentRow student, CellStyle dataStyle) {
+        int sessionCount = student.attended.length;
+        createCell(row, 0, student.studentCode, dataStyle);
+        createCell(row, 1, student.studentName != null ? student.studentName : "未知学生", dataStyle);
+        createCell(row, 2, student.inRoster ? "本班" : "跨班", dataStyle);
+        for (int i = 0; i < sessionCount; i++) {
+            // 跨班学生不属于本班课次，未签到时留空
+            String mark = student.attended[i] ? "√" : (student.inRoster ? "×" : "");
+            createCell(row, FIXED_COLUMNS + i, mark, dataStyle);
+        }
+        Cell countCell = row.createCell(FIXED_COLUMNS + sessionCount);
+        countCell.setCellValue(student.attendedCount);
+        countCell.setCellStyle(dataStyle);
+        String rate = student.inRoster && sessionCount > 0
+                ? String.format("%.1f%%", student.attendedCount * 100.0 / sessionCount)
+                : "-";
+        createCell(row, FIXED_COLUMNS + sessionCount + 1, rate, dataStyle);
+    }
+
+    private static void createCell(Row row, int column, String value, CellStyle style) {
+        Cell cell = row.createCell(column);
+        cell.setCellValue(value);
+        cell.setCellStyle(style);
+    }
+
+    /**
+     * 工作表名称使用班级名称，去掉Excel不允许的字符并保证不重复
+     */
+    private String sheetName(String classCode, Set<String> usedNames) {
+        Class clazz = referenceDataCacheService.getClassByCode(classCode);
+        String baseName = WorkbookUtil.createSafeSheetName(clazz != null ? clazz.getClassName() : classCode);
+        String name = baseName;
+        int suffix = 2;
+        while (!usedNames.add(name.toLowerCase())) {
+            String tail = "(" + suffix++ + ")";
+            name = baseName.substring(0, Math.min(baseName.length(), 31 - tail.length())) + tail;
+        }
+        return name;
+    }
+
+    /**
+     * 游标当前学生的签到情况，每个工作表复用同一个对象
+     */
+    private static class StudentRow {
+        private final boolean[] attended;
+        private String studentCode;
+        private String studentName;
+        private boolean inRoster;
+        private int attendedCount;
+
+        private StudentRow(int sessionCount) {
+            this.attended = new boolean[sessionCount];
+        }
+
+        private void reset(AttendanceMatrixRowDto row) {
+            studentCode = row.getStudentCode();
+            studentName = row.getStudentName();
+            inRoster = row.getInRoster() != null && row.getInRoster() == 1;
+            attendedCount = 0;
+            Arrays.fill(attended, false);
+        }
+    }
+}
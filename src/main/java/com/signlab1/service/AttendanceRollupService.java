@@ -0,0 +1,270 @@
+package com.signlab1.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.signlab1.dto.ClassWeekAttendanceDto;
+import com.signlab1.dto.StudentCourseAttendanceDto;
+import com.signlab1.entity.Course;
+import com.signlab1.event.AttendanceChangedEvent;
+import com.signlab1.mapper.AttendanceRollupMapper;
+import com.signlab1.mapper.CourseMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 学期签到汇总服务
+ * 维护 班级+周 和 学生+课程名称 两张汇总表，学期分析页面直接按班级读取，不再逐门课程统计；
+ * 签到变更事件只标记受影响的班级周和学生，由后台线程定期重建这些行；
+ * 每天定时全量重建一次并清理过期行，修正增量期间遗漏的变化（花名册调整、课程删除等）
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttendanceRollupService {
+
+    private final AttendanceRollupMapper attendanceRollupMapper;
+    private final CourseMapper courseMapper;
+    private final ReferenceDataCacheService referenceDataCacheService;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    // 增量重建间隔，需大于扫码签到写回延迟，保证课程统计已落库
+    @Value("${rollup.flush-seconds:60}")
+    private long flushSeconds;
+
+    // 每条重建SQL覆盖的班级数或学生数
+    @Value("${rollup.batch-size:200}")
+    private int batchSize;
+
+    // 每天全量重建的整点，-1表示不执行；班级周汇总取自课程统计，应安排在课程统计对账之后
+    @Value("${rollup.compaction-hour:4}")
+    private int compactionHour;
+
+    // 启动时全量重建一次
+    @Value("${rollup.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    // 待重建的班级周，格式为 班级编号|周一日期
+    private final Set<String> dirtyClassWeeks = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyStudents = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService scheduler;
+    private TransactionTemplate transactionTemplate;
+    private Timer flushTimer;
+    private Timer compactionTimer;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        flushTimer = Timer.builder("signlab.rollup.flush").register(meterRegistry);
+        compactionTimer = Timer.builder("signlab.rollup.compaction").register(meterRegistry);
+        Gauge.builder("signlab.rollup.dirty.class_weeks", dirtyClassWeeks, Set::size).register(meterRegistry);
+        Gauge.builder("signlab.rollup.dirty.students", dirtyStudents, Set::size).register(meterRegistry);
+
+        // 增量重建与全量重建在同一线程执行，互不交叉
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attendance-rollup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (rebuildOnStartup) {
+            scheduler.execute(this::compactQuietly);
+        }
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+        if (compactionHour >= 0) {
+            scheduler.scheduleAtFixedRate(this::compactQuietly, initialDelayMinutes(),
+                    TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 签到变更后标记课程所在的班级周和学生，等待后台重建
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAttendanceChanged(AttendanceChangedEvent event) {
+        Course course = referenceDataCacheService.getCourse(event.getCourseId());
+        if (course != null && course.getCourseDate() != null) {
+            dirtyClassWeeks.add(course.getClassCode() + "|" + weekStart(LocalDate.parse(course.getCourseDate())));
+        }
+        dirtyStudents.add(event.getStudentCode());
+    }
+
+    /**
+     * 获取班级在日期区间内的每周出勤统计
+     * @param startDate 开始日期（可选）
+     * @param endDate 结束日期（可选）
+     */
+    public List<ClassWeekAttendanceDto> getClassWeeklyAttendance(String teacherUsername, String classCode,
+                                                                 LocalDate startDate, LocalDate endDate) {
+        checkTeacherClass(teacherUsername, classCode);
+        String start = startDate != null ? weekStart(startDate).toString() : "2000-01-01";
+        String end = endDate != null ? endDate.toString() : "2099-12-31";
+        return attendanceRollupMapper.selectClassWeeks(classCode, start, end);
+    }
+
+    /**
+     * 获取班级中出勤率低于阈值的学生（按课程名称统计）
+     * @param threshold 出勤率阈值，0~1
+     */
+    public List<StudentCourseAttendanceDto> getLowAttendanceStudents(String teacherUsername, String classCode,
+                                                                     double threshold) {
+        if (threshold <= 0 || threshold > 1) {
+            throw new RuntimeException("出勤率阈值必须在0到1之间");
+        }
+        checkTeacherClass(teacherUsername, classCode);
+        return attendanceRollupMapper.selectStudentsBelowRate(classCode, threshold);
+    }
+
+    /**
+     * 重建已标记的班级周和学生
+     */
+    public void flush() {
+        if (dirtyClassWeeks.isEmpty() && dirtyStudents.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        // 1. 班级周逐个重建，失败的放回等待下次重建
+        for (String key : drain(dirtyClassWeeks)) {
+            int separator = key.lastIndexOf('|');
+            LocalDate weekStart = LocalDate.parse(key.substring(separator + 1));
+            try {
+                attendanceRollupMapper.rebuildClassWeek(key.substring(0, separator),
+                        weekStart.toString(), weekStart.plusDays(6).toString());
+            } catch (Exception e) {
+                dirtyClassWeeks.add(key);
+                log.warn("重建班级周签到汇总失败: key={}, error={}", key, e.getMessage());
+            }
+        }
+
+        // 2. 学生分批重建
+        List<String> students = drain(dirtyStudents);
+        for (int i = 0; i < students.size(); i += batchSize) {
+            List<String> chunk = students.subList(i, Math.min(i + batchSize, students.size()));
+            try {
+                rebuildStudents(chunk);
+            } catch (Exception e) {
+                dirtyStudents.addAll(chunk);
+                log.warn("重建学生课程签到汇总失败: students={}, error={}", chunk.size(), e.getMessage());
+            }
+        }
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 全量重建两张汇总表并删除未被更新的过期行
+     */
+    public void compact() {
+        long start = System.nanoTime();
+        LocalDateTime before = attendanceRollupMapper.selectDatabaseTime();
+
+        // 1. 按班级分批重建班级周汇总
+        List<String> classCodes = attendanceRollupMapper.selectAllClassCodes();
+        for (int i = 0; i < classCodes.size(); i += batchSize) {
+            attendanceRollupMapper.rebuildClasses(classCodes.subList(i, Math.min(i + batchSize, classCodes.size())));
+        }
+
+        // 2. 按学生分批重建学生课程汇总
+        List<String> students = attendanceRollupMapper.selectAllStudentUsernames();
+        for (int i = 0; i < students.size(); i += batchSize) {
+            rebuildStudents(students.subList(i, Math.min(i + batchSize, students.size())));
+        }
+
+        // 3. 清理班级、课程或学生已删除的行
+        int staleClassWeeks = attendanceRollupMapper.deleteStaleClassWeeks(before);
+        int staleStudentCourses = attendanceRollupMapper.deleteStaleStudentCourses(before);
+
+        long elapsed = System.nanoTime() - start;
+        compactionTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("学期签到汇总重建完成: classes={}, students={}, staleRows={}, elapsedMs={}",
+                classCodes.size(), students.size(), staleClassWeeks + staleStudentCourses,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private void rebuildStudents(List<String> students) {
+        // 先删后插，去掉学生已不再上的课程
+        transactionTemplate.executeWithoutResult(status -> {
+            attendanceRollupMapper.deleteStudents(students);
+            attendanceRollupMapper.insertStudents(students);
+        });
+    }
+
+    private void checkTeacherClass(String teacherUsername, String classCode) {
+        if (classCode == null || classCode.trim().isEmpty()) {
+            throw new RuntimeException("班级代码不能为空");
+        }
+        QueryWrapper<Course> query = new QueryWrapper<>();
+        query.eq("teacher_username", teacherUsername)
+             .eq("class_code", classCode);
+        if (courseMapper.selectCount(query) == 0) {
+            throw new RuntimeException("无权查看该班级的签到统计");
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("学期签到汇总增量重建失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            log.error("学期签到汇总全量重建失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private static List<String> drain(Set<String> keys) {
+        List<String> drained = new ArrayList<>(keys.size());
+        Iterator<String> iterator = keys.iterator();
+        while (iterator.hasNext()) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    private static LocalDate weekStart(LocalDate date) {
+        return date.minusDays(date.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+    }
+
+    private long initialDelayMinutes() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(compactionHour, 0);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        return Duration.between(now, next).toMinutes();
+    }
+}
@@ -0,0 +1,198 @@
+package com.signlab1.service;
+
+import com.signlab1.dto.AttendanceEventDto;
+import com.signlab1.entity.User;
+import com.signlab1.event.AttendanceChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 签到实时推送服务（SSE）
+ * 连接基于Servlet异步请求，不为每个连接占用线程；推送由单独的线程执行，不阻塞签到请求
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttendanceStreamService {
+
+    private final CourseRosterService courseRosterService;
+    private final ReferenceDataCacheService referenceDataCacheService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${attendance.stream.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${attendance.stream.heartbeat-seconds:20}")
+    private long heartbeatSeconds;
+
+    @Value("${attendance.stream.max-connections:1000}")
+    private int maxConnections;
+
+    @Value("${attendance.stream.max-connections-per-course:20}")
+    private int maxConnectionsPerCourse;
+
+    // 推送任务队列上限，超过时丢弃推送（客户端重连后会收到快照）
+    @Value("${attendance.stream.max-pending-events:10000}")
+    private int maxPendingEvents;
+
+    private final Map<String, List<SseEmitter>> emittersByCourse = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private ScheduledThreadPoolExecutor dispatcher;
+
+    @PostConstruct
+    public void init() {
+        dispatcher = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "attendance-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.setRemoveOnCancelPolicy(true);
+        dispatcher.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        Gauge.builder("signlab.attendance.stream.connections", connectionCount, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        emittersByCourse.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        emittersByCourse.clear();
+    }
+
+    /**
+     * 订阅课程签到推送，连接建立后先推送一次当前统计
+     */
+    public SseEmitter subscribe(String courseId) {
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            throw new RuntimeException("实时连接数已达上限，请稍后重试");
+        }
+
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        boolean[] accepted = {false};
+        emittersByCourse.compute(courseId, (k, emitters) -> {
+            if (emitters == null) {
+                emitters = new CopyOnWriteArrayList<>();
+            }
+            if (emitters.size() < maxConnectionsPerCourse) {
+                emitters.add(emitter);
+                accepted[0] = true;
+            }
+            return emitters;
+        });
+        if (!accepted[0]) {
+            connectionCount.decrementAndGet();
+            throw new RuntimeException("该课程的实时连接数已达上限");
+        }
+
+        Runnable cleanup = () -> removeEmitter(courseId, emitter);
+        emitter.onCompletion(cleanup);
+        emitter.onTimeout(cleanup);
+        emitter.onError(e -> cleanup.run());
+
+        AttendanceEventDto snapshot = buildEvent(courseId);
+        dispatch(() -> send(courseId, emitter, "snapshot", snapshot));
+        return emitter;
+    }
+
+    /**
+     * 签到变更后推送增量
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAttendanceChanged(AttendanceChangedEvent event) {
+        if (!emittersByCourse.containsKey(event.getCourseId())) {
+            return;
+        }
+        AttendanceEventDto dto = buildEvent(event.getCourseId());
+        dto.setStudentCode(event.getStudentCode());
+        User student = referenceDataCacheService.getUser(event.getStudentCode());
+        dto.setStudentName(student != null ? student.getName() : "未知学生");
+        dto.setAttendanceStatus(event.isAttended() ? 1 : 0);
+        dto.setAttendanceTime(event.getAttendanceTime());
+        dto.setSource(event.getSource());
+
+        dispatch(() -> broadcast(event.getCourseId(), "attendance", dto));
+    }
+
+    private AttendanceEventDto buildEvent(String courseId) {
+        AttendanceEventDto dto = new AttendanceEventDto();
+        dto.setCourseId(courseId);
+        CourseRosterService.CourseRoster roster = courseRosterService.getRoster(courseId);
+        if (roster != null) {
+            dto.setAttendedCount(roster.getAttendedCount());
+            dto.setRosterSize(roster.getRosterSize());
+        }
+        return dto;
+    }
+
+    private void broadcast(String courseId, String eventName, Object data) {
+        List<SseEmitter> emitters = emittersByCourse.get(courseId);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            send(courseId, emitter, eventName, data);
+        }
+    }
+
+    private void send(String courseId, SseEmitter emitter, String eventName, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开
+            removeEmitter(courseId, emitter);
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (Map.Entry<String, List<SseEmitter>> entry : emittersByCourse.entrySet()) {
+            for (SseEmitter emitter : entry.getValue()) {
+                try {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (IOException | IllegalStateException e) {
+                    removeEmitter(entry.getKey(), emitter);
+                }
+            }
+        }
+    }
+
+    private void dispatch(Runnable task) {
+        if (dispatcher.getQueue().size() >= maxPendingEvents) {
+            log.warn("签到推送队列已满，丢弃本次推送");
+            return;
+        }
+        try {
+            dispatcher.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("签到推送已关闭，丢弃本次推送");
+        }
+    }
+
+    private void removeEmitter(String courseId, SseEmitter emitter) {
+        emittersByCourse.computeIfPresent(courseId, (k, emitters) -> {
+            if (emitters.remove(emitter)) {
+                connectionCount.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
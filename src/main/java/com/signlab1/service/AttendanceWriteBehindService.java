@@ -0,0 +1,261 @@
+package com.signlab1.service;
+
+import com.signlab1.entity.AttendanceRecord;
+import com.signlab1.event.AttendanceChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 签到记录异步批量写入服务
+ * 扫码签到校验通过后先放入有界队列立即返回，由后台线程合并为多行INSERT写入数据库，
+ * 并在同一事务内累加课程签到统计；
+ * 逐条重试仍失败的签到会撤销花名册中的签到标记，并发布取消签到事件修正实时推送和缓存
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttendanceWriteBehindService {
+
+    private final CourseAttendanceSummaryService courseAttendanceSummaryService;
+    private final CourseRosterService courseRosterService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${attendance.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${attendance.write-behind.queue-capacity:4096}")
+    private int queueCapacity;
+
+    @Value("${attendance.write-behind.flush-size:200}")
+    private int flushSize;
+
+    @Value("${attendance.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${attendance.write-behind.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    private BlockingQueue<AttendanceRecord> queue;
+
+    // 已入队但尚未落库的签到，key为 课程ID|学号，用于重复签到判断
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+
+    // 每个学生已入队但尚未落库的签到数，与 pendingKeys 同步增减，计数为0时移除
+    private final Map<String, Integer> pendingByStudent = new ConcurrentHashMap<>();
+
+    private volatile boolean running = false;
+    private Thread flusherThread;
+
+    private Counter flushedCounter;
+    private Counter rejectedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("签到异步写入未启用，使用同步写入");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("signlab.attendance.write_behind.queue_size", queue, BlockingQueue::size)
+                .register(meterRegistry);
+        flushedCounter = Counter.builder("signlab.attendance.write_behind.flushed").register(meterRegistry);
+        rejectedCounter = Counter.builder("signlab.attendance.write_behind.rejected").register(meterRegistry);
+        failedCounter = Counter.builder("signlab.attendance.write_behind.failed").register(meterRegistry);
+
+        running = true;
+        flusherThread = new Thread(this::flushLoop, "attendance-flusher");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+        log.info("签到异步写入已启用: queueCapacity={}, flushSize={}, flushIntervalMs={}",
+                queueCapacity, flushSize, flushIntervalMs);
+    }
+
+    /**
+     * 是否启用异步写入
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 签到是否已入队但尚未落库
+     */
+    public boolean isPending(String courseId, String studentUsername) {
+        return enabled && pendingKeys.contains(key(courseId, studentUsername));
+    }
+
+    /**
+     * 学生是否有已入队但尚未落库的签到
+     */
+    public boolean hasPendingForStudent(String studentUsername) {
+        return enabled && pendingByStudent.containsKey(studentUsername);
+    }
+
+    /**
+     * 提交签到记录
+     * @return true-已入队；false-未启用或队列已满，调用方需同步写入
+     * @throws RuntimeException 同一学生同一课程的签到已在队列中
+     */
+    public boolean submit(AttendanceRecord record) {
+        if (!enabled || !running) {
+            return false;
+        }
+        String key = key(record.getCourseId(), record.getStudentUsername());
+        if (!pendingKeys.add(key)) {
+            throw new RuntimeException("您已经签到过了");
+        }
+        pendingByStudent.merge(record.getStudentUsername(), 1, Integer::sum);
+        try {
+            // 队列满时短暂等待，仍满则退回同步写入，由数据库写入速度形成背压
+            if (queue.offer(record, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        clearPending(record);
+        rejectedCounter.increment();
+        return false;
+    }
+
+    /**
+     * 后台批量写入循环
+     */
+    private void flushLoop() {
+        List<AttendanceRecord> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AttendanceRecord first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // 在一个刷新周期内尽量攒满一批
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < flushSize) {
+                    queue.drainTo(batch, flushSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= flushSize || remaining <= 0) {
+                        break;
+                    }
+                    AttendanceRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                writeBatch(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // 关闭时被中断，剩余数据由shutdown同步写入
+                writeBatch(batch);
+                batch.clear();
+                break;
+            }
+        }
+    }
+
+    /**
+     * 写入一批签到记录，批量失败时逐条重试，避免一条坏数据拖累整批
+     */
+    private void writeBatch(List<AttendanceRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            courseAttendanceSummaryService.saveScannedAttendance(batch);
+            flushedCounter.increment(batch.size());
+        } catch (Exception e) {
+            log.warn("批量写入签到记录失败，改为逐条写入: {}", e.getMessage());
+            for (AttendanceRecord record : batch) {
+                try {
+                    courseAttendanceSummaryService.saveScannedAttendance(Collections.singletonList(record));
+                    flushedCounter.increment();
+                } catch (Exception ex) {
+                    failedCounter.increment();
+                    log.error("签到记录写入失败: courseId={}, student={}, error={}",
+                            record.getCourseId(), record.getStudentUsername(), ex.getMessage());
+                    compensate(record);
+                }
+            }
+        } finally {
+            for (AttendanceRecord record : batch) {
+                clearPending(record);
+            }
+        }
+    }
+
+    /**
+     * 签到最终未落库：撤销花名册标记使学生可以重新扫码，并通知订阅方该签到已取消
+     */
+    private void compensate(AttendanceRecord record) {
+        try {
+            courseRosterService.updateAttendance(record.getCourseId(), record.getStudentUsername(), false);
+            eventPublisher.publishEvent(new AttendanceChangedEvent(
+                    record.getCourseId(), record.getStudentUsername(), false, null, "scan"));
+        } catch (Exception e) {
+            log.error("撤销未落库的签到失败: courseId={}, student={}, error={}",
+                    record.getCourseId(), record.getStudentUsername(), e.getMessage());
+        }
+    }
+
+    /**
+     * 应用关闭时写完队列中剩余的签到
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        if (flusherThread != null) {
+            flusherThread.interrupt();
+            try {
+                flusherThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<AttendanceRecord> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += flushSize) {
+            writeBatch(remaining.subList(i, Math.min(i + flushSize, remaining.size())));
+        }
+        log.info("签到异步写入已关闭，关闭时写入剩余记录 {} 条", remaining.size());
+    }
+
+    private void clearPending(AttendanceRecord record) {
+        if (pendingKeys.remove(key(record.getCourseId(), record.getStudentUsername()))) {
+            pendingByStudent.computeIfPresent(record.getStudentUsername(),
+                    (student, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private static String key(String courseId, String studentUsername) {
+        return courseId + "|" + studentUsername;
+    }
+}
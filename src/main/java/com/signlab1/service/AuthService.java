@@ -12,11 +12,15 @@ import com.signlab1.mapper.UserMapper;
 import com.signlab1.util.JwtUtil;
 import com.signlab1.util.PasswordUtil;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 用户认证服务
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class AuthService {
@@ -24,11 +28,14 @@ public class AuthService {
     private final UserMapper userMapper;
     private final JwtUtil jwtUtil;
     private final PasswordUtil passwordUtil;
+    private final ReferenceDataCacheService referenceDataCacheService;
+    private final PasswordVerificationService passwordVerificationService;
     
     /**
      * 用户登录
+     * 密码校验在独立线程池中异步执行，校验队列已满时抛出TooManyRequestsException
      */
-    public LoginResponse login(LoginRequest request) {
+    public CompletableFuture<LoginResponse> login(LoginRequest request) {
         // 查询用户是否存在
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("username", request.getUsername());
@@ -47,7 +54,7 @@ public class AuthService {
             response.setName(user.getName());
             response.setRole(user.getRole());
             response.setIsFirstLogin(true);
-            return response;
+            return CompletableFuture.completedFuture(response);
         }
         
         // 验证密码（加密比较）
@@ -55,21 +62,42 @@ public class AuthService {
             throw new BusinessException(400, "请输入密码");
         }
         
-        if (!passwordUtil.matches(request.getPassword(), user.getPassword())) {
-            throw new BusinessException(ResponseCode.PASSWORD_ERROR);
+        return passwordVerificationService.verify(request.getPassword(), user.getPassword())
+                .thenApply(result -> {
+                    if (!result.isMatched()) {
+                        throw new BusinessException(ResponseCode.PASSWORD_ERROR);
+                    }
+                    
+                    // 加密强度调整后，登录成功时用新强度重新加密保存
+                    if (result.getRehashedPassword() != null) {
+                        rehashPassword(user, result.getRehashedPassword());
+                    }
+                    
+                    // 生成JWT Token
+                    String token = jwtUtil.generateToken(user.getUsername(), user.getRole(), user.getName());
+                    
+                    LoginResponse response = new LoginResponse();
+                    response.setUserId(user.getId());
+                    response.setUsername(user.getUsername());
+                    response.setName(user.getName());
+                    response.setRole(user.getRole());
+                    response.setToken(token);
+                    response.setIsFirstLogin(false);
+                    return response;
+                });
+    }
+    
+    /**
+     * 保存重新加密的密码，失败不影响本次登录
+     */
+    private void rehashPassword(User user, String rehashedPassword) {
+        try {
+            user.setPassword(rehashedPassword);
+            userMapper.updateById(user);
+            referenceDataCacheService.evictUser(user.getUsername());
+        } catch (Exception e) {
+            log.warn("重新加密密码失败: username={}, error={}", user.getUsername(), e.getMessage());
         }
-        
-        // 生成JWT Token
-        String token = jwtUtil.generateToken(user.getUsername(), user.getRole(), user.getName());
-        
-        LoginResponse response = new LoginResponse();
-        response.setUserId(user.getId());
-        response.setUsername(user.getUsername());
-        response.setName(user.getName());
-        response.setRole(user.getRole());
-        response.setToken(token);
-        response.setIsFirstLogin(false);
-        return response;
     }
     
     /**
@@ -99,6 +127,7 @@ public class AuthService {
         user.setPassword(passwordUtil.encode(request.getPassword()));
         user.setPasswordSet(1);
         userMapper.updateById(user);
+        referenceDataCacheService.evictUser(user.getUsername());
     }
     
     /**
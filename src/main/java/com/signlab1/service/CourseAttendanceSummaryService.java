@@ -0,0 +1,343 @@
+package com.signlab1.service;
+
+import com.signlab1.entity.AttendanceRecord;
+import com.signlab1.entity.CourseAttendanceSummary;
+import com.signlab1.mapper.AttendanceRecordMapper;
+import com.signlab1.mapper.CourseAttendanceSummaryMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 课程签到统计服务
+ * 每门课程的签到人数、跨班人数、手动补签人数保存在 course_attendance_summary 中，
+ * 签到写入时在同一事务内增量更新，统计页面按主键读取；
+ * 每天定时根据签到记录全量对账，修正增量更新产生的偏差
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CourseAttendanceSummaryService {
+
+    /**
+     * 老师手动补签记录的签到IP
+     */
+    public static final String MANUAL_ATTENDANCE_IP = "127.0.0.1";
+
+    private final CourseAttendanceSummaryMapper courseAttendanceSummaryMapper;
+    private final AttendanceRecordMapper attendanceRecordMapper;
+    private final CourseRosterService courseRosterService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${summary.reconcile.threads:4}")
+    private int reconcileThreads;
+
+    // 每条重建SQL覆盖的课程数
+    @Value("${summary.reconcile.batch-size:200}")
+    private int batchSize;
+
+    // 每天执行对账的整点，-1表示不执行
+    @Value("${summary.reconcile.hour:3}")
+    private int reconcileHour;
+
+    // 启动时为缺少统计行的课程补齐
+    @Value("${summary.reconcile.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    private ScheduledExecutorService scheduler;
+    private Timer reconcileTimer;
+
+    @PostConstruct
+    public void init() {
+        reconcileTimer = Timer.builder("signlab.summary.reconcile").register(meterRegistry);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "summary-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (backfillOnStartup) {
+            scheduler.execute(this::backfillMissing);
+        }
+        if (reconcileHour >= 0) {
+            scheduler.scheduleAtFixedRate(this::reconcileQuietly, initialDelayMinutes(),
+                    TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 写入扫码签到记录并累加课程统计（同一事务）
+     * 只有新插入或恢复已逻辑删除的记录才计为一次签到，已存在的有效记录不会被覆盖，也不重复计数；
+     * 新增数取自写入语句的影响行数，不做加锁读取：并发扫码时缺失键上的间隙锁会与插入互相等待造成死锁；
+     * 跨班人数优先使用记录上已判定的跨班标记
+     */
+    @Transactional
+    public void saveScannedAttendance(List<AttendanceRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        // 1. 按课程、是否跨班、是否手动补签分组，同一组的记录对统计的贡献相同
+        Map<String, ScannedGroup> groups = new LinkedHashMap<>();
+        for (AttendanceRecord record : records) {
+            boolean crossClass = record.getIsCrossClass() != null
+                    ? record.getIsCrossClass() == 1
+                    : isCrossClass(record.getCourseId(), record.getStudentUsername());
+            boolean manual = MANUAL_ATTENDANCE_IP.equals(record.getIpAddress());
+            groups.computeIfAbsent(record.getCourseId() + "|" + crossClass + "|" + manual,
+                    k -> new ScannedGroup(record.getCourseId(), crossClass, manual)).records.add(record);
+        }
+
+        // 2. 逐组写入：先插入新记录（已存在的跳过），未全部插入时逐条恢复已逻辑删除的记录
+        //    插入后每个键都已存在，恢复语句只锁定记录本身
+        for (ScannedGroup group : groups.values()) {
+            int changed = attendanceRecordMapper.batchInsertIgnore(group.records);
+            if (changed < group.records.size()) {
+                for (AttendanceRecord record : group.records) {
+                    changed += attendanceRecordMapper.reviveDeleted(record);
+                }
+            }
+            if (changed > 0) {
+                applyDelta(group.courseId, changed, group.crossClass ? changed : 0, group.manual ? changed : 0);
+            }
+        }
+    }
+
+    /**
+     * 老师修改签到状态后更新课程统计，需在写签到记录的事务内调用
+     * @param attended true-新增签到；false-撤销签到
+     * @param manual 新增或撤销的是否为手动补签记录
+     */
+    public void recordManualChange(String courseId, String studentUsername, boolean attended, boolean manual) {
+        int sign = attended ? 1 : -1;
+        applyDelta(courseId, sign,
+                isCrossClass(courseId, studentUsername) ? sign : 0,
+                manual ? sign : 0);
+    }
+
+    /**
+     * 老师批量修改签到状态后一次性更新课程统计，需在写签到记录的事务内调用
+     * 跨班人数使用记录上的跨班标记，只有尚未回填标记的历史记录才查询花名册（每次调用最多一次）
+     * @param addedRecords 新增签到的记录（已判定跨班标记）
+     * @param removedRecords 撤销签到前的记录
+     * @param manualDelta 手动补签记录的变化数
+     */
+    public void recordBulkChange(String courseId, Collection<AttendanceRecord> addedRecords,
+                                 Collection<AttendanceRecord> removedRecords, int manualDelta) {
+        CourseRosterService.CourseRoster roster = null;
+        boolean rosterLoaded = false;
+        int crossClass = 0;
+        for (AttendanceRecord record : addedRecords) {
+            if (record.getIsCrossClass() == null && !rosterLoaded) {
+                roster = courseRosterService.getRoster(courseId);
+                rosterLoaded = true;
+            }
+            if (isCrossClass(record, roster)) {
+                crossClass++;
+            }
+        }
+        for (AttendanceRecord record : removedRecords) {
+            if (record.getIsCrossClass() == null && !rosterLoaded) {
+                roster = courseRosterService.getRoster(courseId);
+                rosterLoaded = true;
+            }
+            if (isCrossClass(record, roster)) {
+                crossClass--;
+            }
+        }
+        int attended = addedRecords.size() - removedRecords.size();
+        if (attended != 0 || crossClass != 0 || manualDelta != 0) {
+            applyDelta(courseId, attended, crossClass, manualDelta);
+        }
+    }
+
+    /**
+     * 获取课程统计，统计行不存在时立即生成
+     */
+    public CourseAttendanceSummary getSummary(String courseId) {
+        CourseAttendanceSummary summary = courseAttendanceSummaryMapper.selectById(courseId);
+        if (summary == null) {
+            rebuildCourses(Collections.singletonList(courseId));
+            summary = courseAttendanceSummaryMapper.selectById(courseId);
+        }
+        return summary;
+    }
+
+    /**
+     * 批量获取课程统计，key为课程ID
+     */
+    public Map<String, CourseAttendanceSummary> getSummaries(Collection<String> courseIds) {
+        Map<String, CourseAttendanceSummary> result = new HashMap<>();
+        if (courseIds.isEmpty()) {
+            return result;
+        }
+        for (CourseAttendanceSummary summary : courseAttendanceSummaryMapper.selectBatchIds(courseIds)) {
+            result.put(summary.getCourseId(), summary);
+        }
+        if (result.size() < new LinkedHashSet<>(courseIds).size()) {
+            List<String> missing = new ArrayList<>();
+            for (String courseId : courseIds) {
+                if (!result.containsKey(courseId)) {
+                    missing.add(courseId);
+                }
+            }
+            rebuildCourses(missing);
+            for (CourseAttendanceSummary summary : courseAttendanceSummaryMapper.selectBatchIds(missing)) {
+                result.put(summary.getCourseId(), summary);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 根据签到记录重建指定课程的统计
+     */
+    public void rebuildCourses(Collection<String> courseIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(courseIds));
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            courseAttendanceSummaryMapper.rebuildCourses(ids.subList(i, Math.min(i + batchSize, ids.size())));
+        }
+    }
+
+    /**
+     * 班级花名册变化后重建该班级相关课程的统计
+     */
+    public void rebuildByClass(String classCode) {
+        List<String> courseIds = courseAttendanceSummaryMapper.selectCourseIdsByClass(classCode);
+        if (!courseIds.isEmpty()) {
+            rebuildCourses(courseIds);
+        }
+    }
+
+    /**
+     * 全量对账：按课程分批并行重建所有课程的统计
+     * @return 重建的课程数
+     */
+    public int reconcileAll() {
+        return reconcile(courseAttendanceSummaryMapper.selectAllCourseIds());
+    }
+
+    private int reconcile(List<String> courseIds) {
+        if (courseIds.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < courseIds.size(); i += batchSize) {
+            chunks.add(courseIds.subList(i, Math.min(i + batchSize, courseIds.size())));
+        }
+
+        // 对账时才创建线程池，结束后释放
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(reconcileThreads, chunks.size())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "summary-reconcile-worker-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>(chunks.size());
+            for (List<String> chunk : chunks) {
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> courseAttendanceSummaryMapper.rebuildCourses(chunk), pool));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        reconcileTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("课程签到统计对账完成: courses={}, elapsedMs={}", courseIds.size(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return courseIds.size();
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcileAll();
+        } catch (Exception e) {
+            log.error("课程签到统计对账失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void backfillMissing() {
+        try {
+            List<String> missing = courseAttendanceSummaryMapper.selectCourseIdsWithoutSummary();
+            if (!missing.isEmpty()) {
+                log.info("为 {} 门课程补齐签到统计", missing.size());
+                reconcile(missing);
+            }
+        } catch (Exception e) {
+            log.error("补齐课程签到统计失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void applyDelta(String courseId, int attended, int crossClass, int manual) {
+        if (courseAttendanceSummaryMapper.addCounts(courseId, attended, crossClass, manual) == 0) {
+            // 统计行尚未生成，直接按签到记录生成（已包含本次写入）
+            courseAttendanceSummaryMapper.rebuildCourses(Collections.singletonList(courseId));
+        }
+    }
+
+    private boolean isCrossClass(String courseId, String studentUsername) {
+        CourseRosterService.CourseRoster roster = courseRosterService.getRoster(courseId);
+        return roster != null && !roster.isInRoster(studentUsername);
+    }
+
+    private static boolean isCrossClass(AttendanceRecord record, CourseRosterService.CourseRoster roster) {
+        if (record.getIsCrossClass() != null) {
+            return record.getIsCrossClass() == 1;
+        }
+        return roster != null && !roster.isInRoster(record.getStudentUsername());
+    }
+
+    private long initialDelayMinutes() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(reconcileHour, 0);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        return Duration.between(now, next).toMinutes();
+    }
+
+    /**
+     * 统计贡献相同的一组扫码签到记录
+     */
+    private static class ScannedGroup {
+        private final String courseId;
+        private final boolean crossClass;
+        private final boolean manual;
+        private final List<AttendanceRecord> records = new ArrayList<>();
+
+        private ScannedGroup(String courseId, boolean crossClass, boolean manual) {
+            this.courseId = courseId;
+            this.crossClass = crossClass;
+            this.manual = manual;
+        }
+    }
+}
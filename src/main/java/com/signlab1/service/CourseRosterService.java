@@ -0,0 +1,362 @@
+package com.signlab1.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.signlab1.entity.AttendanceRecord;
+import com.signlab1.entity.Course;
+import com.signlab1.entity.MultiClassCourse;
+import com.signlab1.entity.StudentClassRelation;
+import com.signlab1.entity.User;
+import com.signlab1.mapper.AttendanceRecordMapper;
+import com.signlab1.mapper.MultiClassCourseMapper;
+import com.signlab1.mapper.StudentClassRelationMapper;
+import com.signlab1.mapper.UserMapper;
+import com.signlab1.util.ExpiringLruCache;
+import com.signlab1.util.TimeSlotParser;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 课程花名册服务
+ * 为进行中的课程维护内存花名册：学生映射为连续下标，用位图记录签到状态，
+ * 重复签到判断、已签到人数和未签到名单无需访问数据库
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CourseRosterService {
+
+    private final StudentClassRelationMapper studentClassRelationMapper;
+    private final MultiClassCourseMapper multiClassCourseMapper;
+    private final AttendanceRecordMapper attendanceRecordMapper;
+    private final UserMapper userMapper;
+    private final ReferenceDataCacheService referenceDataCacheService;
+    private final TimeSlotParser timeSlotParser;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${roster.max-courses:200}")
+    private int maxCourses;
+
+    @Value("${roster.max-ttl-hours:12}")
+    private long maxTtlHours;
+
+    // 课程结束后保留的时间，便于老师课后补签
+    @Value("${roster.grace-minutes:60}")
+    private long graceMinutes;
+
+    // 最短缓存时间，已结束较久的课程（补签、点名轮询、跨班统计）也不会每次重建
+    @Value("${roster.min-ttl-seconds:60}")
+    private long minTtlSeconds;
+
+    private ExpiringLruCache<String, CourseRoster> rosters;
+
+    // 正在加载的花名册，同一课程的并发未命中等待同一次加载，不同课程互不阻塞
+    private final ConcurrentHashMap<String, CompletableFuture<CourseRoster>> loadingRosters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        rosters = new ExpiringLruCache<>(maxCourses, Duration.ofHours(maxTtlHours).getSeconds());
+        Gauge.builder("signlab.roster.size", rosters, ExpiringLruCache::size).register(meterRegistry);
+        Gauge.builder("signlab.roster.hit.ratio", rosters, ExpiringLruCache::getHitRatio).register(meterRegistry);
+    }
+
+    /**
+     * 获取课程花名册，未加载时从数据库构建
+     */
+    public CourseRoster getRoster(String courseId) {
+        CourseRoster roster = rosters.get(courseId);
+        if (roster != null) {
+            return roster;
+        }
+
+        // 扫码高峰时同一课程会同时未命中，共用一次加载避免生成多份花名册导致签到标记丢失
+        CompletableFuture<CourseRoster> loading = new CompletableFuture<>();
+        CompletableFuture<CourseRoster> existing = loadingRosters.putIfAbsent(courseId, loading);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            roster = rosters.get(courseId);
+            if (roster == null) {
+                long generation = rosters.currentGeneration();
+                roster = loadRoster(courseId);
+                if (roster != null) {
+                    // 课程结束后自动过期（至少保留最短缓存时间）；顺带清理其他已过期的花名册
+                    rosters.cleanUp();
+                    long ttlSeconds = Math.max(computeTtlSeconds(roster.getCourse()), minTtlSeconds);
+                    rosters.putIfGeneration(courseId, roster, generation, ttlSeconds);
+                }
+            }
+            loading.complete(roster);
+            return roster;
+        } catch (RuntimeException e) {
+            loading.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingRosters.remove(courseId, loading);
+        }
+    }
+
+    /**
+     * 尝试标记为已签到
+     * @return false-该学生此前已签到
+     */
+    public boolean tryMarkAttended(String courseId, String studentUsername) {
+        CourseRoster roster = getRoster(courseId);
+        return roster == null || roster.markAttended(studentUsername);
+    }
+
+    /**
+     * 是否已签到
+     */
+    public boolean hasAttended(String courseId, String studentUsername) {
+        CourseRoster roster = getRoster(courseId);
+        return roster != null && roster.isAttended(studentUsername);
+    }
+
+    /**
+     * 同步签到状态（仅更新已加载的花名册）
+     */
+    public void updateAttendance(String courseId, String studentUsername, boolean attended) {
+        CourseRoster roster = rosters.get(courseId);
+        if (roster == null) {
+            return;
+        }
+        if (attended) {
+            roster.markAttended(studentUsername);
+        } else {
+            roster.markAbsent(studentUsername);
+        }
+    }
+
+    /**
+     * 班级绑定关系或课程变更后失效
+     */
+    public void invalidate(String courseId) {
+        rosters.invalidate(courseId);
+    }
+
+    /**
+     * 学生绑定班级后，使覆盖该班级的花名册失效
+     */
+    public void invalidateByClass(String classCode) {
+        rosters.invalidateValuesIf(roster -> roster.getClassCodes().contains(classCode));
+    }
+
+    /**
+     * 批量导入后全部失效
+     */
+    public void invalidateAll() {
+        rosters.invalidateAll();
+    }
+
+    /**
+     * 从数据库构建花名册：本班及多班级配置中的所有班级学生 + 当前签到记录
+     */
+    private CourseRoster loadRoster(String courseId) {
+        Course course = referenceDataCacheService.getCourse(courseId);
+        if (course == null) {
+            return null;
+        }
+
+        // 1. 课程覆盖的班级
+        Set<String> classCodes = new LinkedHashSet<>();
+        classCodes.add(course.getClassCode());
+        QueryWrapper<MultiClassCourse> multiClassQuery = new QueryWrapper<>();
+        multiClassQuery.eq("course_id", courseId);
+        for (MultiClassCourse multiClassCourse : multiClassCourseMapper.selectList(multiClassQuery)) {
+            classCodes.add(multiClassCourse.getClassCode());
+        }
+
+        // 2. 班级学生，按学号排序后分配下标
+        QueryWrapper<StudentClassRelation> relationQuery = new QueryWrapper<>();
+        relationQuery.in("class_code", classCodes).eq("is_deleted", 0);
+        Set<String> students = new TreeSet<>();
+        for (StudentClassRelation relation : studentClassRelationMapper.selectList(relationQuery)) {
+            students.add(relation.getStudentUsername());
+        }
+
+        String[] studentArray = students.toArray(new String[0]);
+
+        // 3. 学生姓名，按下标存放，未签到名单直接从内存读取
+        String[] names = new String[studentArray.length];
+        if (studentArray.length > 0) {
+            QueryWrapper<User> userQuery = new QueryWrapper<>();
+            userQuery.select("username", "name").in("username", students);
+            Map<String, String> nameMap = new HashMap<>(studentArray.length * 2);
+            for (User user : userMapper.selectList(userQuery)) {
+                nameMap.put(user.getUsername(), user.getName());
+            }
+            for (int i = 0; i < studentArray.length; i++) {
+                names[i] = nameMap.getOrDefault(studentArray[i], "未知学生");
+            }
+        }
+
+        // 4. 已有签到记录
+        QueryWrapper<AttendanceRecord> attendanceQuery = new QueryWrapper<>();
+        attendanceQuery.select("student_username").eq("course_id", courseId);
+        List<AttendanceRecord> records = attendanceRecordMapper.selectList(attendanceQuery);
+
+        CourseRoster roster = new CourseRoster(course, classCodes, studentArray, names);
+        for (AttendanceRecord record : records) {
+            roster.markAttended(record.getStudentUsername());
+        }
+        return roster;
+    }
+
+    private long computeTtlSeconds(Course course) {
+        try {
+            TimeSlotParser.TimeSlotInfo timeSlotInfo = timeSlotParser.parseTimeSlot(course.getTimeSlot());
+            if (timeSlotInfo == null) {
+                return Duration.ofHours(maxTtlHours).getSeconds();
+            }
+            LocalDateTime expireAt = LocalDate.parse(course.getCourseDate())
+                    .atTime(timeSlotInfo.getEndTime())
+                    .plusMinutes(graceMinutes);
+            return Duration.between(LocalDateTime.now(), expireAt).getSeconds();
+        } catch (Exception e) {
+            return Duration.ofHours(maxTtlHours).getSeconds();
+        }
+    }
+
+    /**
+     * 单个课程的花名册
+     */
+    public static class CourseRoster {
+        private final Course course;
+        private final Set<String> classCodes;
+        private final String[] students;
+        private final String[] names;
+        private final Map<String, Integer> indexes;
+        private final BitSet attended;
+        // 不在花名册中的跨班签到学生
+        private final Set<String> extraAttendees = new HashSet<>();
+
+        public CourseRoster(Course course, Set<String> classCodes, String[] students, String[] names) {
+            this.course = course;
+            this.classCodes = classCodes;
+            this.students = students;
+            this.names = names;
+            this.indexes = new HashMap<>(students.length * 2);
+            for (int i = 0; i < students.length; i++) {
+                indexes.put(students[i], i);
+            }
+            this.attended = new BitSet(students.length);
+        }
+
+        public Course getCourse() {
+            return course;
+        }
+
+        public Set<String> getClassCodes() {
+            return classCodes;
+        }
+
+        /**
+         * 标记已签到，返回false表示此前已签到
+         */
+        public synchronized boolean markAttended(String studentUsername) {
+            Integer index = indexes.get(studentUsername);
+            if (index == null) {
+                return extraAttendees.add(studentUsername);
+            }
+            if (attended.get(index)) {
+                return false;
+            }
+            attended.set(index);
+            return true;
+        }
+
+        public synchronized void markAbsent(String studentUsername) {
+            Integer index = indexes.get(studentUsername);
+            if (index == null) {
+                extraAttendees.remove(studentUsername);
+            } else {
+                attended.clear(index);
+            }
+        }
+
+        public synchronized boolean isAttended(String studentUsername) {
+            Integer index = indexes.get(studentUsername);
+            return index == null ? extraAttendees.contains(studentUsername) : attended.get(index);
+        }
+
+        public boolean isInRoster(String studentUsername) {
+            return indexes.containsKey(studentUsername);
+        }
+
+        /**
+         * 花名册人数
+         */
+        public int getRosterSize() {
+            return students.length;
+        }
+
+        /**
+         * 花名册内已签到人数
+         */
+        public synchronized int getRosterAttendedCount() {
+            return attended.cardinality();
+        }
+
+        /**
+         * 全部已签到人数（含跨班签到）
+         */
+        public synchronized int getAttendedCount() {
+            return attended.cardinality() + extraAttendees.size();
+        }
+
+        /**
+         * 未签到学生学号，按学号排序
+         */
+        public synchronized List<String> getAbsentStudents() {
+            List<String> absent = new ArrayList<>(students.length - attended.cardinality());
+            for (int i = attended.nextClearBit(0); i < students.length; i = attended.nextClearBit(i + 1)) {
+                absent.add(students[i]);
+            }
+            return absent;
+        }
+
+        /**
+         * 未签到学生，格式为 姓名(学号)，按学号排序
+         */
+        public synchronized List<String> getAbsentStudentsWithNames() {
+            List<String> absent = new ArrayList<>(students.length - attended.cardinality());
+            for (int i = attended.nextClearBit(0); i < students.length; i = attended.nextClearBit(i + 1)) {
+                absent.add(names[i] + "(" + students[i] + ")");
+            }
+            return absent;
+        }
+
+        /**
+         * 跨班签到学生学号
+         */
+        public synchronized List<String> getExtraAttendees() {
+            return new ArrayList<>(extraAttendees);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.signlab1.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.signlab1.entity.Course;
+import com.signlab1.mapper.CourseMapper;
+import com.signlab1.util.ExpiringLruCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 课次索引服务
+ * 按日期加载当天全部课程，以 老师+日期+时间段 分组，
+ * 扫码时查找同一老师同一时间的其他班级课程只需一次哈希查找
+ */
+@Service
+@RequiredArgsConstructor
+public class CourseSessionIndexService {
+
+    private final CourseMapper courseMapper;
+    private final MeterRegistry meterRegistry;
+
+    // 同时驻留内存的日期数
+    @Value("${session-index.max-days:14}")
+    private int maxDays;
+
+    // 兜底刷新时间，课程写入时会主动失效
+    @Value("${session-index.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private ExpiringLruCache<String, DayIndex> days;
+
+    @PostConstruct
+    public void init() {
+        days = new ExpiringLruCache<>(maxDays, ttlSeconds);
+        Gauge.builder("signlab.session_index.size", days, ExpiringLruCache::size).register(meterRegistry);
+        Gauge.builder("signlab.session_index.hit.ratio", days, ExpiringLruCache::getHitRatio).register(meterRegistry);
+    }
+
+    /**
+     * 获取与该课程同一老师、同一日期、同一时间段的所有课程（包括自身）
+     */
+    public SessionGroup getSessionGroup(Course course) {
+        return getSessionGroup(course.getTeacherUsername(), course.getCourseDate(), course.getTimeSlot());
+    }
+
+    /**
+     * 按 老师+日期+时间段 获取课次分组，不存在时返回空分组
+     */
+    public SessionGroup getSessionGroup(String teacherUsername, String courseDate, String timeSlot) {
+        DayIndex dayIndex = days.get(courseDate, this::loadDay);
+        SessionGroup group = dayIndex.groups.get(key(teacherUsername, timeSlot));
+        return group != null ? group : SessionGroup.EMPTY;
+    }
+
+    /**
+     * 某日期的课程发生变化后失效
+     */
+    public void invalidateDate(String courseDate) {
+        if (courseDate != null) {
+            days.invalidate(courseDate);
+        }
+    }
+
+    /**
+     * 批量导入等场景清空全部索引
+     */
+    public void invalidateAll() {
+        days.invalidateAll();
+    }
+
+    private DayIndex loadDay(String courseDate) {
+        QueryWrapper<Course> query = new QueryWrapper<>();
+        query.eq("course_date", courseDate);
+        Map<String, List<Course>> coursesByKey = new HashMap<>();
+        for (Course course : courseMapper.selectList(query)) {
+            coursesByKey.computeIfAbsent(key(course.getTeacherUsername(), course.getTimeSlot()),
+                    k -> new ArrayList<>()).add(course);
+        }
+
+        Map<String, SessionGroup> groups = new HashMap<>(coursesByKey.size() * 2);
+        for (Map.Entry<String, List<Course>> entry : coursesByKey.entrySet()) {
+            groups.put(entry.getKey(), new SessionGroup(entry.getValue()));
+        }
+        return new DayIndex(groups);
+    }
+
+    private static String key(String teacherUsername, String timeSlot) {
+        return teacherUsername + "|" + timeSlot;
+    }
+
+    /**
+     * 单日索引，构建后只读
+     */
+    private static class DayIndex {
+        private final Map<String, SessionGroup> groups;
+
+        private DayIndex(Map<String, SessionGroup> groups) {
+            this.groups = groups;
+        }
+    }
+
+    /**
+     * 同一老师同一时间的课程及其班级，构建后只读
+     * 注意：课程实体为共享对象，调用方不得修改
+     */
+    public static class SessionGroup {
+        private static final SessionGroup EMPTY = new SessionGroup(Collections.emptyList());
+
+        private final List<Course> courses;
+        private final Set<String> classCodes;
+
+        private SessionGroup(List<Course> courses) {
+            this.courses = Collections.unmodifiableList(courses);
+            Set<String> codes = new LinkedHashSet<>();
+            for (Course course : courses) {
+                codes.add(course.getClassCode());
+            }
+            this.classCodes = Collections.unmodifiableSet(codes);
+        }
+
+        public List<Course> getCourses() {
+            return courses;
+        }
+
+        public Set<String> getClassCodes() {
+            return classCodes;
+        }
+
+        /**
+         * 查找属于学生所在班级的课程，没有则返回null
+         */
+        public Course findCourseForClasses(Set<String> studentClassCodes) {
+            for (Course course : courses) {
+                if (studentClassCodes.contains(course.getClassCode())) {
+                    return course;
+                }
+            }
+            return null;
+        }
+    }
+}
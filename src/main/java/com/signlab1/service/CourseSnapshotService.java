@@ -0,0 +1,327 @@
+package com.signlab1.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.signlab1.entity.Class;
+import com.signlab1.entity.Course;
+import com.signlab1.entity.CourseAttendanceSummary;
+import com.signlab1.entity.User;
+import com.signlab1.mapper.CourseMapper;
+import com.signlab1.util.TimeSlotParser;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 今日课程快照服务
+ * 今天和昨天的课程（含老师姓名、班级信息、解析后的上下课时间）构建一次后所有学生共用，
+ * 签到人数每隔几秒按课程统计批量刷新；课程状态在读取时根据当前时间计算，不随快照过期
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CourseSnapshotService {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final CourseMapper courseMapper;
+    private final ReferenceDataCacheService referenceDataCacheService;
+    private final CourseAttendanceSummaryService courseAttendanceSummaryService;
+    private final TimeSlotParser timeSlotParser;
+    private final MeterRegistry meterRegistry;
+
+    // 签到人数刷新间隔
+    @Value("${course-snapshot.refresh-seconds:5}")
+    private long refreshSeconds;
+
+    // 兜底重建间隔，课程导入时会主动失效；老师姓名、班级信息的变化在重建后生效
+    @Value("${course-snapshot.rebuild-seconds:300}")
+    private long rebuildSeconds;
+
+    private volatile Snapshot snapshot;
+
+    // 失效版本号，快照构建前记录，构建期间发生失效的快照会在下次读取时重建
+    private final AtomicLong generation = new AtomicLong();
+
+    // 同一时间只有一个线程刷新签到人数或定时重建，其他线程继续读取旧快照
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private Timer rebuildTimer;
+    private Timer refreshTimer;
+
+    @PostConstruct
+    public void init() {
+        rebuildTimer = Timer.builder("signlab.course_snapshot.rebuild").register(meterRegistry);
+        refreshTimer = Timer.builder("signlab.course_snapshot.refresh").register(meterRegistry);
+        Gauge.builder("signlab.course_snapshot.courses", this,
+                service -> service.snapshot != null ? service.snapshot.getCourses().size() : 0)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取今天和昨天的课程快照
+     */
+    public Snapshot getSnapshot() {
+        LocalDate today = LocalDate.now();
+        long now = System.nanoTime();
+        Snapshot current = snapshot;
+
+        // 1. 首次读取、跨天或已失效时必须重建，读取方等待重建完成
+        if (current == null || !current.today.equals(today) || current.generation != generation.get()) {
+            return rebuild(today);
+        }
+
+        // 2. 快照过旧或签到人数过旧时由一个线程刷新，其他线程直接返回旧快照
+        boolean rebuildDue = now - current.builtAt > TimeUnit.SECONDS.toNanos(rebuildSeconds);
+        boolean refreshDue = now - current.countsAt > TimeUnit.SECONDS.toNanos(refreshSeconds);
+        if ((rebuildDue || refreshDue) && refreshing.compareAndSet(false, true)) {
+            try {
+                current = rebuildDue ? rebuild(today) : refreshCounts(current);
+            } catch (Exception e) {
+                log.warn("刷新今日课程快照失败，继续使用旧快照: {}", e.getMessage());
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 某日期的课程发生变化后失效，只影响今天和昨天
+     */
+    public void invalidateDate(String courseDate) {
+        if (courseDate == null) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        if (courseDate.equals(today.format(DATE_FORMATTER))
+                || courseDate.equals(today.minusDays(1).format(DATE_FORMATTER))) {
+            generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * 根据当前时间计算课程状态
+     */
+    public TimeSlotParser.CourseStatusInfo getCourseStatus(CourseView course, LocalDateTime now) {
+        if (course.startTime == null) {
+            return new TimeSlotParser.CourseStatusInfo(3, "时间段解析失败", 0);
+        }
+        return timeSlotParser.getCourseStatus(course.startTime, course.endTime, now);
+    }
+
+    private synchronized Snapshot rebuild(LocalDate today) {
+        Snapshot current = snapshot;
+        long expectedGeneration = generation.get();
+        if (current != null && current.today.equals(today) && current.generation == expectedGeneration
+                && System.nanoTime() - current.builtAt <= TimeUnit.SECONDS.toNanos(rebuildSeconds)) {
+            return current;
+        }
+        long start = System.nanoTime();
+
+        // 1. 一次查询今天和昨天的课程
+        LocalDate yesterday = today.minusDays(1);
+        QueryWrapper<Course> query = new QueryWrapper<>();
+        query.in("course_date", yesterday.format(DATE_FORMATTER), today.format(DATE_FORMATTER))
+             .orderByAsc("course_date")
+             .orderByAsc("time_slot");
+        List<Course> courses = courseMapper.selectList(query);
+
+        // 2. 批量获取老师和班级信息
+        Set<String> teacherUsernames = new HashSet<>();
+        Set<String> classCodes = new HashSet<>();
+        for (Course course : courses) {
+            teacherUsernames.add(course.getTeacherUsername());
+            classCodes.add(course.getClassCode());
+        }
+        Map<String, User> teachers = referenceDataCacheService.getUsers(teacherUsernames);
+        Map<String, Class> classes = referenceDataCacheService.getClassesByCode(classCodes);
+
+        // 3. 解析时间段，组装只读的课程视图
+        List<CourseView> views = new ArrayList<>(courses.size());
+        for (Course course : courses) {
+            User teacher = teachers.get(course.getTeacherUsername());
+            Class clazz = classes.get(course.getClassCode());
+            LocalDate courseDate = LocalDate.parse(course.getCourseDate(), DATE_FORMATTER);
+            TimeSlotParser.TimeSlotInfo timeSlotInfo = timeSlotParser.parseTimeSlot(course.getTimeSlot());
+            views.add(new CourseView(course,
+                    teacher != null ? teacher.getName() : null,
+                    clazz != null ? clazz.getClassName() : null,
+                    clazz != null ? clazz.getStudentCount() : null,
+                    courseDate,
+                    timeSlotInfo != null ? courseDate.atTime(timeSlotInfo.getStartTime()) : null,
+                    timeSlotInfo != null ? courseDate.atTime(timeSlotInfo.getEndTime()) : null));
+        }
+
+        Snapshot rebuilt = new Snapshot(today, Collections.unmodifiableList(views), loadCounts(views),
+                expectedGeneration, System.nanoTime());
+        snapshot = rebuilt;
+        rebuildTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return rebuilt;
+    }
+
+    private Snapshot refreshCounts(Snapshot current) {
+        long start = System.nanoTime();
+        Snapshot refreshed = new Snapshot(current.today, current.courses, loadCounts(current.courses),
+                current.generation, current.builtAt);
+        // 刷新期间快照被重建或失效时放弃本次结果
+        synchronized (this) {
+            if (snapshot == current) {
+                snapshot = refreshed;
+            }
+        }
+        refreshTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return refreshed;
+    }
+
+    private int[] loadCounts(List<CourseView> views) {
+        List<String> courseIds = new ArrayList<>(views.size());
+        for (CourseView view : views) {
+            courseIds.add(view.courseId);
+        }
+        Map<String, CourseAttendanceSummary> summaries = courseAttendanceSummaryService.getSummaries(courseIds);
+        int[] counts = new int[views.size()];
+        for (int i = 0; i < views.size(); i++) {
+            CourseAttendanceSummary summary = summaries.get(views.get(i).courseId);
+            counts[i] = summary != null && summary.getAttendedCount() != null ? summary.getAttendedCount() : 0;
+        }
+        return counts;
+    }
+
+    /**
+     * 今天和昨天的课程快照，构建后只读
+     */
+    public static class Snapshot {
+        private final LocalDate today;
+        private final List<CourseView> courses;
+        private final int[] attendanceCounts;
+        private final long generation;
+        private final long builtAt;
+        private final long countsAt;
+
+        private Snapshot(LocalDate today, List<CourseView> courses, int[] attendanceCounts,
+                         long generation, long builtAt) {
+            this.today = today;
+            this.courses = courses;
+            this.attendanceCounts = attendanceCounts;
+            this.generation = generation;
+            this.builtAt = builtAt;
+            this.countsAt = System.nanoTime();
+        }
+
+        public LocalDate getToday() {
+            return today;
+        }
+
+        /**
+         * 按日期、时间段升序的课程
+         */
+        public List<CourseView> getCourses() {
+            return courses;
+        }
+
+        /**
+         * 第index门课程的签到人数
+         */
+        public int getAttendanceCount(int index) {
+            return attendanceCounts[index];
+        }
+    }
+
+    /**
+     * 快照中的单门课程，构建后只读
+     */
+    public static class CourseView {
+        private final String courseId;
+        private final String courseName;
+        private final String teacherUsername;
+        private final String teacherName;
+        private final String classCode;
+        private final String className;
+        private final Integer totalStudents;
+        private final String location;
+        private final String courseDate;
+        private final String timeSlot;
+        private final LocalDate date;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+
+        private CourseView(Course course, String teacherName, String className, Integer totalStudents,
+                           LocalDate date, LocalDateTime startTime, LocalDateTime endTime) {
+            this.courseId = course.getCourseId();
+            this.courseName = course.getCourseName();
+            this.teacherUsername = course.getTeacherUsername();
+            this.teacherName = teacherName;
+            this.classCode = course.getClassCode();
+            this.className = className;
+            this.totalStudents = totalStudents;
+            this.location = course.getLocation();
+            this.courseDate = course.getCourseDate();
+            this.timeSlot = course.getTimeSlot();
+            this.date = date;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        public String getCourseId() {
+            return courseId;
+        }
+
+        public String getCourseName() {
+            return courseName;
+        }
+
+        public String getTeacherUsername() {
+            return teacherUsername;
+        }
+
+        public String getTeacherName() {
+            return teacherName;
+        }
+
+        public String getClassCode() {
+            return classCode;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public Integer getTotalStudents() {
+            return totalStudents;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public String getCourseDate() {
+            return courseDate;
+        }
+
+        public String getTimeSlot() {
+            return timeSlot;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+    }
+}
@@ -132,6 +132,41 @@ public class ExcelTemplateService {
         return outputStream.toByteArray();
     }
     
+    /**
+     * 标题行样式：蓝底白字加粗、细边框
+     * 样式属于工作簿，同一工作簿内创建一次后复用
+     */
+    public CellStyle createHeaderStyle(Workbook workbook) {
+        CellStyle headerStyle = workbook.createCellStyle();
+        Font headerFont = workbook.createFont();
+        headerFont.setBold(true);
+        headerFont.setColor(IndexedColors.WHITE.getIndex());
+        headerStyle.setFont(headerFont);
+        headerStyle.setFillForegroundColor(IndexedColors.BLUE.getIndex());
+        headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        headerStyle.setAlignment(HorizontalAlignment.CENTER);
+        headerStyle.setVerticalAlignment(VerticalAlignment.CENTER);
+        headerStyle.setWrapText(true);
+        setThinBorder(headerStyle);
+        return headerStyle;
+    }
+    
+    /**
+     * 数据行样式：细边框
+     */
+    public CellStyle createDataStyle(Workbook workbook) {
+        CellStyle dataStyle = workbook.createCellStyle();
+        setThinBorder(dataStyle);
+        return dataStyle;
+    }
+    
+    private void setThinBorder(CellStyle style) {
+        style.setBorderBottom(BorderStyle.THIN);
+        style.setBorderTop(BorderStyle.THIN);
+        style.setBorderRight(BorderStyle.THIN);
+        style.setBorderLeft(BorderStyle.THIN);
+    }
+    
     /**
      * 生成学生数据导入模板
      */
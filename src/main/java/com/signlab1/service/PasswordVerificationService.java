@@ -0,0 +1,150 @@
+package com.signlab1.service;
+
+import com.signlab1.exception.TooManyRequestsException;
+import com.signlab1.util.PasswordUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 密码校验服务
+ * BCrypt校验放到独立的有界线程池执行，不占用Tomcat请求线程；
+ * 登录高峰时队列满直接拒绝，避免把CPU全部耗在密码校验上拖慢扫码签到
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PasswordVerificationService {
+
+    private final PasswordUtil passwordUtil;
+    private final MeterRegistry meterRegistry;
+
+    // 校验线程数，0表示使用CPU核数的一半
+    @Value("${auth.password.threads:0}")
+    private int threads;
+
+    @Value("${auth.password.queue-capacity:100}")
+    private int queueCapacity;
+
+    // 排队超过该时间的校验直接拒绝（客户端大概率已超时）
+    @Value("${auth.password.max-queue-wait-ms:5000}")
+    private long maxQueueWaitMs;
+
+    @Value("${auth.password.retry-after-seconds:3}")
+    private long retryAfterSeconds;
+
+    private ThreadPoolExecutor executor;
+
+    private Timer verifyTimer;
+    private Timer queueWaitTimer;
+    private Counter rejectedCounter;
+    private Counter rehashCounter;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-verify-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        verifyTimer = Timer.builder("signlab.auth.password.verify").register(meterRegistry);
+        queueWaitTimer = Timer.builder("signlab.auth.password.queue_wait").register(meterRegistry);
+        rejectedCounter = Counter.builder("signlab.auth.password.rejected").register(meterRegistry);
+        rehashCounter = Counter.builder("signlab.auth.password.rehash").register(meterRegistry);
+        Gauge.builder("signlab.auth.password.queue_size", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("signlab.auth.password.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+
+        log.info("密码校验线程池初始化完成: threads={}, queueCapacity={}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 异步校验密码；密码正确且加密强度低于当前配置时一并生成新的密文
+     * @throws TooManyRequestsException 校验队列已满
+     */
+    public CompletableFuture<PasswordCheckResult> verify(String rawPassword, String encodedPassword) {
+        long submittedAt = System.nanoTime();
+        CompletableFuture<PasswordCheckResult> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                long waitNanos = System.nanoTime() - submittedAt;
+                queueWaitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+                if (waitNanos > TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMs)) {
+                    rejectedCounter.increment();
+                    future.completeExceptionally(tooManyRequests());
+                    return;
+                }
+                try {
+                    future.complete(verifyTimer.record(() -> check(rawPassword, encodedPassword)));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw tooManyRequests();
+        }
+        return future;
+    }
+
+    private PasswordCheckResult check(String rawPassword, String encodedPassword) {
+        if (!passwordUtil.matches(rawPassword, encodedPassword)) {
+            return new PasswordCheckResult(false, null);
+        }
+        if (passwordUtil.needsRehash(encodedPassword)) {
+            rehashCounter.increment();
+            return new PasswordCheckResult(true, passwordUtil.encode(rawPassword));
+        }
+        return new PasswordCheckResult(true, null);
+    }
+
+    private TooManyRequestsException tooManyRequests() {
+        return new TooManyRequestsException("登录人数过多，请稍后重试", retryAfterSeconds);
+    }
+
+    /**
+     * 密码校验结果
+     */
+    public static class PasswordCheckResult {
+        private final boolean matched;
+        // 需要升级加密强度时的新密文，否则为null
+        private final String rehashedPassword;
+
+        public PasswordCheckResult(boolean matched, String rehashedPassword) {
+            this.matched = matched;
+            this.rehashedPassword = rehashedPassword;
+        }
+
+        public boolean isMatched() {
+            return matched;
+        }
+
+        public String getRehashedPassword() {
+            return rehashedPassword;
+        }
+    }
+}
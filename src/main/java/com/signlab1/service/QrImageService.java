@@ -0,0 +1,234 @@
+package com.signlab1.service;
+
+import com.signlab1.util.QrCodeUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 签到二维码图片服务
+ * 二维码按固定时间窗口轮换，后台线程为活跃课程提前渲染下一窗口的图片，
+ * 老师端刷新时直接返回缓存的PNG字节
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QrImageService {
+
+    private final QrCodeUtil qrCodeUtil;
+    private final MeterRegistry meterRegistry;
+
+    // 二维码轮换周期（秒），需小于二维码有效期30秒
+    @Value("${qr.image.rotate-seconds:10}")
+    private int rotateSeconds;
+
+    @Value("${qr.image.size:300}")
+    private int imageSize;
+
+    // 超过该时间未被请求的课程不再预渲染
+    @Value("${qr.image.idle-minutes:10}")
+    private long idleMinutes;
+
+    @Value("${qr.image.max-courses:500}")
+    private int maxCourses;
+
+    private final Map<String, ActiveQr> activeQrs = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    private Counter renderCounter;
+    private Counter prerenderCounter;
+
+    @PostConstruct
+    public void init() {
+        renderCounter = Counter.builder("signlab.qr.render").tag("mode", "on_demand").register(meterRegistry);
+        prerenderCounter = Counter.builder("signlab.qr.render").tag("mode", "prerender").register(meterRegistry);
+        Gauge.builder("signlab.qr.active_courses", activeQrs, Map::size).register(meterRegistry);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "qr-prerender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::prerender, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 获取课程当前窗口的二维码，并将课程登记为活跃课程
+     */
+    public RenderedQr getCurrentQr(String courseId, boolean multiClass) {
+        long window = currentWindow();
+        String key = key(courseId, multiClass);
+
+        ActiveQr active = activeQrs.get(key);
+        if (active == null) {
+            if (activeQrs.size() >= maxCourses) {
+                // 超出上限时不登记预渲染，直接渲染
+                renderCounter.increment();
+                return render(courseId, multiClass, window);
+            }
+            active = activeQrs.computeIfAbsent(key, k -> new ActiveQr(courseId, multiClass));
+        }
+        active.lastAccess = System.currentTimeMillis();
+
+        RenderedQr qr = active.find(window);
+        if (qr == null) {
+            renderCounter.increment();
+            qr = render(courseId, multiClass, window);
+            active.store(qr);
+        }
+        return qr;
+    }
+
+    /**
+     * 停止预渲染某课程的二维码
+     */
+    public void deactivate(String courseId) {
+        activeQrs.remove(key(courseId, false));
+        activeQrs.remove(key(courseId, true));
+    }
+
+    /**
+     * 为活跃课程预渲染下一窗口，清理长时间未访问的课程
+     */
+    private void prerender() {
+        try {
+            long nextWindow = currentWindow() + 1;
+            long idleBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes);
+            for (Map.Entry<String, ActiveQr> entry : activeQrs.entrySet()) {
+                ActiveQr active = entry.getValue();
+                if (active.lastAccess < idleBefore) {
+                    activeQrs.remove(entry.getKey(), active);
+                    continue;
+                }
+                if (active.find(nextWindow) == null) {
+                    active.store(render(active.courseId, active.multiClass, nextWindow));
+                    prerenderCounter.increment();
+                }
+            }
+        } catch (Exception e) {
+            log.error("预渲染签到二维码失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private RenderedQr render(String courseId, boolean multiClass, long window) {
+        long timestamp = window * rotateSeconds;
+        String qrContent;
+        String qrUrl;
+        if (multiClass) {
+            qrContent = qrCodeUtil.generateMultiClassAttendanceQrContent(courseId, timestamp);
+            qrUrl = qrCodeUtil.generateMultiClassAttendanceQrUrl(courseId, timestamp);
+        } else {
+            qrContent = qrCodeUtil.generateAttendanceQrContent(courseId, timestamp);
+            qrUrl = qrCodeUtil.generateAttendanceQrUrl(courseId, timestamp);
+        }
+        byte[] png = qrCodeUtil.generateQrCodePng(qrUrl, imageSize, imageSize);
+        String etag = "\"" + key(courseId, multiClass) + "-" + window + "\"";
+        return new RenderedQr(window, timestamp, qrContent, png, qrCodeUtil.toDataUri(png), etag);
+    }
+
+    private long currentWindow() {
+        return System.currentTimeMillis() / 1000 / rotateSeconds;
+    }
+
+    private static String key(String courseId, boolean multiClass) {
+        return multiClass ? courseId + ":M" : courseId;
+    }
+
+    /**
+     * 活跃课程，保存当前窗口和下一窗口的图片
+     */
+    private static class ActiveQr {
+        private final String courseId;
+        private final boolean multiClass;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private volatile RenderedQr current;
+        private volatile RenderedQr next;
+
+        private ActiveQr(String courseId, boolean multiClass) {
+            this.courseId = courseId;
+            this.multiClass = multiClass;
+        }
+
+        private synchronized RenderedQr find(long window) {
+            if (current != null && current.getWindow() == window) {
+                return current;
+            }
+            if (next != null && next.getWindow() == window) {
+                return next;
+            }
+            return null;
+        }
+
+        private synchronized void store(RenderedQr qr) {
+            // 保留窗口最新的两张图片
+            if (next == null || qr.getWindow() > next.getWindow()) {
+                current = next;
+                next = qr;
+            } else if (qr.getWindow() < next.getWindow()) {
+                current = qr;
+            }
+        }
+    }
+
+    /**
+     * 已渲染的二维码
+     */
+    public static class RenderedQr {
+        private final long window;
+        private final long timestamp;
+        private final String qrContent;
+        private final byte[] png;
+        private final String dataUri;
+        private final String etag;
+
+        public RenderedQr(long window, long timestamp, String qrContent, byte[] png, String dataUri, String etag) {
+            this.window = window;
+            this.timestamp = timestamp;
+            this.qrContent = qrContent;
+            this.png = png;
+            this.dataUri = dataUri;
+            this.etag = etag;
+        }
+
+        public long getWindow() {
+            return window;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getQrContent() {
+            return qrContent;
+        }
+
+        public byte[] getPng() {
+            return png;
+        }
+
+        public String getDataUri() {
+            return dataUri;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
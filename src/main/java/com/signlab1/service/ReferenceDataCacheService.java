@@ -0,0 +1,229 @@
+package com.signlab1.service;
+
+import com.signlab1.entity.Class;
+import com.signlab1.entity.Course;
+import com.signlab1.entity.User;
+import com.signlab1.mapper.ClassMapper;
+import com.signlab1.mapper.CourseMapper;
+import com.signlab1.mapper.UserMapper;
+import com.signlab1.util.ExpiringLruCache;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 基础数据缓存服务
+ * 缓存课程、班级、用户的单条查询结果，数据写入时由调用方精确失效
+ * 注意：返回的实体为共享对象，调用方不得修改
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReferenceDataCacheService {
+
+    private final CourseMapper courseMapper;
+    private final ClassMapper classMapper;
+    private final UserMapper userMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cache.reference.max-size:5000}")
+    private int maxSize;
+
+    @Value("${cache.reference.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private ExpiringLruCache<String, Course> courseCache;
+    private ExpiringLruCache<String, Class> classCache;
+    private ExpiringLruCache<String, User> userCache;
+
+    @PostConstruct
+    public void init() {
+        courseCache = new ExpiringLruCache<>(maxSize, ttlSeconds);
+        classCache = new ExpiringLruCache<>(maxSize, ttlSeconds);
+        userCache = new ExpiringLruCache<>(maxSize, ttlSeconds);
+
+        registerMetrics("course", courseCache);
+        registerMetrics("class", classCache);
+        registerMetrics("user", userCache);
+
+        log.info("基础数据缓存初始化完成: maxSize={}, ttlSeconds={}", maxSize, ttlSeconds);
+    }
+
+    /**
+     * 根据课程ID获取课程
+     */
+    public Course getCourse(String courseId) {
+        if (courseId == null) {
+            return null;
+        }
+        return courseCache.get(courseId, id -> {
+            QueryWrapper<Course> query = new QueryWrapper<>();
+            query.eq("course_id", id);
+            return courseMapper.selectOne(query);
+        });
+    }
+
+    /**
+     * 根据班级编号获取班级
+     */
+    public Class getClassByCode(String classCode) {
+        if (classCode == null) {
+            return null;
+        }
+        return classCache.get(classCode, code -> {
+            QueryWrapper<Class> query = new QueryWrapper<>();
+            query.eq("class_code", code);
+            return classMapper.selectOne(query);
+        });
+    }
+
+    /**
+     * 根据用户名获取用户
+     */
+    public User getUser(String username) {
+        if (username == null) {
+            return null;
+        }
+        return userCache.get(username, name -> {
+            QueryWrapper<User> query = new QueryWrapper<>();
+            query.eq("username", name);
+            return userMapper.selectOne(query);
+        });
+    }
+
+    /**
+     * 批量获取课程，未命中部分合并为一次IN查询
+     */
+    public Map<String, Course> getCourses(Collection<String> courseIds) {
+        return batchLoad(courseIds, courseCache, ids -> {
+            QueryWrapper<Course> query = new QueryWrapper<>();
+            query.in("course_id", ids);
+            return courseMapper.selectList(query);
+        }, Course::getCourseId);
+    }
+
+    /**
+     * 批量获取班级，未命中部分合并为一次IN查询
+     */
+    public Map<String, Class> getClassesByCode(Collection<String> classCodes) {
+        return batchLoad(classCodes, classCache, codes -> {
+            QueryWrapper<Class> query = new QueryWrapper<>();
+            query.in("class_code", codes);
+            return classMapper.selectList(query);
+        }, Class::getClassCode);
+    }
+
+    /**
+     * 批量获取用户，未命中部分合并为一次IN查询
+     */
+    public Map<String, User> getUsers(Collection<String> usernames) {
+        return batchLoad(usernames, userCache, names -> {
+            QueryWrapper<User> query = new QueryWrapper<>();
+            query.in("username", names);
+            return userMapper.selectList(query);
+        }, User::getUsername);
+    }
+
+    /**
+     * 课程数据变更后失效
+     */
+    public void evictCourse(String courseId) {
+        if (courseId != null) {
+            courseCache.invalidate(courseId);
+        }
+    }
+
+    /**
+     * 班级数据变更后失效
+     */
+    public void evictClass(String classCode) {
+        if (classCode != null) {
+            classCache.invalidate(classCode);
+        }
+    }
+
+    /**
+     * 用户数据变更后失效
+     */
+    public void evictUser(String username) {
+        if (username != null) {
+            userCache.invalidate(username);
+        }
+    }
+
+    /**
+     * 清空全部缓存
+     */
+    public void evictAll() {
+        courseCache.invalidateAll();
+        classCache.invalidateAll();
+        userCache.invalidateAll();
+    }
+
+    private <T> Map<String, T> batchLoad(Collection<String> keys,
+                                         ExpiringLruCache<String, T> cache,
+                                         Function<List<String>, List<T>> loader,
+                                         Function<T, String> keyExtractor) {
+        Map<String, T> result = new HashMap<>();
+        if (keys == null || keys.isEmpty()) {
+            return result;
+        }
+
+        // 1. 先从缓存中取
+        List<String> missing = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            if (key == null) {
+                continue;
+            }
+            T cached = cache.get(key);
+            if (cached != null) {
+                result.put(key, cached);
+            } else {
+                missing.add(key);
+            }
+        }
+
+        // 2. 未命中的一次性查询并回填
+        if (!missing.isEmpty()) {
+            long generation = cache.currentGeneration();
+            for (T loaded : loader.apply(missing)) {
+                String key = keyExtractor.apply(loaded);
+                result.put(key, loaded);
+                cache.putIfGeneration(key, loaded, generation);
+            }
+        }
+        return result;
+    }
+
+    private void registerMetrics(String name, ExpiringLruCache<String, ?> cache) {
+        FunctionCounter.builder("signlab.cache.requests", cache, ExpiringLruCache::getHitCount)
+                .tag("cache", name).tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("signlab.cache.requests", cache, ExpiringLruCache::getMissCount)
+                .tag("cache", name).tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("signlab.cache.evictions", cache, ExpiringLruCache::getEvictionCount)
+                .tag("cache", name)
+                .register(meterRegistry);
+        Gauge.builder("signlab.cache.hit.ratio", cache, ExpiringLruCache::getHitRatio)
+                .tag("cache", name)
+                .register(meterRegistry);
+        Gauge.builder("signlab.cache.size", cache, ExpiringLruCache::size)
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+}
@@ -24,6 +24,7 @@ import java.util.regex.Pattern;
 public class ScheduleParserService {
     
     private final ClassMapper classMapper;
+    private final ReferenceDataCacheService referenceDataCacheService;
     
     /**
      * 解析上课时间地点字符串，生成课程列表
@@ -139,6 +140,7 @@ public class ScheduleParserService {
                 newClass.setIsDeleted(0);
                 
                 classMapper.insert(newClass);
+                referenceDataCacheService.evictClass(newClass.getClassCode());
                 course.setClassCode(newClass.getClassCode());
                 System.out.println("创建新班级: " + className + ", 班级编号: " + newClass.getClassCode());
             }
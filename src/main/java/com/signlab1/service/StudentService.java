@@ -8,19 +8,28 @@ import com.signlab1.entity.ClassPhoto;
 import com.signlab1.entity.Course;
 import com.signlab1.entity.StudentClassRelation;
 import com.signlab1.entity.User;
+import com.signlab1.event.AttendanceChangedEvent;
 import com.signlab1.mapper.*;
+import com.signlab1.util.ExpiringLruCache;
 import com.signlab1.util.FileUploadUtil;
 import com.signlab1.util.QrCodeUtil;
 import com.signlab1.util.TimeSlotParser;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.web.multipart.MultipartFile;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,45 +51,78 @@ public class StudentService {
     private final QrCodeUtil qrCodeUtil;
     private final FileUploadUtil fileUploadUtil;
     private final WordDocumentService wordDocumentService;
-    private final TimeSlotParser timeSlotParser;
+    private final ReferenceDataCacheService referenceDataCacheService;
+    private final AttendanceWriteBehindService attendanceWriteBehindService;
+    private final CourseRosterService courseRosterService;
+    private final CourseSessionIndexService courseSessionIndexService;
+    private final CourseAttendanceSummaryService courseAttendanceSummaryService;
+    private final CourseSnapshotService courseSnapshotService;
+    private final StudentTimetableService studentTimetableService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${attendance.records-cache.max-students:5000}")
+    private int recordsCacheMaxStudents;
+    
+    // 兜底刷新时间，课程名称、地点等变化最多延迟这么久
+    @Value("${attendance.records-cache.ttl-seconds:600}")
+    private long recordsCacheTtlSeconds;
+    
+    // 学生签到记录列表，key为学号；DTO为共享对象，调用方不得修改
+    private ExpiringLruCache<String, List<AttendanceRecordDto>> attendanceRecordsCache;
+    
+    @Value("${attendance.last-cache.max-students:10000}")
+    private int lastCacheMaxStudents;
+    
+    @Value("${attendance.last-cache.ttl-seconds:1800}")
+    private long lastCacheTtlSeconds;
+    
+    // 学生最近一次签到，key为学号；扫码签到时直接更新，老师修改时失效
+    private ExpiringLruCache<String, LastAttendancePointer> lastAttendanceCache;
+    
+    @PostConstruct
+    public void init() {
+        attendanceRecordsCache = new ExpiringLruCache<>(recordsCacheMaxStudents, recordsCacheTtlSeconds);
+        Gauge.builder("signlab.student_records_cache.size", attendanceRecordsCache, ExpiringLruCache::size)
+                .register(meterRegistry);
+        Gauge.builder("signlab.student_records_cache.hit.ratio", attendanceRecordsCache, ExpiringLruCache::getHitRatio)
+                .register(meterRegistry);
+        lastAttendanceCache = new ExpiringLruCache<>(lastCacheMaxStudents, lastCacheTtlSeconds);
+        Gauge.builder("signlab.last_attendance_cache.size", lastAttendanceCache, ExpiringLruCache::size)
+                .register(meterRegistry);
+        Gauge.builder("signlab.last_attendance_cache.hit.ratio", lastAttendanceCache, ExpiringLruCache::getHitRatio)
+                .register(meterRegistry);
+    }
     
     /**
      * 扫码签到
      */
     public AttendanceResultDto scanAttendance(String studentCode, String qrData) {
         try {
-            // 1. 解析二维码内容
-            Map<String, String> qrContent = qrCodeUtil.parseAttendanceQrContent(qrData);
-            String courseId = qrContent.get("courseId");
-            String teacherCode = qrContent.get("teacherCode");
-            String classCode = qrContent.get("classCode");
-            String isMultiClass = qrContent.get("isMultiClass");
-            String timestampStr = qrContent.get("timestamp");
+            // 1. 解析并校验二维码（签名不正确直接拒绝）
+            QrCodeUtil.AttendanceQrToken qrToken = qrCodeUtil.parseAttendanceQrToken(qrData);
+            String courseId = qrToken.getCourseId();
             
             // 2. 验证二维码时效性（30秒有效期）
-            Long timestamp = Long.parseLong(timestampStr);
-            
             // 如果是测试课程，跳过时间验证
             if ("TEST_COURSE".equals(courseId)) {
                 // 跳过时间验证，继续执行
             } else {
                 // 正常的时间验证
-                if (!qrCodeUtil.isQrCodeValid(timestamp, 30)) {
+                if (!qrCodeUtil.isQrCodeValid(qrToken.getTimestamp(), 30)) {
                     throw new RuntimeException("二维码已过期，请重新扫描");
                 }
             }
             
             // 3. 验证课程是否存在
-            QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-            courseQuery.eq("course_id", courseId);
-            Course course = courseMapper.selectOne(courseQuery);
+            Course course = referenceDataCacheService.getCourse(courseId);
             if (course == null) {
                 throw new RuntimeException("课程不存在");
             }
             
             // 4. 智能签到逻辑：优先记录到学生自己的课程，否则记录为跨班签到
             String actualCourseId = courseId; // 默认记录到当前课程
-            String actualClassCode = classCode; // 默认记录到当前班级
+            String actualClassCode = course.getClassCode(); // 默认记录到当前班级
             boolean isCrossClassAttendance = false;
             
             // 查找学生是否有同一老师同一时间的课程
@@ -93,41 +135,43 @@ public class StudentService {
                     .map(StudentClassRelation::getClassCode)
                     .collect(Collectors.toSet());
                 
-                // 查找同一老师同一时间的课程
-                QueryWrapper<Course> sameTimeQuery = new QueryWrapper<>();
-                sameTimeQuery.eq("teacher_username", course.getTeacherUsername())
-                            .eq("course_date", course.getCourseDate())
-                            .eq("time_slot", course.getTimeSlot());
-                List<Course> sameTimeCourses = courseMapper.selectList(sameTimeQuery);
+                // 查找同一老师同一时间的课程（课次索引，内存哈希查找）
+                Course ownCourse = courseSessionIndexService.getSessionGroup(course)
+                        .findCourseForClasses(studentClassCodes);
                 
-                // 检查学生是否有自己的课程
-                for (Course sameTimeCourse : sameTimeCourses) {
-                    if (studentClassCodes.contains(sameTimeCourse.getClassCode())) {
-                        // 找到学生自己的课程，记录到自己的课程
-                        actualCourseId = sameTimeCourse.getCourseId();
-                        actualClassCode = sameTimeCourse.getClassCode();
-                        isCrossClassAttendance = false;
-                        break;
+                if (ownCourse != null) {
+                    // 找到学生自己的课程，记录到自己的课程
+                    actualCourseId = ownCourse.getCourseId();
+                    actualClassCode = ownCourse.getClassCode();
+                } else {
+                    // 多班级课程中附加班级的学生在花名册内，不算跨班
+                    CourseRosterService.CourseRoster roster = courseRosterService.getRoster(courseId);
+                    String rosterClassCode = null;
+                    if (roster != null) {
+                        for (StudentClassRelation relation : studentRelations) {
+                            if (roster.getClassCodes().contains(relation.getClassCode())) {
+                                rosterClassCode = relation.getClassCode();
+                                break;
+                            }
+                        }
+                    }
+                    if (rosterClassCode != null) {
+                        actualClassCode = rosterClassCode;
+                    } else {
+                        // 没找到学生自己的课程，则记录为跨班签到
+                        isCrossClassAttendance = true;
+                        // 使用学生的第一个班级作为实际班级
+                        actualClassCode = studentRelations.get(0).getClassCode();
                     }
-                }
-                
-                // 如果没找到学生自己的课程，则记录为跨班签到
-                if (actualCourseId.equals(courseId)) {
-                    isCrossClassAttendance = true;
-                    // 使用学生的第一个班级作为实际班级
-                    actualClassCode = studentRelations.get(0).getClassCode();
                 }
             } else {
                 // 学生没有绑定班级，不允许签到
                 throw new RuntimeException("您尚未绑定班级，无法签到");
             }
             
-            // 5. 检查是否已签到（检查实际要记录的课程）
-            QueryWrapper<AttendanceRecord> attendanceQuery = new QueryWrapper<>();
-            attendanceQuery.eq("course_id", actualCourseId)
-                          .eq("student_username", studentCode);
-            AttendanceRecord existingRecord = attendanceRecordMapper.selectOne(attendanceQuery);
-            if (existingRecord != null) {
+            // 5. 检查是否已签到（检查实际要记录的课程，包括已入队尚未落库的签到）
+            if (attendanceWriteBehindService.isPending(actualCourseId, studentCode)
+                    || !courseRosterService.tryMarkAttended(actualCourseId, studentCode)) {
                 throw new RuntimeException("您已经签到过了");
             }
             
@@ -137,13 +181,24 @@ public class StudentService {
             record.setStudentUsername(studentCode);
             record.setAttendanceTime(LocalDateTime.now());
             record.setAttendanceStatus(1); // 1-已签到
+            record.setClassCode(actualClassCode);
+            record.setIsCrossClass(isCrossClassAttendance ? 1 : 0);
             
-            attendanceRecordMapper.insert(record);
+            // 启用异步写入时入队后直接返回，队列满或未启用时同步写入
+            try {
+                if (!attendanceWriteBehindService.submit(record)) {
+                    courseAttendanceSummaryService.saveScannedAttendance(Collections.singletonList(record));
+                }
+            } catch (RuntimeException e) {
+                // 写入失败时撤销花名册中的签到标记
+                courseRosterService.updateAttendance(actualCourseId, studentCode, false);
+                throw e;
+            }
+            eventPublisher.publishEvent(new AttendanceChangedEvent(
+                actualCourseId, studentCode, true, record.getAttendanceTime(), "scan"));
             
             // 6. 获取老师信息
-            QueryWrapper<User> teacherQuery = new QueryWrapper<>();
-            teacherQuery.eq("username", teacherCode);
-            User teacher = userMapper.selectOne(teacherQuery);
+            User teacher = referenceDataCacheService.getUser(course.getTeacherUsername());
             
             // 7. 构建返回结果
             AttendanceResultDto result = new AttendanceResultDto();
@@ -168,46 +223,78 @@ public class StudentService {
     
     /**
      * 获取签到记录
+     * 结果按学生缓存，该学生签到变化时失效
      */
     public List<AttendanceRecordDto> getAttendanceRecords(String studentCode) {
         try {
-            // 查询学生的签到记录
-            QueryWrapper<AttendanceRecord> query = new QueryWrapper<>();
-            query.eq("student_username", studentCode)
-                .orderByDesc("attendance_time");
-            
-            List<AttendanceRecord> records = attendanceRecordMapper.selectList(query);
-            
-            // 转换为DTO
-            return records.stream().map(record -> {
-                AttendanceRecordDto dto = new AttendanceRecordDto();
-                dto.setCourseId(record.getCourseId());
-                dto.setAttendanceTime(record.getAttendanceTime());
-                dto.setStatus(record.getAttendanceStatus());
-                
-                // 获取课程信息
-                QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-                courseQuery.eq("course_id", record.getCourseId());
-                Course course = courseMapper.selectOne(courseQuery);
-                if (course != null) {
-                    dto.setCourseName(course.getCourseName());
-                    dto.setLocation(course.getLocation());
-                    
-                    // 获取老师信息
-                    QueryWrapper<User> teacherQuery = new QueryWrapper<>();
-                    teacherQuery.eq("username", course.getTeacherUsername());
-                    User teacher = userMapper.selectOne(teacherQuery);
-                    dto.setTeacherName(teacher != null ? teacher.getName() : "未知老师");
-                }
-                
-                return dto;
-            }).collect(Collectors.toList());
-            
+            // 签到尚在异步写入队列中时直接查库，避免缓存缺少这条记录的结果
+            if (attendanceWriteBehindService.hasPendingForStudent(studentCode)) {
+                return loadAttendanceRecords(studentCode);
+            }
+            return attendanceRecordsCache.get(studentCode, this::loadAttendanceRecords);
         } catch (Exception e) {
             throw new RuntimeException("获取签到记录失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 签到状态变化（扫码或老师修改）后失效该学生的签到记录缓存，并维护最近一次签到
+     * 扫码签到可能尚未落库，直接以本次签到作为最近一次签到；
+     * 老师修改的记录已同步写库，且可能保留原签到IP，失效后按索引重新读取；
+     * 事务提交后才处理，避免失效后并发请求读到未提交前的旧数据并重新缓存
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAttendanceChanged(AttendanceChangedEvent event) {
+        String studentCode = event.getStudentCode();
+        attendanceRecordsCache.invalidate(studentCode);
+        
+        // 先失效再写入，丢弃与本次签到并发的旧加载结果；
+        // 异步写入失败时会发布取消签到事件并撤销花名册标记，
+        // 取消事件先于本次签到事件处理时以花名册为准，不写入已取消的签到
+        lastAttendanceCache.invalidate(studentCode);
+        if (event.isAttended() && "scan".equals(event.getSource())
+                && courseRosterService.hasAttended(event.getCourseId(), studentCode)) {
+            lastAttendanceCache.put(studentCode,
+                new LastAttendancePointer(event.getCourseId(), event.getAttendanceTime(), 1, null));
+        }
+    }
+    
+    private List<AttendanceRecordDto> loadAttendanceRecords(String studentCode) {
+        // 1. 查询学生的签到记录
+        QueryWrapper<AttendanceRecord> query = new QueryWrapper<>();
+        query.eq("student_username", studentCode)
+            .orderByDesc("attendance_time");
+        List<AttendanceRecord> records = attendanceRecordMapper.selectList(query);
+        
+        // 2. 批量获取课程和老师信息（缓存未命中的部分各一次IN查询）
+        Map<String, Course> courseMap = referenceDataCacheService.getCourses(records.stream()
+                .map(AttendanceRecord::getCourseId)
+                .collect(Collectors.toSet()));
+        Map<String, User> teacherMap = referenceDataCacheService.getUsers(courseMap.values().stream()
+                .map(Course::getTeacherUsername)
+                .collect(Collectors.toSet()));
+        
+        // 3. 转换为DTO
+        List<AttendanceRecordDto> result = new ArrayList<>(records.size());
+        for (AttendanceRecord record : records) {
+            AttendanceRecordDto dto = new AttendanceRecordDto();
+            dto.setCourseId(record.getCourseId());
+            dto.setAttendanceTime(record.getAttendanceTime());
+            dto.setStatus(record.getAttendanceStatus());
+            
+            Course course = courseMap.get(record.getCourseId());
+            if (course != null) {
+                dto.setCourseName(course.getCourseName());
+                dto.setLocation(course.getLocation());
+                
+                User teacher = teacherMap.get(course.getTeacherUsername());
+                dto.setTeacherName(teacher != null ? teacher.getName() : "未知老师");
+            }
+            result.add(dto);
+        }
+        return Collections.unmodifiableList(result);
+    }
+    
     /**
      * 获取签到统计
      */
@@ -288,6 +375,9 @@ public class StudentService {
             
             System.out.println("准备插入绑定关系: " + relation.toString());
             studentClassRelationMapper.insert(relation);
+            courseRosterService.invalidateByClass(clazz.getClassCode());
+            courseAttendanceSummaryService.rebuildByClass(clazz.getClassCode());
+            studentTimetableService.invalidateStudent(studentCode);
             System.out.println("绑定关系插入成功");
             
         } catch (Exception e) {
@@ -314,9 +404,7 @@ public class StudentService {
                 dto.setBindTime(relation.getBindTime());
                 
                 // 获取班级信息
-                QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                classQuery.eq("class_code", relation.getClassCode());
-                Class clazz = classMapper.selectOne(classQuery);
+                Class clazz = referenceDataCacheService.getClassByCode(relation.getClassCode());
                 if (clazz != null) {
                     dto.setClassName(clazz.getClassName());
                 }
@@ -335,9 +423,7 @@ public class StudentService {
     public PhotoUploadResponse uploadClassPhoto(String studentCode, String courseId, MultipartFile file, String remark) {
         try {
             // 1. 验证课程是否存在
-            QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-            courseQuery.eq("course_id", courseId);
-            Course course = courseMapper.selectOne(courseQuery);
+            Course course = referenceDataCacheService.getCourse(courseId);
             if (course == null) {
                 throw new RuntimeException("课程不存在");
             }
@@ -406,17 +492,13 @@ public class StudentService {
                 dto.setUploadTime(photo.getUploadTime());
                 
                 // 获取课程信息
-                QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-                courseQuery.eq("course_id", photo.getCourseId());
-                Course course = courseMapper.selectOne(courseQuery);
+                Course course = referenceDataCacheService.getCourse(photo.getCourseId());
                 if (course != null) {
                     dto.setCourseName(course.getCourseName());
                 }
                 
                 // 获取学生信息
-                QueryWrapper<User> userQuery = new QueryWrapper<>();
-                userQuery.eq("username", photo.getStudentUsername());
-                User student = userMapper.selectOne(userQuery);
+                User student = referenceDataCacheService.getUser(photo.getStudentUsername());
                 if (student != null) {
                     dto.setStudentName(student.getName());
                 }
@@ -453,17 +535,13 @@ public class StudentService {
                 dto.setUploadTime(photo.getUploadTime());
                 
                 // 获取课程信息
-                QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-                courseQuery.eq("course_id", photo.getCourseId());
-                Course course = courseMapper.selectOne(courseQuery);
+                Course course = referenceDataCacheService.getCourse(photo.getCourseId());
                 if (course != null) {
                     dto.setCourseName(course.getCourseName());
                 }
                 
                 // 获取学生信息
-                QueryWrapper<User> userQuery = new QueryWrapper<>();
-                userQuery.eq("username", photo.getStudentUsername());
-                User student = userMapper.selectOne(userQuery);
+                User student = referenceDataCacheService.getUser(photo.getStudentUsername());
                 if (student != null) {
                     dto.setStudentName(student.getName());
                 }
@@ -518,70 +596,44 @@ public class StudentService {
     }
     
     /**
-     * 获取正在进行的课程
+     * 获取正在进行的课程（今天的课程，所有学生共用课程快照）
      */
     public List<CurrentCourseDto> getCurrentCourses() {
         try {
-            // 获取今天的课程
-            LocalDate today = LocalDate.now();
-            String todayStr = today.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            
-            QueryWrapper<Course> query = new QueryWrapper<>();
-            query.eq("course_date", todayStr)
-                 .orderByAsc("time_slot");
-            
-            List<Course> courses = courseMapper.selectList(query);
+            CourseSnapshotService.Snapshot snapshot = courseSnapshotService.getSnapshot();
+            LocalDateTime now = LocalDateTime.now();
             
-            return courses.stream().map(course -> {
+            List<CurrentCourseDto> result = new ArrayList<>();
+            List<CourseSnapshotService.CourseView> courses = snapshot.getCourses();
+            for (int i = 0; i < courses.size(); i++) {
+                CourseSnapshotService.CourseView course = courses.get(i);
+                if (!course.getDate().equals(snapshot.getToday())) {
+                    continue;
+                }
                 CurrentCourseDto dto = new CurrentCourseDto();
                 dto.setCourseId(course.getCourseId());
                 dto.setCourseName(course.getCourseName());
                 dto.setTeacherUsername(course.getTeacherUsername());
+                dto.setTeacherName(course.getTeacherName());
                 dto.setClassCode(course.getClassCode());
+                dto.setClassName(course.getClassName());
                 dto.setLocation(course.getLocation());
                 dto.setCourseDate(course.getCourseDate());
                 dto.setTimeSlot(course.getTimeSlot());
                 
-                // 获取课程状态
-                TimeSlotParser.CourseStatusInfo statusInfo = timeSlotParser.getCourseStatus(
-                    course.getCourseDate(), course.getTimeSlot());
+                // 课程状态按当前时间计算
+                TimeSlotParser.CourseStatusInfo statusInfo = courseSnapshotService.getCourseStatus(course, now);
                 dto.setCourseStatus(statusInfo.getStatus());
                 dto.setStatusDescription(statusInfo.getDescription());
                 dto.setMinutesRemaining(statusInfo.getMinutesRemaining());
                 
-                // 获取教师信息
-                QueryWrapper<User> teacherQuery = new QueryWrapper<>();
-                teacherQuery.eq("username", course.getTeacherUsername());
-                User teacher = userMapper.selectOne(teacherQuery);
-                if (teacher != null) {
-                    dto.setTeacherName(teacher.getName());
-                }
-                
-                // 获取班级信息
-                QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                classQuery.eq("class_code", course.getClassCode());
-                Class clazz = classMapper.selectOne(classQuery);
-                if (clazz != null) {
-                    dto.setClassName(clazz.getClassName());
-                    dto.setTotalStudents(clazz.getStudentCount());
-                }
-                
-                // 获取签到人数
-                QueryWrapper<AttendanceRecord> attendanceQuery = new QueryWrapper<>();
-                attendanceQuery.eq("course_id", course.getCourseId());
-                long attendanceCount = attendanceRecordMapper.selectCount(attendanceQuery);
-                dto.setAttendanceCount((int) attendanceCount);
-                
-                // 计算签到率
-                if (dto.getTotalStudents() != null && dto.getTotalStudents() > 0) {
-                    double rate = (double) dto.getAttendanceCount() / dto.getTotalStudents() * 100;
-                    dto.setAttendanceRate(Math.round(rate * 100.0) / 100.0);
-                } else {
-                    dto.setAttendanceRate(0.0);
-                }
-                
-                return dto;
-            }).collect(Collectors.toList());
+                // 签到人数和签到率
+                dto.setTotalStudents(course.getTotalStudents());
+                dto.setAttendanceCount(snapshot.getAttendanceCount(i));
+                dto.setAttendanceRate(calculateAttendanceRate(dto.getAttendanceCount(), dto.getTotalStudents()));
+                result.add(dto);
+            }
+            return result;
             
         } catch (Exception e) {
             throw new RuntimeException("获取当前课程失败: " + e.getMessage());
@@ -589,168 +641,66 @@ public class StudentService {
     }
     
     /**
-     * 获取最近的课程（今天和昨天）
+     * 获取最近的课程（今天和昨天，所有学生共用课程快照）
      */
     public List<RecentCourseDto> getRecentCourses() {
         try {
-            LocalDate today = LocalDate.now();
-            LocalDate yesterday = today.minusDays(1);
-            
-            String todayStr = today.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            String yesterdayStr = yesterday.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            
-            QueryWrapper<Course> query = new QueryWrapper<>();
-            query.in("course_date", todayStr, yesterdayStr)
-                 .orderByAsc("course_date")
-                 .orderByAsc("time_slot");
-            
-            List<Course> courses = courseMapper.selectList(query);
+            CourseSnapshotService.Snapshot snapshot = courseSnapshotService.getSnapshot();
+            LocalDateTime now = LocalDateTime.now();
             
-            return courses.stream().map(course -> {
+            List<RecentCourseDto> result = new ArrayList<>();
+            List<CourseSnapshotService.CourseView> courses = snapshot.getCourses();
+            for (int i = 0; i < courses.size(); i++) {
+                CourseSnapshotService.CourseView course = courses.get(i);
                 RecentCourseDto dto = new RecentCourseDto();
                 dto.setCourseId(course.getCourseId());
                 dto.setCourseName(course.getCourseName());
                 dto.setTeacherUsername(course.getTeacherUsername());
+                dto.setTeacherName(course.getTeacherName());
                 dto.setClassCode(course.getClassCode());
+                dto.setClassName(course.getClassName());
                 dto.setLocation(course.getLocation());
                 dto.setCourseDate(course.getCourseDate());
                 dto.setTimeSlot(course.getTimeSlot());
                 
-                // 获取课程状态
-                TimeSlotParser.CourseStatusInfo statusInfo = timeSlotParser.getCourseStatus(
-                    course.getCourseDate(), course.getTimeSlot());
+                // 课程状态按当前时间计算
+                TimeSlotParser.CourseStatusInfo statusInfo = courseSnapshotService.getCourseStatus(course, now);
                 dto.setCourseStatus(statusInfo.getStatus());
                 dto.setStatusDescription(statusInfo.getDescription());
                 
-                // 获取教师信息
-                QueryWrapper<User> teacherQuery = new QueryWrapper<>();
-                teacherQuery.eq("username", course.getTeacherUsername());
-                User teacher = userMapper.selectOne(teacherQuery);
-                if (teacher != null) {
-                    dto.setTeacherName(teacher.getName());
-                }
+                // 签到人数和签到率
+                dto.setTotalStudents(course.getTotalStudents());
+                dto.setAttendanceCount(snapshot.getAttendanceCount(i));
+                dto.setAttendanceRate(calculateAttendanceRate(dto.getAttendanceCount(), dto.getTotalStudents()));
                 
-                // 获取班级信息
-                QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                classQuery.eq("class_code", course.getClassCode());
-                Class clazz = classMapper.selectOne(classQuery);
-                if (clazz != null) {
-                    dto.setClassName(clazz.getClassName());
-                    dto.setTotalStudents(clazz.getStudentCount());
-                }
-                
-                // 获取签到人数
-                QueryWrapper<AttendanceRecord> attendanceQuery = new QueryWrapper<>();
-                attendanceQuery.eq("course_id", course.getCourseId());
-                long attendanceCount = attendanceRecordMapper.selectCount(attendanceQuery);
-                dto.setAttendanceCount((int) attendanceCount);
-                
-                // 计算签到率
-                if (dto.getTotalStudents() != null && dto.getTotalStudents() > 0) {
-                    double rate = (double) dto.getAttendanceCount() / dto.getTotalStudents() * 100;
-                    dto.setAttendanceRate(Math.round(rate * 100.0) / 100.0);
-                } else {
-                    dto.setAttendanceRate(0.0);
-                }
-                
-                // 设置时间描述
-                LocalDate courseDate = LocalDate.parse(course.getCourseDate());
-                if (courseDate.equals(today)) {
-                    dto.setTimeDescription("今天");
-                } else if (courseDate.equals(yesterday)) {
-                    dto.setTimeDescription("昨天");
-                } else {
-                    dto.setTimeDescription(course.getCourseDate());
-                }
-                
-                return dto;
-            }).collect(Collectors.toList());
+                // 设置时间描述（快照只包含今天和昨天）
+                dto.setTimeDescription(course.getDate().equals(snapshot.getToday()) ? "今天" : "昨天");
+                result.add(dto);
+            }
+            return result;
             
         } catch (Exception e) {
             throw new RuntimeException("获取最近课程失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 计算签到率（百分比，保留两位小数）
+     */
+    private static double calculateAttendanceRate(int attendanceCount, Integer totalStudents) {
+        if (totalStudents == null || totalStudents <= 0) {
+            return 0.0;
+        }
+        double rate = (double) attendanceCount / totalStudents * 100;
+        return Math.round(rate * 100.0) / 100.0;
+    }
+    
     /**
      * 获取学生的所有课程
      */
     public List<CourseInfoDto> getStudentCourses(String studentCode) {
         try {
-            // 获取学生绑定的班级
-            QueryWrapper<StudentClassRelation> relationQuery = new QueryWrapper<>();
-            relationQuery.eq("student_username", studentCode);
-            List<StudentClassRelation> relations = studentClassRelationMapper.selectList(relationQuery);
-            
-            if (relations.isEmpty()) {
-                return new ArrayList<>();
-            }
-            
-            // 获取班级代码列表
-            List<String> classCodes = relations.stream()
-                    .map(StudentClassRelation::getClassCode)
-                    .collect(Collectors.toList());
-            
-            // 查询这些班级的课程
-            QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-            courseQuery.in("class_code", classCodes)
-                    .orderByAsc("course_date")
-                    .orderByAsc("time_slot");
-            
-            List<Course> courses = courseMapper.selectList(courseQuery);
-            
-            // 性能优化：批量查询班级和教师信息
-            Set<String> courseClassCodes = courses.stream()
-                    .map(Course::getClassCode)
-                    .collect(Collectors.toSet());
-            Set<String> teacherUsernames = courses.stream()
-                    .map(Course::getTeacherUsername)
-                    .filter(username -> username != null && !username.isEmpty())
-                    .collect(Collectors.toSet());
-            
-            // 批量查询班级信息
-            Map<String, String> classNameMap = new HashMap<>();
-            if (!courseClassCodes.isEmpty()) {
-                QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                classQuery.in("class_code", courseClassCodes);
-                List<Class> classes = classMapper.selectList(classQuery);
-                classNameMap = classes.stream()
-                        .collect(Collectors.toMap(Class::getClassCode, Class::getClassName));
-            }
-            
-            // 批量查询教师信息
-            Map<String, String> teacherNameMap = new HashMap<>();
-            if (!teacherUsernames.isEmpty()) {
-                QueryWrapper<User> teacherQuery = new QueryWrapper<>();
-                teacherQuery.in("username", teacherUsernames);
-                List<User> teachers = userMapper.selectList(teacherQuery);
-                teacherNameMap = teachers.stream()
-                        .collect(Collectors.toMap(User::getUsername, User::getName));
-            }
-            
-            // 构建最终结果
-            final Map<String, String> finalClassNameMap = classNameMap;
-            final Map<String, String> finalTeacherNameMap = teacherNameMap;
-            
-            return courses.stream().map(course -> {
-                CourseInfoDto dto = new CourseInfoDto();
-                dto.setCourseId(course.getCourseId());
-                dto.setCourseName(course.getCourseName());
-                dto.setTimeSlot(course.getTimeSlot());
-                dto.setLocation(course.getLocation());
-                dto.setCourseDate(course.getCourseDate());
-                dto.setTeacherUsername(course.getTeacherUsername());
-                dto.setClassCode(course.getClassCode());
-                
-                // 使用缓存的班级名称
-                dto.setClassName(finalClassNameMap.getOrDefault(course.getClassCode(), course.getClassCode()));
-                
-                // 使用缓存的教师姓名
-                String teacherName = finalTeacherNameMap.get(course.getTeacherUsername());
-                dto.setTeacherName(teacherName != null ? teacherName : course.getTeacherUsername());
-                
-                return dto;
-            }).collect(Collectors.toList());
-            
+            return studentTimetableService.getCourses(studentCode);
         } catch (Exception e) {
             throw new RuntimeException("获取学生课程失败: " + e.getMessage());
         }
@@ -761,80 +711,51 @@ public class StudentService {
      */
     public List<CourseInfoDto> getStudentCoursesByDate(String studentCode, String date) {
         try {
-            // 获取学生绑定的班级
-            QueryWrapper<StudentClassRelation> relationQuery = new QueryWrapper<>();
-            relationQuery.eq("student_username", studentCode);
-            List<StudentClassRelation> relations = studentClassRelationMapper.selectList(relationQuery);
-            
-            if (relations.isEmpty()) {
-                return new ArrayList<>();
-            }
-            
-            // 获取班级代码列表
-            List<String> classCodes = relations.stream()
-                    .map(StudentClassRelation::getClassCode)
-                    .collect(Collectors.toList());
-            
-            // 查询指定日期的课程
-            QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-            courseQuery.in("class_code", classCodes)
-                    .eq("course_date", date)
-                    .orderByAsc("time_slot");
-            
-            List<Course> courses = courseMapper.selectList(courseQuery);
-            
-            return courses.stream().map(course -> {
-                CourseInfoDto dto = new CourseInfoDto();
-                dto.setCourseId(course.getCourseId());
-                dto.setCourseName(course.getCourseName());
-                dto.setTimeSlot(course.getTimeSlot());
-                dto.setLocation(course.getLocation());
-                dto.setCourseDate(course.getCourseDate());
-                dto.setTeacherUsername(course.getTeacherUsername());
-                dto.setClassCode(course.getClassCode());
-                
-                // 获取班级名称
-                QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                classQuery.eq("class_code", course.getClassCode());
-                Class clazz = classMapper.selectOne(classQuery);
-                dto.setClassName(clazz != null ? clazz.getClassName() : course.getClassCode());
-                
-                // 获取教师姓名
-                if (course.getTeacherUsername() != null && !course.getTeacherUsername().isEmpty()) {
-                    QueryWrapper<User> teacherQuery = new QueryWrapper<>();
-                    teacherQuery.eq("username", course.getTeacherUsername());
-                    User teacher = userMapper.selectOne(teacherQuery);
-                    dto.setTeacherName(teacher != null ? teacher.getName() : course.getTeacherUsername());
-                }
-                
-                return dto;
-            }).collect(Collectors.toList());
-            
+            return studentTimetableService.getCoursesOn(studentCode, date);
         } catch (Exception e) {
             throw new RuntimeException("按日期获取学生课程失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 按日期区间获取学生的课程（包含首尾两天）
+     */
+    public List<CourseInfoDto> getStudentCoursesBetween(String studentCode, String startDate, String endDate) {
+        try {
+            LocalDate start = LocalDate.parse(startDate);
+            LocalDate end = LocalDate.parse(endDate);
+            if (start.isAfter(end)) {
+                throw new RuntimeException("开始日期不能晚于结束日期");
+            }
+            return studentTimetableService.getCoursesBetween(studentCode, start.toString(), end.toString());
+        } catch (DateTimeParseException e) {
+            throw new RuntimeException("按日期区间获取学生课程失败: 日期格式应为yyyy-MM-dd");
+        } catch (Exception e) {
+            throw new RuntimeException("按日期区间获取学生课程失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 获取学生最近一次签到记录的课程
      */
     public LastAttendanceDto getLastAttendanceCourse(String studentCode) {
         try {
-            // 查询学生最近的签到记录
-            QueryWrapper<AttendanceRecord> query = new QueryWrapper<>();
-            query.eq("student_username", studentCode)
-                .orderByDesc("attendance_time")
-                .last("LIMIT 1");
-            
-            AttendanceRecord lastRecord = attendanceRecordMapper.selectOne(query);
-            if (lastRecord == null) {
+            // 读取学生最近一次签到；签到尚在异步写入队列中时不缓存查库结果
+            LastAttendancePointer lastRecord;
+            if (attendanceWriteBehindService.hasPendingForStudent(studentCode)) {
+                lastRecord = lastAttendanceCache.get(studentCode);
+                if (lastRecord == null) {
+                    lastRecord = loadLastAttendance(studentCode);
+                }
+            } else {
+                lastRecord = lastAttendanceCache.get(studentCode, this::loadLastAttendance);
+            }
+            if (lastRecord.getCourseId() == null) {
                 return null; // 没有签到记录
             }
             
             // 获取课程信息
-            QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-            courseQuery.eq("course_id", lastRecord.getCourseId());
-            Course course = courseMapper.selectOne(courseQuery);
+            Course course = referenceDataCacheService.getCourse(lastRecord.getCourseId());
             if (course == null) {
                 return null; // 课程不存在
             }
@@ -871,17 +792,13 @@ public class StudentService {
             dto.setStatusDescription(statusDescription);
             
             // 获取教师信息
-            QueryWrapper<User> teacherQuery = new QueryWrapper<>();
-            teacherQuery.eq("username", course.getTeacherUsername());
-            User teacher = userMapper.selectOne(teacherQuery);
+            User teacher = referenceDataCacheService.getUser(course.getTeacherUsername());
             if (teacher != null) {
                 dto.setTeacherName(teacher.getName());
             }
             
             // 获取班级信息
-            QueryWrapper<Class> classQuery = new QueryWrapper<>();
-            classQuery.eq("class_code", course.getClassCode());
-            Class clazz = classMapper.selectOne(classQuery);
+            Class clazz = referenceDataCacheService.getClassByCode(course.getClassCode());
             if (clazz != null) {
                 dto.setClassName(clazz.getClassName());
             }
@@ -910,101 +827,141 @@ public class StudentService {
         }
     }
     
+    /**
+     * 按 (student_username, attendance_time) 索引读取学生最近一次签到，没有签到时返回空指针对象
+     */
+    private LastAttendancePointer loadLastAttendance(String studentCode) {
+        QueryWrapper<AttendanceRecord> query = new QueryWrapper<>();
+        query.select("course_id", "attendance_time", "attendance_status", "ip_address")
+            .eq("student_username", studentCode)
+            .orderByDesc("attendance_time")
+            .last("LIMIT 1");
+        AttendanceRecord record = attendanceRecordMapper.selectOne(query);
+        if (record == null) {
+            return LastAttendancePointer.NONE;
+        }
+        return new LastAttendancePointer(record.getCourseId(), record.getAttendanceTime(),
+            record.getAttendanceStatus(), record.getIpAddress());
+    }
+    
     /**
      * 获取学生所有已签到的课程
+     * 一条聚合查询取得课程、老师和班级信息；只有存在未回填班级归属的记录时，
+     * 才额外查询学生绑定的班级，查询次数与已签到课程数无关
      */
     public List<AttendedCourseDto> getAttendedCourses(String studentCode) {
         try {
-            // 查询学生的所有签到记录
-            QueryWrapper<AttendanceRecord> query = new QueryWrapper<>();
-            query.eq("student_username", studentCode)
-                .eq("attendance_status", 1) // 只查询已签到的记录
-                .orderByDesc("attendance_time");
-            
-            List<AttendanceRecord> records = attendanceRecordMapper.selectList(query);
-            
-            // 按课程ID分组，统计签到次数
-            Map<String, List<AttendanceRecord>> courseAttendanceMap = records.stream()
-                .collect(Collectors.groupingBy(AttendanceRecord::getCourseId));
+            // 1. 按课程聚合学生的签到记录
+            List<AttendedCourseRowDto> rows = attendanceRecordMapper.selectAttendedCourses(studentCode);
             
-            // 转换为DTO
-            return courseAttendanceMap.entrySet().stream().map(entry -> {
-                String courseId = entry.getKey();
-                List<AttendanceRecord> courseRecords = entry.getValue();
-                
-                AttendedCourseDto dto = new AttendedCourseDto();
-                dto.setCourseId(courseId);
-                dto.setAttendanceCount(courseRecords.size());
-                
-                // 获取最新的签到时间
-                AttendanceRecord latestRecord = courseRecords.get(0);
-                dto.setAttendanceTime(latestRecord.getAttendanceTime());
-                
-                // 获取课程信息
-                QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-                courseQuery.eq("course_id", courseId);
-                Course course = courseMapper.selectOne(courseQuery);
-                
-                if (course != null) {
-                    dto.setCourseName(course.getCourseName());
-                    dto.setLocation(course.getLocation());
-                    dto.setCourseDate(course.getCourseDate());
-                    
-                    // 解析时间段
-                    String timeSlot = course.getTimeSlot();
-                    if (timeSlot != null && timeSlot.contains("-")) {
-                        String[] timeParts = timeSlot.split("-");
-                        if (timeParts.length == 2) {
-                            dto.setStartTime(timeParts[0].trim());
-                            dto.setEndTime(timeParts[1].trim());
-                        }
-                    } else {
-                        dto.setStartTime(timeSlot);
-                        dto.setEndTime(timeSlot);
-                    }
-                    
-                    // 获取老师信息
-                    QueryWrapper<User> teacherQuery = new QueryWrapper<>();
-                    teacherQuery.eq("username", course.getTeacherUsername());
-                    User teacher = userMapper.selectOne(teacherQuery);
-                    dto.setTeacherName(teacher != null ? teacher.getName() : "未知老师");
-                    
-                    // 判断是否为跨班签到
+            // 2. 历史记录尚未回填班级归属时，按学生绑定的班级判断
+            List<StudentClassRelation> relations = null;
+            for (AttendedCourseRowDto row : rows) {
+                if (row.getCourseName() != null && (row.getIsCrossClass() == null || row.getStudentClassCode() == null)) {
                     QueryWrapper<StudentClassRelation> relationQuery = new QueryWrapper<>();
                     relationQuery.eq("student_username", studentCode)
                         .eq("is_deleted", 0);
-                    List<StudentClassRelation> relations = studentClassRelationMapper.selectList(relationQuery);
-                    
-                    Set<String> studentClassCodes = relations.stream()
-                        .map(StudentClassRelation::getClassCode)
-                        .collect(Collectors.toSet());
-                    
-                    // 如果学生的班级代码与课程的班级代码不匹配，则为跨班签到
-                    dto.setIsCrossClass(!studentClassCodes.contains(course.getClassCode()));
-                    
-                    // 如果是跨班签到，获取课程所属班级信息
-                    if (dto.getIsCrossClass()) {
-                        QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                        classQuery.eq("class_code", course.getClassCode());
-                        Class courseClass = classMapper.selectOne(classQuery);
-                        dto.setClassName(courseClass != null ? courseClass.getClassName() : "未知班级");
-                    } else {
-                        // 获取学生自己的班级信息
-                        if (!relations.isEmpty()) {
-                            String studentClassCode = relations.get(0).getClassCode();
-                            QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                            classQuery.eq("class_code", studentClassCode);
-                            Class studentClass = classMapper.selectOne(classQuery);
-                            dto.setClassName(studentClass != null ? studentClass.getClassName() : "未知班级");
-                        }
+                    relations = studentClassRelationMapper.selectList(relationQuery);
+                    break;
+                }
+            }
+            Set<String> studentClassCodes = relations != null
+                ? relations.stream().map(StudentClassRelation::getClassCode).collect(Collectors.toSet())
+                : Collections.emptySet();
+            String ownClassName = null;
+            if (relations != null && !relations.isEmpty()) {
+                Class studentClass = referenceDataCacheService.getClassByCode(relations.get(0).getClassCode());
+                ownClassName = studentClass != null ? studentClass.getClassName() : null;
+            }
+            
+            // 3. 转换为DTO
+            List<AttendedCourseDto> result = new ArrayList<>(rows.size());
+            for (AttendedCourseRowDto row : rows) {
+                AttendedCourseDto dto = new AttendedCourseDto();
+                dto.setCourseId(row.getCourseId());
+                dto.setAttendanceCount(row.getAttendanceCount());
+                dto.setAttendanceTime(row.getAttendanceTime());
+                result.add(dto);
+                
+                // 课程已删除时只返回签到信息
+                if (row.getCourseName() == null) {
+                    continue;
+                }
+                dto.setCourseName(row.getCourseName());
+                dto.setLocation(row.getLocation());
+                dto.setCourseDate(row.getCourseDate());
+                
+                // 解析时间段
+                String timeSlot = row.getTimeSlot();
+                if (timeSlot != null && timeSlot.contains("-")) {
+                    String[] timeParts = timeSlot.split("-");
+                    if (timeParts.length == 2) {
+                        dto.setStartTime(timeParts[0].trim());
+                        dto.setEndTime(timeParts[1].trim());
                     }
+                } else {
+                    dto.setStartTime(timeSlot);
+                    dto.setEndTime(timeSlot);
                 }
                 
-                return dto;
-            }).collect(Collectors.toList());
+                dto.setTeacherName(row.getTeacherName() != null ? row.getTeacherName() : "未知老师");
+                
+                // 跨班标记优先使用签到记录上保存的结果
+                dto.setIsCrossClass(row.getIsCrossClass() != null
+                    ? row.getIsCrossClass() == 1
+                    : !studentClassCodes.contains(row.getCourseClassCode()));
+                
+                // 跨班签到显示课程所属班级，否则显示学生自己的班级
+                String className;
+                if (dto.getIsCrossClass()) {
+                    className = row.getCourseClassName();
+                } else if (row.getStudentClassCode() != null) {
+                    className = row.getStudentClassName();
+                } else {
+                    className = ownClassName;
+                }
+                dto.setClassName(className != null ? className : "未知班级");
+            }
+            return result;
             
         } catch (Exception e) {
             throw new RuntimeException("获取已签到课程失败: " + e.getMessage());
         }
     }
+    
+    /**
+     * 学生最近一次签到，构建后只读；课程ID为空表示没有签到记录
+     */
+    private static final class LastAttendancePointer {
+        private static final LastAttendancePointer NONE = new LastAttendancePointer(null, null, null, null);
+        
+        private final String courseId;
+        private final LocalDateTime attendanceTime;
+        private final Integer attendanceStatus;
+        private final String ipAddress;
+        
+        private LastAttendancePointer(String courseId, LocalDateTime attendanceTime,
+                                      Integer attendanceStatus, String ipAddress) {
+            this.courseId = courseId;
+            this.attendanceTime = attendanceTime;
+            this.attendanceStatus = attendanceStatus;
+            this.ipAddress = ipAddress;
+        }
+        
+        String getCourseId() {
+            return courseId;
+        }
+        
+        LocalDateTime getAttendanceTime() {
+            return attendanceTime;
+        }
+        
+        Integer getAttendanceStatus() {
+            return attendanceStatus;
+        }
+        
+        String getIpAddress() {
+            return ipAddress;
+        }
+    }
 }
@@ -0,0 +1,190 @@
+package com.signlab1.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.signlab1.dto.CourseInfoDto;
+import com.signlab1.entity.Class;
+import com.signlab1.entity.Course;
+import com.signlab1.entity.StudentClassRelation;
+import com.signlab1.entity.User;
+import com.signlab1.mapper.CourseMapper;
+import com.signlab1.mapper.StudentClassRelationMapper;
+import com.signlab1.util.ExpiringLruCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 学生课表服务
+ * 首次查询时加载学生所在班级的全部课程，按日期建立有序索引并缓存，
+ * 按天、按周或按日期区间查询课程直接在内存中完成；
+ * 学生绑定班级、导入课程或学生名单时主动失效
+ */
+@Service
+@RequiredArgsConstructor
+public class StudentTimetableService {
+
+    private final StudentClassRelationMapper studentClassRelationMapper;
+    private final CourseMapper courseMapper;
+    private final ReferenceDataCacheService referenceDataCacheService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${timetable.max-students:5000}")
+    private int maxStudents;
+
+    // 兜底刷新时间，老师姓名、班级名称的变化最多延迟这么久
+    @Value("${timetable.ttl-seconds:1800}")
+    private long ttlSeconds;
+
+    private ExpiringLruCache<String, Timetable> timetables;
+
+    @PostConstruct
+    public void init() {
+        timetables = new ExpiringLruCache<>(maxStudents, ttlSeconds);
+        Gauge.builder("signlab.student_timetable.size", timetables, ExpiringLruCache::size).register(meterRegistry);
+        Gauge.builder("signlab.student_timetable.hit.ratio", timetables, ExpiringLruCache::getHitRatio)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取学生的全部课程，按日期、时间段升序
+     */
+    public List<CourseInfoDto> getCourses(String studentCode) {
+        return flatten(getTimetable(studentCode).coursesByDate);
+    }
+
+    /**
+     * 获取学生某一天的课程，按时间段升序
+     * @param date 课程日期，格式 yyyy-MM-dd
+     */
+    public List<CourseInfoDto> getCoursesOn(String studentCode, String date) {
+        List<CourseInfoDto> courses = getTimetable(studentCode).coursesByDate.get(date);
+        return courses != null ? new ArrayList<>(courses) : new ArrayList<>();
+    }
+
+    /**
+     * 获取学生日期区间内的课程（包含首尾两天），按日期、时间段升序
+     * @param startDate 开始日期，格式 yyyy-MM-dd
+     * @param endDate 结束日期，格式 yyyy-MM-dd
+     */
+    public List<CourseInfoDto> getCoursesBetween(String studentCode, String startDate, String endDate) {
+        if (startDate.compareTo(endDate) > 0) {
+            return new ArrayList<>();
+        }
+        return flatten(getTimetable(studentCode).coursesByDate.subMap(startDate, true, endDate, true));
+    }
+
+    /**
+     * 学生绑定班级后失效
+     */
+    public void invalidateStudent(String studentCode) {
+        timetables.invalidate(studentCode);
+    }
+
+    /**
+     * 班级课程变化后失效该班级所有学生的课表
+     */
+    public void invalidateByClass(String classCode) {
+        timetables.invalidateValuesIf(timetable -> timetable.classCodes.contains(classCode));
+    }
+
+    /**
+     * 批量导入学生名单等场景清空全部课表
+     */
+    public void invalidateAll() {
+        timetables.invalidateAll();
+    }
+
+    private Timetable getTimetable(String studentCode) {
+        return timetables.get(studentCode, this::loadTimetable);
+    }
+
+    private Timetable loadTimetable(String studentCode) {
+        // 1. 获取学生绑定的班级
+        QueryWrapper<StudentClassRelation> relationQuery = new QueryWrapper<>();
+        relationQuery.eq("student_username", studentCode);
+        Set<String> classCodes = new LinkedHashSet<>();
+        for (StudentClassRelation relation : studentClassRelationMapper.selectList(relationQuery)) {
+            classCodes.add(relation.getClassCode());
+        }
+        if (classCodes.isEmpty()) {
+            return new Timetable(Collections.emptySet(), Collections.emptyNavigableMap());
+        }
+
+        // 2. 查询这些班级的课程
+        QueryWrapper<Course> courseQuery = new QueryWrapper<>();
+        courseQuery.in("class_code", classCodes)
+                .orderByAsc("course_date")
+                .orderByAsc("time_slot");
+        List<Course> courses = courseMapper.selectList(courseQuery);
+
+        // 3. 批量获取班级和教师信息
+        Set<String> courseClassCodes = new HashSet<>();
+        Set<String> teacherUsernames = new HashSet<>();
+        for (Course course : courses) {
+            courseClassCodes.add(course.getClassCode());
+            if (course.getTeacherUsername() != null && !course.getTeacherUsername().isEmpty()) {
+                teacherUsernames.add(course.getTeacherUsername());
+            }
+        }
+        Map<String, Class> classes = referenceDataCacheService.getClassesByCode(courseClassCodes);
+        Map<String, User> teachers = referenceDataCacheService.getUsers(teacherUsernames);
+
+        // 4. 按日期建立索引，查询结果已按时间段排序
+        TreeMap<String, List<CourseInfoDto>> coursesByDate = new TreeMap<>();
+        for (Course course : courses) {
+            CourseInfoDto dto = new CourseInfoDto();
+            dto.setCourseId(course.getCourseId());
+            dto.setCourseName(course.getCourseName());
+            dto.setTimeSlot(course.getTimeSlot());
+            dto.setLocation(course.getLocation());
+            dto.setCourseDate(course.getCourseDate());
+            dto.setTeacherUsername(course.getTeacherUsername());
+            dto.setClassCode(course.getClassCode());
+
+            Class clazz = classes.get(course.getClassCode());
+            dto.setClassName(clazz != null ? clazz.getClassName() : course.getClassCode());
+            User teacher = course.getTeacherUsername() != null ? teachers.get(course.getTeacherUsername()) : null;
+            dto.setTeacherName(teacher != null ? teacher.getName() : course.getTeacherUsername());
+
+            coursesByDate.computeIfAbsent(course.getCourseDate(), k -> new ArrayList<>()).add(dto);
+        }
+        coursesByDate.replaceAll((date, dayCourses) -> Collections.unmodifiableList(dayCourses));
+        return new Timetable(Collections.unmodifiableSet(classCodes),
+                Collections.unmodifiableNavigableMap(coursesByDate));
+    }
+
+    private static List<CourseInfoDto> flatten(Map<String, List<CourseInfoDto>> coursesByDate) {
+        List<CourseInfoDto> result = new ArrayList<>();
+        for (List<CourseInfoDto> dayCourses : coursesByDate.values()) {
+            result.addAll(dayCourses);
+        }
+        return result;
+    }
+
+    /**
+     * 单个学生的课表，构建后只读
+     * 注意：课程DTO为共享对象，调用方不得修改
+     */
+    private static class Timetable {
+        private final Set<String> classCodes;
+        private final NavigableMap<String, List<CourseInfoDto>> coursesByDate;
+
+        private Timetable(Set<String> classCodes, NavigableMap<String, List<CourseInfoDto>> coursesByDate) {
+            this.classCodes = classCodes;
+            this.coursesByDate = coursesByDate;
+        }
+    }
+}
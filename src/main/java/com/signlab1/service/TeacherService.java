@@ -1,25 +1,37 @@
 package com.signlab1.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.signlab1.dto.*;
 import com.signlab1.entity.AttendanceRecord;
 import com.signlab1.entity.Class;
 import com.signlab1.entity.Course;
+import com.signlab1.entity.CourseAttendanceSummary;
 import com.signlab1.entity.MultiClassCourse;
 import com.signlab1.entity.StudentClassRelation;
 import com.signlab1.entity.StudentDocument;
 import com.signlab1.entity.User;
+import com.signlab1.event.AttendanceChangedEvent;
 import com.signlab1.mapper.*;
 import com.signlab1.util.QrCodeUtil;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.Set;
@@ -39,6 +51,23 @@ public class TeacherService {
     private final UserMapper userMapper;
     private final MultiClassCourseMapper multiClassCourseMapper;
     private final QrCodeUtil qrCodeUtil;
+    private final ReferenceDataCacheService referenceDataCacheService;
+    private final CourseRosterService courseRosterService;
+    private final CourseAttendanceSummaryService courseAttendanceSummaryService;
+    private final AttendanceClassificationService attendanceClassificationService;
+    private final QrImageService qrImageService;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    // 批量修改签到的单次上限和每条SQL的行数
+    private static final int MAX_BULK_ATTENDANCE_SIZE = 1000;
+    private static final int BULK_ATTENDANCE_BATCH_SIZE = 200;
+    
+    // 签到列表可排序字段 -> SQL排序表达式
+    private static final Map<String, String> ATTENDANCE_SORT_COLUMNS = Map.of(
+            "studentCode", "r.student_username",
+            "studentName", "student_name",
+            "attendanceStatus", "attendance_status",
+            "attendanceTime", "a.attendance_time");
     
     public TeacherService(CourseMapper courseMapper, ClassMapper classMapper, 
                          AttendanceRecordMapper attendanceRecordMapper, 
@@ -46,7 +75,13 @@ public class TeacherService {
                          StudentClassRelationMapper studentClassRelationMapper,
                          UserMapper userMapper,
                          MultiClassCourseMapper multiClassCourseMapper,
-                         QrCodeUtil qrCodeUtil) {
+                         QrCodeUtil qrCodeUtil,
+                         ReferenceDataCacheService referenceDataCacheService,
+                         CourseRosterService courseRosterService,
+                         CourseAttendanceSummaryService courseAttendanceSummaryService,
+                         AttendanceClassificationService attendanceClassificationService,
+                         QrImageService qrImageService,
+                         ApplicationEventPublisher eventPublisher) {
         this.courseMapper = courseMapper;
         this.classMapper = classMapper;
         this.attendanceRecordMapper = attendanceRecordMapper;
@@ -55,6 +90,12 @@ public class TeacherService {
         this.userMapper = userMapper;
         this.multiClassCourseMapper = multiClassCourseMapper;
         this.qrCodeUtil = qrCodeUtil;
+        this.referenceDataCacheService = referenceDataCacheService;
+        this.courseRosterService = courseRosterService;
+        this.courseAttendanceSummaryService = courseAttendanceSummaryService;
+        this.attendanceClassificationService = attendanceClassificationService;
+        this.qrImageService = qrImageService;
+        this.eventPublisher = eventPublisher;
     }
     
     /**
@@ -63,12 +104,9 @@ public class TeacherService {
     public List<CourseInfoDto> getTodayCourses(String teacherUsername) {
         try {
             // 先验证教师用户是否存在
-            QueryWrapper<User> userQuery = new QueryWrapper<>();
-            userQuery.eq("username", teacherUsername);
-            userQuery.eq("role", "teacher");
-            User teacher = userMapper.selectOne(userQuery);
+            User teacher = referenceDataCacheService.getUser(teacherUsername);
             
-            if (teacher == null) {
+            if (teacher == null || !"teacher".equals(teacher.getRole())) {
                 throw new RuntimeException("权限不足，无法访问该资源");
             }
             
@@ -85,55 +123,9 @@ public class TeacherService {
      */
     public List<CourseInfoDto> getAllCourses(String teacherCode) {
         try {
-            QueryWrapper<Course> queryWrapper = new QueryWrapper<>();
-            queryWrapper.eq("teacher_username", teacherCode);
-            queryWrapper.orderByAsc("course_date").orderByAsc("time_slot");
-            
-            List<Course> courses = courseMapper.selectList(queryWrapper);
-            List<CourseInfoDto> result = new ArrayList<>();
-            
-            for (Course course : courses) {
-                try {
-                    CourseInfoDto dto = new CourseInfoDto();
-                    dto.setCourseId(course.getCourseId());
-                    dto.setCourseName(course.getCourseName());
-                    dto.setTimeSlot(course.getTimeSlot());
-                    dto.setLocation(course.getLocation());
-                    dto.setCourseDate(course.getCourseDate());
-                    
-                    // 获取班级名称
-                    try {
-                        QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                        classQuery.eq("class_code", course.getClassCode());
-                        Class clazz = classMapper.selectOne(classQuery);
-                        dto.setClassName(clazz != null ? clazz.getClassName() : course.getClassCode());
-                    } catch (Exception e) {
-                        dto.setClassName(course.getClassCode());
-                    }
-                    
-                    // 移除时间限制，允许所有课程都可以发起签到
-                    dto.setCanStartAttendance(true);
-                    
-                    // 获取学生文档数量
-                    try {
-                        QueryWrapper<StudentDocument> docQuery = new QueryWrapper<>();
-                        docQuery.eq("course_id", course.getCourseId());
-                        int docCount = studentDocumentMapper.selectCount(docQuery).intValue();
-                        dto.setDocumentCount(docCount);
-                        dto.setCanViewDocuments(docCount > 0);
-                    } catch (Exception e) {
-                        dto.setDocumentCount(0);
-                        dto.setCanViewDocuments(false);
-                    }
-                    
-                    result.add(dto);
-                } catch (Exception e) {
-                    System.err.println("处理课程 " + course.getCourseId() + " 时出错: " + e.getMessage());
-                    // 继续处理下一个课程
-                }
-            }
-            
-            return result;
+            List<CourseInfoDto> courses = courseMapper.selectTeacherCourses(teacherCode, null, null, null, null, null);
+            courses.forEach(this::fillCourseFlags);
+            return courses;
         } catch (Exception e) {
             System.err.println("查询所有课程失败: " + e.getMessage());
             return new ArrayList<>();
@@ -145,59 +137,77 @@ public class TeacherService {
      */
     public List<CourseInfoDto> getCoursesByDate(String teacherCode, String date) {
         try {
-            QueryWrapper<Course> queryWrapper = new QueryWrapper<>();
-            queryWrapper.eq("teacher_username", teacherCode);
-            queryWrapper.eq("course_date", date);
-            queryWrapper.orderByAsc("time_slot");
-            
-            List<Course> courses = courseMapper.selectList(queryWrapper);
-            List<CourseInfoDto> result = new ArrayList<>();
+            List<CourseInfoDto> courses = courseMapper.selectTeacherCourses(teacherCode, date, null, null, null, null);
+            courses.forEach(this::fillCourseFlags);
+            return courses;
+        } catch (Exception e) {
+            System.err.println("查询课程失败: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * 游标分页获取老师课程，按日期、时间段、课程ID排序
+     * @param cursor 上一页返回的游标，首页传null
+     * @param size 每页条数
+     */
+    public CursorPageDto<CourseInfoDto> getCoursesByCursor(String teacherCode, String cursor, int size) {
+        try {
+            if (size < 1 || size > 200) {
+                throw new RuntimeException("分页参数错误");
+            }
             
-            for (Course course : courses) {
-                try {
-                    CourseInfoDto dto = new CourseInfoDto();
-                    dto.setCourseId(course.getCourseId());
-                    dto.setCourseName(course.getCourseName());
-                    dto.setTimeSlot(course.getTimeSlot());
-                    dto.setLocation(course.getLocation());
-                    dto.setCourseDate(course.getCourseDate());
-                    
-                    // 获取班级名称
-                    try {
-                        QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                        classQuery.eq("class_code", course.getClassCode());
-                        Class clazz = classMapper.selectOne(classQuery);
-                        dto.setClassName(clazz != null ? clazz.getClassName() : course.getClassCode());
-                    } catch (Exception e) {
-                        dto.setClassName(course.getClassCode());
-                    }
-                    
-                    // 移除时间限制，允许所有课程都可以发起签到
-                    dto.setCanStartAttendance(true);
-                    
-                    // 获取学生文档数量
-                    try {
-                        QueryWrapper<StudentDocument> docQuery = new QueryWrapper<>();
-                        docQuery.eq("course_id", course.getCourseId());
-                        int docCount = studentDocumentMapper.selectCount(docQuery).intValue();
-                        dto.setDocumentCount(docCount);
-                        dto.setCanViewDocuments(docCount > 0);
-                    } catch (Exception e) {
-                        dto.setDocumentCount(0);
-                        dto.setCanViewDocuments(false);
-                    }
-                    
-                    result.add(dto);
-                } catch (Exception e) {
-                    System.err.println("处理课程 " + course.getCourseId() + " 时出错: " + e.getMessage());
-                    // 继续处理下一个课程
-                }
+            String[] after = cursor == null || cursor.trim().isEmpty() ? null : decodeCourseCursor(cursor.trim());
+            // 多取一条用于判断是否还有下一页
+            List<CourseInfoDto> courses = courseMapper.selectTeacherCourses(teacherCode, null,
+                    after != null ? after[0] : null,
+                    after != null ? after[1] : null,
+                    after != null ? after[2] : null,
+                    size + 1);
+            
+            boolean hasMore = courses.size() > size;
+            if (hasMore) {
+                courses = new ArrayList<>(courses.subList(0, size));
             }
+            courses.forEach(this::fillCourseFlags);
             
-            return result;
+            CursorPageDto<CourseInfoDto> page = new CursorPageDto<>();
+            page.setRecords(courses);
+            page.setHasMore(hasMore);
+            page.setNextCursor(hasMore ? encodeCourseCursor(courses.get(courses.size() - 1)) : null);
+            return page;
         } catch (Exception e) {
-            System.err.println("查询课程失败: " + e.getMessage());
-            return new ArrayList<>();
+            throw new RuntimeException("获取课程失败: " + e.getMessage());
+        }
+    }
+    
+    private void fillCourseFlags(CourseInfoDto dto) {
+        // 移除时间限制，允许所有课程都可以发起签到
+        dto.setCanStartAttendance(true);
+        if (dto.getDocumentCount() == null) {
+            dto.setDocumentCount(0);
+        }
+        dto.setCanViewDocuments(dto.getDocumentCount() > 0);
+    }
+    
+    /**
+     * 游标格式：课程日期、时间段、课程ID以换行分隔后做URL安全Base64编码
+     */
+    private static String encodeCourseCursor(CourseInfoDto last) {
+        String raw = last.getCourseDate() + "\n" + last.getTimeSlot() + "\n" + last.getCourseId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String[] decodeCourseCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", -1);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException();
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("分页游标无效");
         }
     }
     
@@ -206,9 +216,7 @@ public class TeacherService {
      */
     public AttendanceQrDto generateAttendanceQr(String courseId) {
         // 获取课程信息
-        QueryWrapper<Course> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("course_id", courseId);
-        Course course = courseMapper.selectOne(queryWrapper);
+        Course course = referenceDataCacheService.getCourse(courseId);
         
         if (course == null) {
             throw new RuntimeException("课程不存在");
@@ -219,25 +227,29 @@ public class TeacherService {
         //     throw new RuntimeException("未到上课时间，无法发起签到");
         // }
         
-        // 生成二维码内容
-        long timestamp = System.currentTimeMillis() / 1000; // 秒级时间戳
-        String qrContent = qrCodeUtil.generateAttendanceQrContent(
-            courseId, course.getTeacherUsername(), course.getClassCode(), timestamp);
-        
-        // 生成二维码URL（用于微信扫码跳转）
-        String qrUrl = qrCodeUtil.generateAttendanceQrUrl(
-            courseId, course.getTeacherUsername(), course.getClassCode(), timestamp);
-        
-        // 生成二维码图片（使用URL格式）
-        String qrImage = qrCodeUtil.generateQrCodeBase64(qrUrl, 300, 300);
-        
+        // 获取当前窗口的二维码（已预渲染则直接使用缓存）
+        QrImageService.RenderedQr qr = qrImageService.getCurrentQr(courseId, false);
+        return toAttendanceQrDto(courseId, qr);
+    }
+    
+    /**
+     * 获取签到二维码图片（PNG）
+     */
+    public QrImageService.RenderedQr getAttendanceQrImage(String courseId, boolean universal) {
+        Course course = referenceDataCacheService.getCourse(courseId);
+        if (course == null) {
+            throw new RuntimeException("课程不存在");
+        }
+        return qrImageService.getCurrentQr(courseId, universal);
+    }
+    
+    private AttendanceQrDto toAttendanceQrDto(String courseId, QrImageService.RenderedQr qr) {
         AttendanceQrDto dto = new AttendanceQrDto();
-        dto.setQrContent(qrContent);
-        dto.setQrImage(qrImage);
+        dto.setQrContent(qr.getQrContent());
+        dto.setQrImage(qr.getDataUri());
         dto.setCourseId(courseId);
-        dto.setTimestamp(timestamp);
-        dto.setRemainingTime(qrCodeUtil.getRemainingTime(timestamp, 30)); // 动态计算剩余时间
-        
+        dto.setTimestamp(qr.getTimestamp());
+        dto.setRemainingTime(qrCodeUtil.getRemainingTime(qr.getTimestamp(), 30)); // 动态计算剩余时间
         return dto;
     }
     
@@ -246,41 +258,15 @@ public class TeacherService {
      */
     public AttendanceQrDto generateUniversalAttendanceQr(String courseId) {
         // 获取课程信息
-        QueryWrapper<Course> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("course_id", courseId);
-        Course course = courseMapper.selectOne(queryWrapper);
+        Course course = referenceDataCacheService.getCourse(courseId);
         
         if (course == null) {
             throw new RuntimeException("课程不存在");
         }
         
-        // 查找同一老师同一时间的其他课程
-        QueryWrapper<Course> sameTimeQuery = new QueryWrapper<>();
-        sameTimeQuery.eq("teacher_username", course.getTeacherUsername())
-                    .eq("course_date", course.getCourseDate())
-                    .eq("time_slot", course.getTimeSlot());
-        List<Course> sameTimeCourses = courseMapper.selectList(sameTimeQuery);
-        
-        // 生成通用二维码内容（使用老师信息，不限制班级）
-        long timestamp = System.currentTimeMillis() / 1000; // 秒级时间戳
-        String qrContent = qrCodeUtil.generateMultiClassAttendanceQrContent(
-            courseId, course.getTeacherUsername(), timestamp);
-        
-        // 生成通用二维码URL（用于微信扫码跳转）
-        String qrUrl = qrCodeUtil.generateMultiClassAttendanceQrUrl(
-            courseId, course.getTeacherUsername(), timestamp);
-        
-        // 生成二维码图片（使用URL格式）
-        String qrImage = qrCodeUtil.generateQrCodeBase64(qrUrl, 300, 300);
-        
-        AttendanceQrDto dto = new AttendanceQrDto();
-        dto.setQrContent(qrContent);
-        dto.setQrImage(qrImage);
-        dto.setCourseId(courseId);
-        dto.setTimestamp(timestamp);
-        dto.setRemainingTime(qrCodeUtil.getRemainingTime(timestamp, 30)); // 动态计算剩余时间
-        
-        return dto;
+        // 获取通用二维码（不限制班级，已预渲染则直接使用缓存）
+        QrImageService.RenderedQr qr = qrImageService.getCurrentQr(courseId, true);
+        return toAttendanceQrDto(courseId, qr);
     }
     
     /**
@@ -289,9 +275,7 @@ public class TeacherService {
     public void configureMultiClassCourse(MultiClassCourseRequest request) {
         try {
             // 验证课程是否存在
-            QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-            courseQuery.eq("course_id", request.getCourseId());
-            Course course = courseMapper.selectOne(courseQuery);
+            Course course = referenceDataCacheService.getCourse(request.getCourseId());
             
             if (course == null) {
                 throw new RuntimeException("课程不存在");
@@ -310,9 +294,7 @@ public class TeacherService {
             // 添加新的多班级配置
             for (String classCode : request.getClassCodes()) {
                 // 验证班级是否存在
-                QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                classQuery.eq("class_code", classCode);
-                Class classEntity = classMapper.selectOne(classQuery);
+                Class classEntity = referenceDataCacheService.getClassByCode(classCode);
                 
                 if (classEntity == null) {
                     throw new RuntimeException("班级不存在: " + classCode);
@@ -326,6 +308,8 @@ public class TeacherService {
                 
                 multiClassCourseMapper.insert(multiClassCourse);
             }
+            courseRosterService.invalidate(request.getCourseId());
+            courseAttendanceSummaryService.rebuildCourses(Collections.singletonList(request.getCourseId()));
             
         } catch (Exception e) {
             throw new RuntimeException("配置多班级课程失败: " + e.getMessage());
@@ -338,9 +322,7 @@ public class TeacherService {
     public MultiClassCourseInfoDto getMultiClassCourseInfo(String courseId) {
         try {
             // 获取课程基本信息
-            QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-            courseQuery.eq("course_id", courseId);
-            Course course = courseMapper.selectOne(courseQuery);
+            Course course = referenceDataCacheService.getCourse(courseId);
             
             if (course == null) {
                 throw new RuntimeException("课程不存在");
@@ -351,9 +333,7 @@ public class TeacherService {
             dto.setCourseName(course.getCourseName());
             
             // 获取教师信息
-            QueryWrapper<User> teacherQuery = new QueryWrapper<>();
-            teacherQuery.eq("username", course.getTeacherUsername());
-            User teacher = userMapper.selectOne(teacherQuery);
+            User teacher = referenceDataCacheService.getUser(course.getTeacherUsername());
             dto.setTeacherName(teacher != null ? teacher.getName() : "未知老师");
             
             // 获取多班级配置
@@ -366,9 +346,7 @@ public class TeacherService {
             // 获取班级信息
             List<ClassInfoDto> classInfos = new ArrayList<>();
             for (MultiClassCourse multiClassCourse : multiClassCourses) {
-                QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                classQuery.eq("class_code", multiClassCourse.getClassCode());
-                Class classEntity = classMapper.selectOne(classQuery);
+                Class classEntity = referenceDataCacheService.getClassByCode(multiClassCourse.getClassCode());
                 
                 if (classEntity != null) {
                     ClassInfoDto classInfo = new ClassInfoDto();
@@ -395,6 +373,8 @@ public class TeacherService {
             QueryWrapper<MultiClassCourse> query = new QueryWrapper<>();
             query.eq("course_id", courseId);
             multiClassCourseMapper.delete(query);
+            courseRosterService.invalidate(courseId);
+            courseAttendanceSummaryService.rebuildCourses(Collections.singletonList(courseId));
         } catch (Exception e) {
             throw new RuntimeException("删除多班级课程配置失败: " + e.getMessage());
         }
@@ -405,25 +385,20 @@ public class TeacherService {
      */
     public AttendanceStatsDto getAttendanceStats(String courseId) {
         // 获取课程信息
-        QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-        courseQuery.eq("course_id", courseId);
-        Course course = courseMapper.selectOne(courseQuery);
+        Course course = referenceDataCacheService.getCourse(courseId);
         
         if (course == null) {
             throw new RuntimeException("课程不存在");
         }
         
         // 获取班级人数
-        QueryWrapper<Class> classQuery = new QueryWrapper<>();
-        classQuery.eq("class_code", course.getClassCode());
-        Class clazz = classMapper.selectOne(classQuery);
+        Class clazz = referenceDataCacheService.getClassByCode(course.getClassCode());
         
         int totalCount = clazz != null ? clazz.getStudentCount() : 0;
         
-        // 获取已签到人数
-        QueryWrapper<AttendanceRecord> attendanceQuery = new QueryWrapper<>();
-        attendanceQuery.eq("course_id", courseId);
-        int attendedCount = attendanceRecordMapper.selectCount(attendanceQuery).intValue();
+        // 获取已签到人数（从课程签到统计读取）
+        CourseAttendanceSummary summary = courseAttendanceSummaryService.getSummary(courseId);
+        int attendedCount = summary != null ? summary.getAttendedCount() : 0;
         
         double attendanceRate = totalCount > 0 ? (double) attendedCount / totalCount * 100 : 0;
         
@@ -435,77 +410,99 @@ public class TeacherService {
     }
     
     /**
-     * 获取未签到学生名单
+     * 获取未签到学生名单，格式为 姓名(学号)，按学号排序
+     * 花名册包含本班及多班级配置中的所有班级学生，名单由内存位图直接计算，点名期间可频繁调用
      */
     public List<String> getAbsentStudents(String courseId) {
-        // 这里需要根据实际需求实现
-        // 暂时返回空列表，后续可以完善
-        return new ArrayList<>();
+        CourseRosterService.CourseRoster roster = courseRosterService.getRoster(courseId);
+        if (roster == null) {
+            throw new RuntimeException("课程不存在");
+        }
+        return roster.getAbsentStudentsWithNames();
     }
     
     /**
      * 查看课程签到情况
      */
     public List<StudentAttendanceDto> getCourseAttendance(String courseId) {
+        return getCourseAttendance(courseId, null, null);
+    }
+    
+    /**
+     * 查看课程签到情况（支持排序）
+     * 花名册包含本班及多班级配置中的所有班级学生，一条SQL完成
+     * @param sortBy 排序字段（可选：studentCode, studentName, attendanceStatus, attendanceTime），默认按学号
+     * @param sortOrder 排序方向（可选：asc, desc），默认asc
+     */
+    public List<StudentAttendanceDto> getCourseAttendance(String courseId, String sortBy, String sortOrder) {
         try {
-            // 1. 获取课程信息
-            QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-            courseQuery.eq("course_id", courseId);
-            Course course = courseMapper.selectOne(courseQuery);
+            Course course = referenceDataCacheService.getCourse(courseId);
             if (course == null) {
                 throw new RuntimeException("课程不存在");
             }
-            
-            // 2. 获取该班级的所有学生
-            QueryWrapper<StudentClassRelation> relationQuery = new QueryWrapper<>();
-            relationQuery.eq("class_code", course.getClassCode());
-            List<StudentClassRelation> relations = studentClassRelationMapper.selectList(relationQuery);
-            
-            List<StudentAttendanceDto> result = new ArrayList<>();
-            
-            for (StudentClassRelation relation : relations) {
-                StudentAttendanceDto dto = new StudentAttendanceDto();
-                dto.setStudentCode(relation.getStudentUsername());
-                
-                // 获取学生姓名
-                QueryWrapper<User> userQuery = new QueryWrapper<>();
-                userQuery.eq("username", relation.getStudentUsername());
-                User user = userMapper.selectOne(userQuery);
-                dto.setStudentName(user != null ? user.getName() : "未知学生");
-                
-                // 检查签到状态
-                QueryWrapper<AttendanceRecord> attendanceQuery = new QueryWrapper<>();
-                attendanceQuery.eq("course_id", courseId)
-                              .eq("student_username", relation.getStudentUsername());
-                AttendanceRecord record = attendanceRecordMapper.selectOne(attendanceQuery);
-                
-                if (record != null) {
-                    dto.setAttendanceStatus(1); // 已签到
-                    dto.setAttendanceTime(record.getAttendanceTime());
-                } else {
-                    dto.setAttendanceStatus(0); // 未签到
-                    dto.setAttendanceTime(null);
-                }
-                
-                result.add(dto);
+            return studentClassRelationMapper.selectCourseAttendance(
+                    courseId, course.getClassCode(), buildAttendanceOrderBy(sortBy, sortOrder));
+        } catch (Exception e) {
+            throw new RuntimeException("获取课程签到情况失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 分页查看课程签到情况
+     * @param page 页码，从1开始
+     * @param size 每页条数
+     */
+    public PageResultDto<StudentAttendanceDto> getCourseAttendancePage(String courseId, long page, long size,
+                                                                       String sortBy, String sortOrder) {
+        try {
+            Course course = referenceDataCacheService.getCourse(courseId);
+            if (course == null) {
+                throw new RuntimeException("课程不存在");
+            }
+            if (page < 1 || size < 1 || size > 500) {
+                throw new RuntimeException("分页参数错误");
             }
             
-            return result;
+            IPage<StudentAttendanceDto> result = studentClassRelationMapper.selectCourseAttendancePage(
+                    new Page<>(page, size), courseId, course.getClassCode(), buildAttendanceOrderBy(sortBy, sortOrder));
             
+            PageResultDto<StudentAttendanceDto> dto = new PageResultDto<>();
+            dto.setRecords(result.getRecords());
+            dto.setTotal(result.getTotal());
+            dto.setPage(result.getCurrent());
+            dto.setSize(result.getSize());
+            return dto;
         } catch (Exception e) {
             throw new RuntimeException("获取课程签到情况失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 构建签到列表的排序表达式，只接受白名单字段，学号作为次要排序保证顺序稳定
+     */
+    private String buildAttendanceOrderBy(String sortBy, String sortOrder) {
+        String column = "r.student_username";
+        if (sortBy != null && !sortBy.trim().isEmpty()) {
+            column = ATTENDANCE_SORT_COLUMNS.get(sortBy.trim());
+            if (column == null) {
+                throw new RuntimeException("不支持的排序字段: " + sortBy);
+            }
+        }
+        String direction = "desc".equalsIgnoreCase(sortOrder) ? "DESC" : "ASC";
+        if ("r.student_username".equals(column)) {
+            return column + " " + direction;
+        }
+        return column + " " + direction + ", r.student_username ASC";
+    }
+    
     /**
      * 修改学生签到状态
      */
+    @Transactional
     public void updateStudentAttendance(String courseId, String studentCode, Integer status) {
         try {
             // 1. 验证课程是否存在
-            QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-            courseQuery.eq("course_id", courseId);
-            Course course = courseMapper.selectOne(courseQuery);
+            Course course = referenceDataCacheService.getCourse(courseId);
             if (course == null) {
                 throw new RuntimeException("课程不存在");
             }
@@ -525,8 +522,10 @@ public class TeacherService {
                     record.setStudentUsername(studentCode);
                     record.setAttendanceTime(LocalDateTime.now());
                     record.setAttendanceStatus(1);
-                    record.setIpAddress("127.0.0.1");
+                    record.setIpAddress(CourseAttendanceSummaryService.MANUAL_ATTENDANCE_IP);
+                    attendanceClassificationService.classify(courseId, Collections.singletonList(record));
                     attendanceRecordMapper.insert(record);
+                    courseAttendanceSummaryService.recordManualChange(courseId, studentCode, true, true);
                 } else {
                     // 更新现有记录
                     existingRecord.setAttendanceStatus(1);
@@ -537,14 +536,188 @@ public class TeacherService {
                 // 设置为未签到
                 if (existingRecord != null) {
                     attendanceRecordMapper.deleteById(existingRecord.getId());
+                    courseAttendanceSummaryService.recordManualChange(courseId, studentCode, false,
+                        CourseAttendanceSummaryService.MANUAL_ATTENDANCE_IP.equals(existingRecord.getIpAddress()));
                 }
             }
+            // 花名册在提交后更新；事件监听器同样在提交后执行，回滚时不会推送
+            runAfterCommit(() -> courseRosterService.updateAttendance(courseId, studentCode, status == 1));
+            eventPublisher.publishEvent(new AttendanceChangedEvent(
+                courseId, studentCode, status == 1, status == 1 ? LocalDateTime.now() : null, "manual"));
             
         } catch (Exception e) {
             throw new RuntimeException("修改签到状态失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 批量修改学生签到状态（同一事务）
+     * 已签到的学生合并为多行 INSERT ... ON DUPLICATE KEY UPDATE，未签到的合并为一条UPDATE，
+     * 课程统计只更新一次；单行参数错误不影响其他行
+     */
+    @Transactional
+    public BulkUpdateAttendanceResultDto bulkUpdateAttendance(String teacherUsername, BulkUpdateAttendanceRequest request) {
+        try {
+            // 1. 校验课程和权限
+            String courseId = request.getCourseId();
+            Course course = referenceDataCacheService.getCourse(courseId);
+            if (course == null) {
+                throw new RuntimeException("课程不存在");
+            }
+            if (!course.getTeacherUsername().equals(teacherUsername)) {
+                throw new RuntimeException("无权限修改该课程的签到");
+            }
+            List<BulkUpdateAttendanceRequest.StudentStatus> students =
+                    request.getStudents() != null ? request.getStudents() : new ArrayList<>();
+            if (students.size() > MAX_BULK_ATTENDANCE_SIZE) {
+                throw new RuntimeException("单次最多修改 " + MAX_BULK_ATTENDANCE_SIZE + " 名学生");
+            }
+            
+            // 2. 逐行校验参数，同一学生只处理第一次出现
+            List<BulkUpdateAttendanceResultDto.RowResult> results = new ArrayList<>(students.size());
+            Map<String, BulkUpdateAttendanceResultDto.RowResult> validRows = new LinkedHashMap<>();
+            for (BulkUpdateAttendanceRequest.StudentStatus item : students) {
+                BulkUpdateAttendanceResultDto.RowResult row = new BulkUpdateAttendanceResultDto.RowResult();
+                row.setStudentCode(item.getStudentCode());
+                row.setStatus(item.getStatus());
+                row.setChanged(false);
+                results.add(row);
+                
+                if (item.getStudentCode() == null || item.getStudentCode().trim().isEmpty()) {
+                    markRowFailed(row, "学号不能为空");
+                } else if (item.getStatus() == null || (item.getStatus() != 0 && item.getStatus() != 1)) {
+                    markRowFailed(row, "签到状态只能为0或1");
+                } else if (validRows.putIfAbsent(item.getStudentCode(), row) != null) {
+                    markRowFailed(row, "重复的学生");
+                }
+            }
+            
+            // 3. 锁定已有记录，计算需要变化的学生
+            Map<String, AttendanceRecord> existingRecords = new HashMap<>();
+            List<String> studentCodes = new ArrayList<>(validRows.keySet());
+            for (int i = 0; i < studentCodes.size(); i += BULK_ATTENDANCE_BATCH_SIZE) {
+                List<String> batch = studentCodes.subList(i, Math.min(i + BULK_ATTENDANCE_BATCH_SIZE, studentCodes.size()));
+                for (AttendanceRecord record : attendanceRecordMapper.selectForUpdate(courseId, batch)) {
+                    existingRecords.put(record.getStudentUsername(), record);
+                }
+            }
+            
+            List<String> toAttend = new ArrayList<>();
+            List<String> added = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            int manualDelta = 0;
+            for (Map.Entry<String, BulkUpdateAttendanceResultDto.RowResult> entry : validRows.entrySet()) {
+                String studentCode = entry.getKey();
+                BulkUpdateAttendanceResultDto.RowResult row = entry.getValue();
+                AttendanceRecord existing = existingRecords.get(studentCode);
+                boolean attended = existing != null && existing.getIsDeleted() != null && existing.getIsDeleted() == 0;
+                row.setSuccess(true);
+                
+                if (row.getStatus() == 1) {
+                    // 已签到的记录同样刷新签到时间，与单条修改一致
+                    toAttend.add(studentCode);
+                    if (!attended) {
+                        added.add(studentCode);
+                        manualDelta++;
+                        row.setChanged(true);
+                        row.setMessage("已设置为已签到");
+                    } else {
+                        row.setMessage("学生已签到");
+                    }
+                } else if (attended) {
+                    removed.add(studentCode);
+                    if (CourseAttendanceSummaryService.MANUAL_ATTENDANCE_IP.equals(existing.getIpAddress())) {
+                        manualDelta--;
+                    }
+                    row.setChanged(true);
+                    row.setMessage("已设置为未签到");
+                } else {
+                    row.setMessage("学生未签到");
+                }
+            }
+            
+            // 4. 批量写入（同时写入学生所在班级和跨班标记）
+            LocalDateTime now = LocalDateTime.now();
+            List<AttendanceRecord> attendRecords = new ArrayList<>(toAttend.size());
+            for (String studentCode : toAttend) {
+                AttendanceRecord record = new AttendanceRecord();
+                record.setStudentUsername(studentCode);
+                attendRecords.add(record);
+            }
+            if (!attendRecords.isEmpty()) {
+                attendanceClassificationService.classify(courseId, attendRecords);
+            }
+            for (int i = 0; i < attendRecords.size(); i += BULK_ATTENDANCE_BATCH_SIZE) {
+                attendanceRecordMapper.batchMarkAttended(courseId,
+                        attendRecords.subList(i, Math.min(i + BULK_ATTENDANCE_BATCH_SIZE, attendRecords.size())),
+                        now, CourseAttendanceSummaryService.MANUAL_ATTENDANCE_IP);
+            }
+            for (int i = 0; i < removed.size(); i += BULK_ATTENDANCE_BATCH_SIZE) {
+                attendanceRecordMapper.batchMarkAbsent(courseId,
+                        removed.subList(i, Math.min(i + BULK_ATTENDANCE_BATCH_SIZE, removed.size())));
+            }
+            
+            // 5. 课程统计、花名册和实时推送（花名册和事件监听器均在提交后生效）
+            Set<String> addedSet = new HashSet<>(added);
+            List<AttendanceRecord> addedRecords = new ArrayList<>(added.size());
+            for (AttendanceRecord record : attendRecords) {
+                if (addedSet.contains(record.getStudentUsername())) {
+                    addedRecords.add(record);
+                }
+            }
+            List<AttendanceRecord> removedRecords = new ArrayList<>(removed.size());
+            for (String studentCode : removed) {
+                removedRecords.add(existingRecords.get(studentCode));
+            }
+            courseAttendanceSummaryService.recordBulkChange(courseId, addedRecords, removedRecords, manualDelta);
+            runAfterCommit(() -> {
+                for (String studentCode : added) {
+                    courseRosterService.updateAttendance(courseId, studentCode, true);
+                }
+                for (String studentCode : removed) {
+                    courseRosterService.updateAttendance(courseId, studentCode, false);
+                }
+            });
+            for (String studentCode : added) {
+                eventPublisher.publishEvent(new AttendanceChangedEvent(courseId, studentCode, true, now, "manual"));
+            }
+            for (String studentCode : removed) {
+                eventPublisher.publishEvent(new AttendanceChangedEvent(courseId, studentCode, false, null, "manual"));
+            }
+            
+            BulkUpdateAttendanceResultDto result = new BulkUpdateAttendanceResultDto();
+            result.setCourseId(courseId);
+            result.setResults(results);
+            result.setSuccessCount(validRows.size());
+            result.setFailedCount(results.size() - validRows.size());
+            return result;
+            
+        } catch (Exception e) {
+            throw new RuntimeException("批量修改签到状态失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     */
+    private static void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    private static void markRowFailed(BulkUpdateAttendanceResultDto.RowResult row, String message) {
+        row.setSuccess(false);
+        row.setMessage(message);
+    }
+    
     /**
      * 获取老师的学生列表（班级中的学生 + 签到过的学生）
      */
@@ -591,10 +764,33 @@ public class TeacherService {
             attendanceQuery.in("course_id", courseIds);
             List<AttendanceRecord> attendanceRecords = attendanceRecordMapper.selectList(attendanceQuery);
             
-            // 5. 性能优化：批量查询学生信息
-            Set<String> allStudentCodes = new HashSet<>();
-            relations.forEach(relation -> allStudentCodes.add(relation.getStudentUsername()));
-            attendanceRecords.forEach(record -> allStudentCodes.add(record.getStudentUsername()));
+            // 5. 按学生分组，只保留最近一次签到（一次遍历）
+            Map<String, AttendanceRecord> latestRecordMap = new HashMap<>();
+            for (AttendanceRecord record : attendanceRecords) {
+                latestRecordMap.merge(record.getStudentUsername(), record,
+                        (current, candidate) -> isLater(candidate, current) ? candidate : current);
+            }
+            
+            // 6. 找出跨班签到学生，班级取签到记录上保存的学生班级
+            Set<String> classStudentCodes = relations.stream()
+                    .map(StudentClassRelation::getStudentUsername)
+                    .collect(Collectors.toSet());
+            Set<String> crossStudentCodes = latestRecordMap.keySet().stream()
+                    .filter(studentCode -> !classStudentCodes.contains(studentCode))
+                    .collect(Collectors.toSet());
+            
+            Map<String, String> crossStudentClassMap = new HashMap<>();
+            for (String studentCode : crossStudentCodes) {
+                String studentClassCode = latestRecordMap.get(studentCode).getClassCode();
+                if (studentClassCode != null) {
+                    crossStudentClassMap.put(studentCode, studentClassCode);
+                }
+            }
+            fillMissingStudentClasses(crossStudentCodes, crossStudentClassMap);
+            
+            // 7. 批量查询学生信息
+            Set<String> allStudentCodes = new HashSet<>(classStudentCodes);
+            allStudentCodes.addAll(crossStudentCodes);
             
             Map<String, User> studentMap = new HashMap<>();
             if (!allStudentCodes.isEmpty()) {
@@ -605,24 +801,22 @@ public class TeacherService {
                         .collect(Collectors.toMap(User::getUsername, user -> user));
             }
             
-            // 6. 性能优化：批量查询班级信息
-            Map<String, Class> classMap = new HashMap<>();
-            if (!classCodes.isEmpty()) {
-                QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                classQuery.in("class_code", classCodes);
-                List<Class> classes = classMapper.selectList(classQuery);
-                classMap = classes.stream()
-                        .collect(Collectors.toMap(Class::getClassCode, clazz -> clazz));
-            }
+            // 8. 批量查询班级信息（课程班级 + 跨班学生自己的班级）
+            Set<String> allClassCodes = new HashSet<>(classCodes);
+            allClassCodes.addAll(crossStudentClassMap.values());
+            
+            QueryWrapper<Class> classQuery = new QueryWrapper<>();
+            classQuery.in("class_code", allClassCodes);
+            Map<String, Class> classMap = classMapper.selectList(classQuery).stream()
+                    .collect(Collectors.toMap(Class::getClassCode, clazz -> clazz));
             
-            // 7. 创建课程映射
             Map<String, Course> courseMap = courses.stream()
                     .collect(Collectors.toMap(Course::getCourseId, course -> course));
             
-            // 8. 构建学生信息映射
+            // 9. 构建学生信息映射
             Map<String, StudentInfoDto> studentInfoMap = new HashMap<>();
             
-            // 8.1 处理本班学生
+            // 9.1 处理本班学生
             for (StudentClassRelation relation : relations) {
                 String studentCode = relation.getStudentUsername();
                 User user = studentMap.get(studentCode);
@@ -635,18 +829,9 @@ public class TeacherService {
                 dto.setClassName(clazz != null ? clazz.getClassName() : "未知班级");
                 dto.setStudentType("CLASS_STUDENT");
                 
-                // 查找该学生最近的签到记录
-                AttendanceRecord recentRecord = attendanceRecords.stream()
-                        .filter(record -> record.getStudentUsername().equals(studentCode))
-                        .max(Comparator.comparing(AttendanceRecord::getAttendanceTime))
-                        .orElse(null);
-                
+                AttendanceRecord recentRecord = latestRecordMap.get(studentCode);
                 if (recentRecord != null) {
-                    Course course = courseMap.get(recentRecord.getCourseId());
-                    dto.setLastAttendanceTime(recentRecord.getAttendanceTime());
-                    dto.setAttendanceStatus(recentRecord.getAttendanceStatus());
-                    dto.setCourseId(recentRecord.getCourseId());
-                    dto.setCourseName(course != null ? course.getCourseName() : "未知课程");
+                    fillLastAttendance(dto, recentRecord, courseMap);
                 } else {
                     dto.setAttendanceStatus(0);
                 }
@@ -654,50 +839,24 @@ public class TeacherService {
                 studentInfoMap.put(studentCode, dto);
             }
             
-            // 8.2 处理跨班签到学生（不在本班但已签到）
-            for (AttendanceRecord record : attendanceRecords) {
-                String studentCode = record.getStudentUsername();
+            // 9.2 处理跨班签到学生（不在本班但已签到）
+            for (String studentCode : crossStudentCodes) {
+                User user = studentMap.get(studentCode);
+                String studentClassCode = crossStudentClassMap.get(studentCode);
+                Class studentClass = studentClassCode != null ? classMap.get(studentClassCode) : null;
                 
-                // 如果这个学生不在本班学生列表中，则添加为跨班签到学生
-                if (!studentInfoMap.containsKey(studentCode)) {
-                    User user = studentMap.get(studentCode);
-                    Course course = courseMap.get(record.getCourseId());
-                    
-                    // 查询该学生自己的班级信息（不是签到课程的班级）
-                    QueryWrapper<StudentClassRelation> studentClassQuery = new QueryWrapper<>();
-                    studentClassQuery.eq("student_username", studentCode);
-                    StudentClassRelation studentRelation = studentClassRelationMapper.selectOne(studentClassQuery);
-                    
-                    String studentClassCode = "未绑定";
-                    String studentClassName = "未绑定班级";
-                    
-                    if (studentRelation != null) {
-                        studentClassCode = studentRelation.getClassCode();
-                        // 查询学生自己的班级信息
-                        QueryWrapper<Class> studentClassInfoQuery = new QueryWrapper<>();
-                        studentClassInfoQuery.eq("class_code", studentRelation.getClassCode());
-                        Class studentClass = classMapper.selectOne(studentClassInfoQuery);
-                        if (studentClass != null) {
-                            studentClassName = studentClass.getClassName();
-                        }
-                    }
-                    
-                    StudentInfoDto dto = new StudentInfoDto();
-                    dto.setStudentCode(studentCode);
-                    dto.setStudentName(user != null ? user.getName() : "未知学生");
-                    dto.setClassCode(studentClassCode);
-                    dto.setClassName(studentClassName);
-                    dto.setStudentType("CROSS_CLASS_ATTENDEE");
-                    dto.setLastAttendanceTime(record.getAttendanceTime());
-                    dto.setAttendanceStatus(record.getAttendanceStatus());
-                    dto.setCourseId(record.getCourseId());
-                    dto.setCourseName(course != null ? course.getCourseName() : "未知课程");
-                    
-                    studentInfoMap.put(studentCode, dto);
-                }
+                StudentInfoDto dto = new StudentInfoDto();
+                dto.setStudentCode(studentCode);
+                dto.setStudentName(user != null ? user.getName() : "未知学生");
+                dto.setClassCode(studentClassCode != null ? studentClassCode : "未绑定");
+                dto.setClassName(studentClass != null ? studentClass.getClassName() : "未绑定班级");
+                dto.setStudentType("CROSS_CLASS_ATTENDEE");
+                fillLastAttendance(dto, latestRecordMap.get(studentCode), courseMap);
+                
+                studentInfoMap.put(studentCode, dto);
             }
             
-            // 9. 应用过滤条件
+            // 10. 应用过滤条件
             List<StudentInfoDto> filteredStudents = studentInfoMap.values().stream()
                     .filter(dto -> {
                         // 按学生类型过滤
@@ -724,6 +883,42 @@ public class TeacherService {
         }
     }
     
+    /**
+     * 签到记录尚未回填班级时，批量查询学生绑定的班级（只查缺失的学生）
+     */
+    private void fillMissingStudentClasses(Collection<String> studentCodes, Map<String, String> studentClassMap) {
+        List<String> missing = new ArrayList<>();
+        for (String studentCode : studentCodes) {
+            if (!studentClassMap.containsKey(studentCode)) {
+                missing.add(studentCode);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        QueryWrapper<StudentClassRelation> relationQuery = new QueryWrapper<>();
+        relationQuery.in("student_username", missing);
+        for (StudentClassRelation relation : studentClassRelationMapper.selectList(relationQuery)) {
+            studentClassMap.putIfAbsent(relation.getStudentUsername(), relation.getClassCode());
+        }
+    }
+    
+    private static boolean isLater(AttendanceRecord candidate, AttendanceRecord current) {
+        if (candidate.getAttendanceTime() == null) {
+            return false;
+        }
+        return current.getAttendanceTime() == null
+                || candidate.getAttendanceTime().isAfter(current.getAttendanceTime());
+    }
+    
+    private static void fillLastAttendance(StudentInfoDto dto, AttendanceRecord record, Map<String, Course> courseMap) {
+        Course course = courseMap.get(record.getCourseId());
+        dto.setLastAttendanceTime(record.getAttendanceTime());
+        dto.setAttendanceStatus(record.getAttendanceStatus());
+        dto.setCourseId(record.getCourseId());
+        dto.setCourseName(course != null ? course.getCourseName() : "未知课程");
+    }
+    
     /**
      * 获取老师班级中的学生列表（仅本班学生）
      */
@@ -785,9 +980,14 @@ public class TeacherService {
             attendanceQuery.in("course_id", courseIds);
             List<AttendanceRecord> attendanceRecords = attendanceRecordMapper.selectList(attendanceQuery);
             
-            // 7. 创建课程映射
+            // 7. 创建课程映射，按学生分组保留最近一次签到
             Map<String, Course> courseMap = courses.stream()
                     .collect(Collectors.toMap(Course::getCourseId, course -> course));
+            Map<String, AttendanceRecord> latestRecordMap = new HashMap<>();
+            for (AttendanceRecord record : attendanceRecords) {
+                latestRecordMap.merge(record.getStudentUsername(), record,
+                        (current, candidate) -> isLater(candidate, current) ? candidate : current);
+            }
             
             // 8. 构建本班学生信息
             List<StudentInfoDto> result = new ArrayList<>();
@@ -804,18 +1004,9 @@ public class TeacherService {
                 dto.setClassName(clazz != null ? clazz.getClassName() : "未知班级");
                 dto.setStudentType("CLASS_STUDENT");
                 
-                // 查找该学生最近的签到记录
-                AttendanceRecord recentRecord = attendanceRecords.stream()
-                        .filter(record -> record.getStudentUsername().equals(studentCode))
-                        .max(Comparator.comparing(AttendanceRecord::getAttendanceTime))
-                        .orElse(null);
-                
+                AttendanceRecord recentRecord = latestRecordMap.get(studentCode);
                 if (recentRecord != null) {
-                    Course course = courseMap.get(recentRecord.getCourseId());
-                    dto.setLastAttendanceTime(recentRecord.getAttendanceTime());
-                    dto.setAttendanceStatus(recentRecord.getAttendanceStatus());
-                    dto.setCourseId(recentRecord.getCourseId());
-                    dto.setCourseName(course != null ? course.getCourseName() : "未知课程");
+                    fillLastAttendance(dto, recentRecord, courseMap);
                 } else {
                     dto.setAttendanceStatus(0);
                 }
@@ -854,68 +1045,41 @@ public class TeacherService {
                 return new ArrayList<>();
             }
             
-            // 2. 获取这些课程对应的所有班级代码
-            Set<String> classCodes = courses.stream()
-                    .map(Course::getClassCode)
-                    .collect(Collectors.toSet());
-            
-            // 3. 获取这些班级中绑定的学生（本班学生）
-            QueryWrapper<StudentClassRelation> relationQuery = new QueryWrapper<>();
-            relationQuery.in("class_code", classCodes);
-            List<StudentClassRelation> relations = studentClassRelationMapper.selectList(relationQuery);
-            
-            // 4. 获取本班学生的学号集合
-            Set<String> classStudentCodes = relations.stream()
-                    .map(StudentClassRelation::getStudentUsername)
-                    .collect(Collectors.toSet());
-            
-            // 5. 获取这些课程的所有签到记录
+            // 2. 按跨班标记查询这些课程的跨班签到记录（课程+跨班标记索引）
             List<String> courseIds = courses.stream()
                     .map(Course::getCourseId)
                     .collect(Collectors.toList());
             
             QueryWrapper<AttendanceRecord> attendanceQuery = new QueryWrapper<>();
-            attendanceQuery.in("course_id", courseIds);
-            List<AttendanceRecord> attendanceRecords = attendanceRecordMapper.selectList(attendanceQuery);
-            
-            // 6. 过滤出跨班签到学生（不在本班学生列表中但已签到）
-            List<AttendanceRecord> crossClassRecords = attendanceRecords.stream()
-                    .filter(record -> !classStudentCodes.contains(record.getStudentUsername()))
-                    .collect(Collectors.toList());
+            attendanceQuery.in("course_id", courseIds)
+                          .eq("is_cross_class", 1);
+            List<AttendanceRecord> crossClassRecords = attendanceRecordMapper.selectList(attendanceQuery);
             
             if (crossClassRecords.isEmpty()) {
                 return new ArrayList<>();
             }
             
-            // 7. 批量查询跨班签到学生信息
+            // 3. 批量查询跨班签到学生信息
             Set<String> crossClassStudentCodes = crossClassRecords.stream()
                     .map(AttendanceRecord::getStudentUsername)
                     .collect(Collectors.toSet());
+            Map<String, User> studentMap = referenceDataCacheService.getUsers(crossClassStudentCodes);
             
-            Map<String, User> studentMap = new HashMap<>();
-            if (!crossClassStudentCodes.isEmpty()) {
-                QueryWrapper<User> userQuery = new QueryWrapper<>();
-                userQuery.in("username", crossClassStudentCodes);
-                List<User> users = userMapper.selectList(userQuery);
-                studentMap = users.stream()
-                        .collect(Collectors.toMap(User::getUsername, user -> user));
-            }
-            
-            // 8. 批量查询班级信息（用于本班学生）
-            Map<String, Class> classMap = new HashMap<>();
-            if (!classCodes.isEmpty()) {
-                QueryWrapper<Class> classQuery = new QueryWrapper<>();
-                classQuery.in("class_code", classCodes);
-                List<Class> classes = classMapper.selectList(classQuery);
-                classMap = classes.stream()
-                        .collect(Collectors.toMap(Class::getClassCode, clazz -> clazz));
+            // 4. 学生自己的班级取签到记录上保存的班级
+            Map<String, String> studentClassMap = new HashMap<>();
+            for (AttendanceRecord record : crossClassRecords) {
+                if (record.getClassCode() != null) {
+                    studentClassMap.putIfAbsent(record.getStudentUsername(), record.getClassCode());
+                }
             }
+            fillMissingStudentClasses(crossClassStudentCodes, studentClassMap);
+            Map<String, Class> classMap = referenceDataCacheService.getClassesByCode(studentClassMap.values());
             
-            // 9. 创建课程映射
+            // 5. 创建课程映射
             Map<String, Course> courseMap = courses.stream()
                     .collect(Collectors.toMap(Course::getCourseId, course -> course));
             
-            // 10. 构建跨班签到学生信息
+            // 6. 构建跨班签到学生信息
             List<StudentInfoDto> result = new ArrayList<>();
             
             for (AttendanceRecord record : crossClassRecords) {
@@ -923,30 +1087,15 @@ public class TeacherService {
                 User user = studentMap.get(studentCode);
                 Course course = courseMap.get(record.getCourseId());
                 
-                // 查询该学生自己的班级信息（不是签到课程的班级）
-                QueryWrapper<StudentClassRelation> studentClassQuery = new QueryWrapper<>();
-                studentClassQuery.eq("student_username", studentCode);
-                StudentClassRelation studentRelation = studentClassRelationMapper.selectOne(studentClassQuery);
-                
-                String studentClassCode = "未绑定";
-                String studentClassName = "未绑定班级";
-                
-                if (studentRelation != null) {
-                    studentClassCode = studentRelation.getClassCode();
-                    // 查询学生自己的班级信息
-                    QueryWrapper<Class> studentClassInfoQuery = new QueryWrapper<>();
-                    studentClassInfoQuery.eq("class_code", studentRelation.getClassCode());
-                    Class studentClass = classMapper.selectOne(studentClassInfoQuery);
-                    if (studentClass != null) {
-                        studentClassName = studentClass.getClassName();
-                    }
-                }
+                String studentClassCode = record.getClassCode() != null
+                        ? record.getClassCode() : studentClassMap.get(studentCode);
+                Class studentClass = studentClassCode != null ? classMap.get(studentClassCode) : null;
                 
                 StudentInfoDto dto = new StudentInfoDto();
                 dto.setStudentCode(studentCode);
                 dto.setStudentName(user != null ? user.getName() : "未知学生");
-                dto.setClassCode(studentClassCode);
-                dto.setClassName(studentClassName);
+                dto.setClassCode(studentClassCode != null ? studentClassCode : "未绑定");
+                dto.setClassName(studentClass != null ? studentClass.getClassName() : "未绑定班级");
                 dto.setStudentType("CROSS_CLASS_ATTENDEE");
                 dto.setLastAttendanceTime(record.getAttendanceTime());
                 dto.setAttendanceStatus(record.getAttendanceStatus());
@@ -956,7 +1105,7 @@ public class TeacherService {
                 result.add(dto);
             }
             
-            // 11. 按签到时间降序排列
+            // 7. 按签到时间降序排列
             result.sort((a, b) -> {
                 if (a.getLastAttendanceTime() == null && b.getLastAttendanceTime() == null) {
                     return a.getStudentName().compareTo(b.getStudentName());
@@ -979,17 +1128,19 @@ public class TeacherService {
     public void updateStudent(UpdateStudentRequest request) {
         try {
             // 更新学生基本信息
+            // 需要修改实体，直接查库而不是使用缓存中的共享对象
             QueryWrapper<User> userQuery = new QueryWrapper<>();
             userQuery.eq("username", request.getStudentCode());
             User user = userMapper.selectOne(userQuery);
-            
+
             if (user == null) {
                 throw new RuntimeException("学生不存在");
             }
-            
+
             user.setName(request.getStudentName());
             userMapper.updateById(user);
-            
+            referenceDataCacheService.evictUser(user.getUsername());
+
             // 注意：不再强制更新班级关系，因为学生可以签到任何课程
             // 班级绑定现在是可选的功能
             
@@ -1004,22 +1155,16 @@ public class TeacherService {
     public DetailedAttendanceStatsDto getDetailedAttendanceStats(String courseId) {
         try {
             // 1. 获取课程信息
-            QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-            courseQuery.eq("course_id", courseId);
-            Course course = courseMapper.selectOne(courseQuery);
+            Course course = referenceDataCacheService.getCourse(courseId);
             if (course == null) {
                 throw new RuntimeException("课程不存在");
             }
             
             // 2. 获取班级信息
-            QueryWrapper<Class> classQuery = new QueryWrapper<>();
-            classQuery.eq("class_code", course.getClassCode());
-            Class clazz = classMapper.selectOne(classQuery);
+            Class clazz = referenceDataCacheService.getClassByCode(course.getClassCode());
             
             // 3. 获取老师信息
-            QueryWrapper<User> teacherQuery = new QueryWrapper<>();
-            teacherQuery.eq("username", course.getTeacherUsername());
-            User teacher = userMapper.selectOne(teacherQuery);
+            User teacher = referenceDataCacheService.getUser(course.getTeacherUsername());
             
             // 4. 获取本班级所有学生（基于绑定关系）
             QueryWrapper<StudentClassRelation> relationQuery = new QueryWrapper<>();
@@ -1051,17 +1196,25 @@ public class TeacherService {
             classInfo.setTotalStudentCount(relations.size());
             
             // 统计本班级签到情况
-            Set<String> attendedStudents = attendanceRecords.stream()
-                    .map(AttendanceRecord::getStudentUsername)
-                    .collect(Collectors.toSet());
+            Map<String, AttendanceRecord> recordMap = new HashMap<>(attendanceRecords.size() * 2);
+            for (AttendanceRecord record : attendanceRecords) {
+                recordMap.put(record.getStudentUsername(), record);
+            }
             
             int classAttendedCount = 0;
             for (StudentClassRelation relation : relations) {
-                if (attendedStudents.contains(relation.getStudentUsername())) {
+                if (recordMap.containsKey(relation.getStudentUsername())) {
                     classAttendedCount++;
                 }
             }
             
+            // 批量获取学生姓名（本班学生 + 签到学生）
+            Set<String> allStudentCodes = new HashSet<>(recordMap.keySet());
+            for (StudentClassRelation relation : relations) {
+                allStudentCodes.add(relation.getStudentUsername());
+            }
+            Map<String, User> userMap = referenceDataCacheService.getUsers(allStudentCodes);
+            
             classInfo.setAttendedCount(classAttendedCount);
             classInfo.setAbsentCount(relations.size() - classAttendedCount);
             result.setClassInfo(classInfo);
@@ -1076,16 +1229,11 @@ public class TeacherService {
                 studentInfo.setIsFromThisClass(true);
                 
                 // 获取学生姓名
-                QueryWrapper<User> userQuery = new QueryWrapper<>();
-                userQuery.eq("username", relation.getStudentUsername());
-                User user = userMapper.selectOne(userQuery);
+                User user = userMap.get(relation.getStudentUsername());
                 studentInfo.setStudentName(user != null ? user.getName() : "未知学生");
                 
                 // 查找签到记录
-                AttendanceRecord record = attendanceRecords.stream()
-                        .filter(r -> r.getStudentUsername().equals(relation.getStudentUsername()))
-                        .findFirst()
-                        .orElse(null);
+                AttendanceRecord record = recordMap.get(relation.getStudentUsername());
                 
                 if (record != null) {
                     studentInfo.setIsAttended(true);
@@ -1103,12 +1251,25 @@ public class TeacherService {
             }
             result.setClassStudents(classStudents);
             
-            // 构建其他班级学生列表
+            // 构建其他班级学生列表，学生班级取签到记录上保存的班级
             List<DetailedAttendanceStatsDto.StudentAttendanceInfo> otherClassStudents = new ArrayList<>();
             Set<String> classStudentCodes = relations.stream()
                     .map(StudentClassRelation::getStudentUsername)
                     .collect(Collectors.toSet());
             
+            Set<String> otherStudentCodes = new HashSet<>();
+            Map<String, String> otherStudentClassMap = new HashMap<>();
+            for (AttendanceRecord record : attendanceRecords) {
+                if (!classStudentCodes.contains(record.getStudentUsername())) {
+                    otherStudentCodes.add(record.getStudentUsername());
+                    if (record.getClassCode() != null) {
+                        otherStudentClassMap.put(record.getStudentUsername(), record.getClassCode());
+                    }
+                }
+            }
+            fillMissingStudentClasses(otherStudentCodes, otherStudentClassMap);
+            Map<String, Class> otherClassMap = referenceDataCacheService.getClassesByCode(otherStudentClassMap.values());
+            
             for (AttendanceRecord record : attendanceRecords) {
                 if (!classStudentCodes.contains(record.getStudentUsername())) {
                     DetailedAttendanceStatsDto.StudentAttendanceInfo studentInfo = new DetailedAttendanceStatsDto.StudentAttendanceInfo();
@@ -1120,21 +1281,14 @@ public class TeacherService {
                     studentInfo.setIsFromThisClass(false);
                     
                     // 获取学生信息
-                    QueryWrapper<User> userQuery = new QueryWrapper<>();
-                    userQuery.eq("username", record.getStudentUsername());
-                    User user = userMapper.selectOne(userQuery);
+                    User user = userMap.get(record.getStudentUsername());
                     studentInfo.setStudentName(user != null ? user.getName() : "未知学生");
                     
                     // 获取学生班级信息（如果有绑定关系）
-                    QueryWrapper<StudentClassRelation> studentClassQuery = new QueryWrapper<>();
-                    studentClassQuery.eq("student_username", record.getStudentUsername());
-                    StudentClassRelation studentRelation = studentClassRelationMapper.selectOne(studentClassQuery);
-                    
-                    if (studentRelation != null) {
-                        studentInfo.setClassCode(studentRelation.getClassCode());
-                        QueryWrapper<Class> studentClassInfoQuery = new QueryWrapper<>();
-                        studentClassInfoQuery.eq("class_code", studentRelation.getClassCode());
-                        Class studentClass = classMapper.selectOne(studentClassInfoQuery);
+                    String studentClassCode = otherStudentClassMap.get(record.getStudentUsername());
+                    if (studentClassCode != null) {
+                        studentInfo.setClassCode(studentClassCode);
+                        Class studentClass = otherClassMap.get(studentClassCode);
                         studentInfo.setClassName(studentClass != null ? studentClass.getClassName() : "未知班级");
                     } else {
                         studentInfo.setClassCode("未绑定");
@@ -4,8 +4,6 @@ import com.signlab1.dto.ClassPhotoDto;
 import com.signlab1.entity.Course;
 import com.signlab1.entity.User;
 import com.signlab1.mapper.ClassPhotoMapper;
-import com.signlab1.mapper.CourseMapper;
-import com.signlab1.mapper.UserMapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -32,8 +30,7 @@ import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 public class WordDocumentService {
     
     private final ClassPhotoMapper classPhotoMapper;
-    private final CourseMapper courseMapper;
-    private final UserMapper userMapper;
+    private final ReferenceDataCacheService referenceDataCacheService;
     
     /**
      * 生成学生课堂笔记Word文档
@@ -44,17 +41,13 @@ public class WordDocumentService {
     public byte[] generateClassNotesDocument(String studentCode, String courseId) {
         try {
             // 1. 获取学生信息
-            QueryWrapper<User> userQuery = new QueryWrapper<>();
-            userQuery.eq("username", studentCode);
-            User student = userMapper.selectOne(userQuery);
+            User student = referenceDataCacheService.getUser(studentCode);
             if (student == null) {
                 throw new RuntimeException("学生不存在: " + studentCode);
             }
             
             // 2. 获取课程信息
-            QueryWrapper<Course> courseQuery = new QueryWrapper<>();
-            courseQuery.eq("course_id", courseId);
-            Course course = courseMapper.selectOne(courseQuery);
+            Course course = referenceDataCacheService.getCourse(courseId);
             if (course == null) {
                 throw new RuntimeException("课程不存在: " + courseId);
             }
@@ -0,0 +1,268 @@
+package com.signlab1.util;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 带容量上限和过期时间的LRU缓存
+ * 线程安全，加载函数在锁外执行；加载期间发生失效时不会写回旧值
+ * 单个条目的失效只丢弃该键的加载结果，批量或按条件失效丢弃所有加载中的结果
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    // 失效代数，每次失效递增；加载前记录，写回时与失效发生的代数比较
+    private long generation = 0;
+
+    // 最近一次批量或按条件失效的代数，早于它发起的加载一律丢弃
+    private long globalInvalidation = 0;
+
+    // 单个键最近一次失效的代数，按失效顺序保存，最多保留 maxSize 个
+    private final LinkedHashMap<K, Long> keyInvalidations = new LinkedHashMap<>();
+
+    /**
+     * @param maxSize 最大条目数
+     * @param ttlSeconds 条目存活时间（秒）
+     */
+    public ExpiringLruCache(int maxSize, long ttlSeconds) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("缓存容量必须大于0");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                if (size() > ExpiringLruCache.this.maxSize) {
+                    evictionCount.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存值，不存在或已过期返回null
+     */
+    public V get(K key) {
+        synchronized (this) {
+            CacheEntry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (!entry.isExpired(System.nanoTime())) {
+                    hitCount.increment();
+                    return entry.value;
+                }
+                entries.remove(key);
+                evictionCount.increment();
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * 获取缓存值，未命中时调用loader加载；loader返回null时不缓存
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long loadGeneration = currentGeneration();
+        V loaded = loader.apply(key);
+        if (loaded != null) {
+            putIfGeneration(key, loaded, loadGeneration);
+        }
+        return loaded;
+    }
+
+    /**
+     * 写入缓存
+     */
+    public synchronized void put(K key, V value) {
+        putWithTtl(key, value, ttlNanos);
+    }
+
+    /**
+     * 写入缓存并指定该条目的存活时间（秒），不超过缓存默认存活时间
+     */
+    public synchronized void put(K key, V value, long ttlSeconds) {
+        putWithTtl(key, value, Math.min(ttlNanos, Math.max(0, ttlSeconds) * 1_000_000_000L));
+    }
+
+    private void putWithTtl(K key, V value, long entryTtlNanos) {
+        if (value == null) {
+            entries.remove(key);
+            return;
+        }
+        entries.put(key, new CacheEntry<>(value, System.nanoTime() + entryTtlNanos));
+    }
+
+    /**
+     * 仅当加载期间该键未失效时写入，供批量加载使用
+     */
+    public synchronized void putIfGeneration(K key, V value, long expectedGeneration) {
+        if (!invalidatedSince(key, expectedGeneration)) {
+            put(key, value);
+        }
+    }
+
+    /**
+     * 仅当加载期间该键未失效时写入，并指定该条目的存活时间（秒）
+     */
+    public synchronized void putIfGeneration(K key, V value, long expectedGeneration, long ttlSeconds) {
+        if (!invalidatedSince(key, expectedGeneration)) {
+            put(key, value, ttlSeconds);
+        }
+    }
+
+    /**
+     * 当前失效代数，批量加载前获取
+     */
+    public synchronized long currentGeneration() {
+        return generation;
+    }
+
+    /**
+     * 使单个条目失效，只影响该键正在进行的加载
+     */
+    public synchronized void invalidate(K key) {
+        markInvalidated(key);
+        entries.remove(key);
+    }
+
+    /**
+     * 使多个条目失效
+     */
+    public synchronized void invalidateAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            markInvalidated(key);
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * 使满足条件的条目失效
+     */
+    public synchronized void invalidateIf(Predicate<? super K> predicate) {
+        markAllInvalidated();
+        entries.keySet().removeIf(predicate);
+    }
+
+    /**
+     * 使缓存值满足条件的条目失效
+     */
+    public synchronized void invalidateValuesIf(Predicate<? super V> predicate) {
+        markAllInvalidated();
+        entries.values().removeIf(entry -> predicate.test(entry.value));
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void invalidateAll() {
+        markAllInvalidated();
+        entries.clear();
+    }
+
+    private void markInvalidated(K key) {
+        generation++;
+        keyInvalidations.remove(key);
+        keyInvalidations.put(key, generation);
+        if (keyInvalidations.size() > maxSize) {
+            // 丢弃最早的失效记录，按批量失效处理，早于它发起的加载都不再写回
+            Iterator<Map.Entry<K, Long>> eldest = keyInvalidations.entrySet().iterator();
+            globalInvalidation = Math.max(globalInvalidation, eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    private void markAllInvalidated() {
+        generation++;
+        globalInvalidation = generation;
+        keyInvalidations.clear();
+    }
+
+    /**
+     * 在 loadGeneration 之后该键是否发生过失效
+     */
+    private boolean invalidatedSince(K key, long loadGeneration) {
+        if (globalInvalidation > loadGeneration) {
+            return true;
+        }
+        Long keyInvalidation = keyInvalidations.get(key);
+        return keyInvalidation != null && keyInvalidation > loadGeneration;
+    }
+
+    /**
+     * 清理已过期条目
+     */
+    public synchronized int cleanUp() {
+        long now = System.nanoTime();
+        int removed = 0;
+        Iterator<CacheEntry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        evictionCount.add(removed);
+        return removed;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * 命中率（0-1），尚无请求时返回0
+     */
+    public double getHitRatio() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static final class CacheEntry<V> {
+        private final V value;
+        private final long expireAt;
+
+        private CacheEntry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expireAt >= 0;
+        }
+    }
+}
@@ -1,19 +1,30 @@
 package com.signlab1.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * JWT工具类
+ * 签名密钥和解析器在启动时创建并复用；验签通过的Token按哈希缓存一段时间，
+ * 同一Token的后续请求不再重复验签和解析
  */
 @Component
 public class JwtUtil {
@@ -24,6 +35,50 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private Long expiration;
     
+    @Value("${jwt.cache.max-size:10000}")
+    private int cacheMaxSize;
+    
+    // 验签结果的缓存时间（秒），Token过期时间更早时以过期时间为准
+    @Value("${jwt.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+    
+    private final MeterRegistry meterRegistry;
+    
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+    
+    // 已验签Token的Claims，key为Token的SHA-256；Claims为共享对象，调用方不得修改
+    private ExpiringLruCache<String, Claims> verifiedTokens;
+    
+    public JwtUtil(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+    
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        verifiedTokens = new ExpiringLruCache<>(cacheMaxSize, cacheTtlSeconds);
+        
+        FunctionCounter.builder("signlab.cache.requests", verifiedTokens, ExpiringLruCache::getHitCount)
+                .tag("cache", "jwt").tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("signlab.cache.requests", verifiedTokens, ExpiringLruCache::getMissCount)
+                .tag("cache", "jwt").tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("signlab.cache.evictions", verifiedTokens, ExpiringLruCache::getEvictionCount)
+                .tag("cache", "jwt")
+                .register(meterRegistry);
+        Gauge.builder("signlab.cache.hit.ratio", verifiedTokens, ExpiringLruCache::getHitRatio)
+                .tag("cache", "jwt")
+                .register(meterRegistry);
+        Gauge.builder("signlab.cache.size", verifiedTokens, ExpiringLruCache::size)
+                .tag("cache", "jwt")
+                .register(meterRegistry);
+    }
+    
     /**
      * 生成JWT Token
      */
@@ -42,14 +97,12 @@ public class JwtUtil {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expiration * 1000);
         
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes());
-        
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(key, SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
@@ -74,16 +127,48 @@ public class JwtUtil {
         return getClaimsFromToken(token).get("name", String.class);
     }
     
+    /**
+     * 验签并解析Token，一次请求只需调用一次
+     * 返回的Claims为共享对象，不得修改
+     * @throws io.jsonwebtoken.JwtException Token无效或已过期
+     */
+    public Claims parseClaims(String token) {
+        String cacheKey = hashToken(token);
+        Claims claims = verifiedTokens.get(cacheKey);
+        if (claims != null) {
+            Date expirationDate = claims.getExpiration();
+            if (expirationDate == null || expirationDate.after(new Date())) {
+                return claims;
+            }
+            // 缓存期间已过期，重新解析以抛出过期异常
+            verifiedTokens.invalidate(cacheKey);
+        }
+        
+        claims = jwtParser.parseClaimsJws(token).getBody();
+        long ttlSeconds = cacheTtlSeconds;
+        if (claims.getExpiration() != null) {
+            ttlSeconds = Math.min(ttlSeconds, (claims.getExpiration().getTime() - System.currentTimeMillis()) / 1000);
+        }
+        if (ttlSeconds > 0) {
+            verifiedTokens.put(cacheKey, claims, ttlSeconds);
+        }
+        return claims;
+    }
+    
     /**
      * 从Token中获取Claims
      */
     private Claims getClaimsFromToken(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes());
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parseClaims(token);
+    }
+    
+    private static String hashToken(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
     }
     
     /**
@@ -120,14 +205,12 @@ public class JwtUtil {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + days * 24 * 60 * 60 * 1000L); // 按天计算
         
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes());
-        
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(username)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(key, SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
@@ -147,7 +230,7 @@ public class JwtUtil {
             result.put("isLongTerm", claims.get("isLongTerm", Boolean.class));
             result.put("issuedAt", claims.getIssuedAt());
             result.put("expiration", claims.getExpiration());
-            result.put("isExpired", isTokenExpired(token));
+            result.put("isExpired", claims.getExpiration().before(new Date()));
             
             return result;
         } catch (Exception e) {
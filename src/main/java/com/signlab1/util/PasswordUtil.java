@@ -1,5 +1,6 @@
 package com.signlab1.util;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
@@ -10,7 +11,14 @@ import org.springframework.stereotype.Component;
 @Component
 public class PasswordUtil {
     
-    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final PasswordEncoder passwordEncoder;
+    
+    /**
+     * @param strength BCrypt计算强度（4-31），每加1耗时翻倍
+     */
+    public PasswordUtil(@Value("${auth.password.bcrypt-strength:10}") int strength) {
+        this.passwordEncoder = new BCryptPasswordEncoder(strength);
+    }
     
     /**
      * 加密密码
@@ -26,6 +34,18 @@ public class PasswordUtil {
         return passwordEncoder.matches(rawPassword, encodedPassword);
     }
     
+    /**
+     * 已保存的密码强度低于当前配置时需要重新加密
+     */
+    public boolean needsRehash(String encodedPassword) {
+        try {
+            return passwordEncoder.upgradeEncoding(encodedPassword);
+        } catch (IllegalArgumentException e) {
+            // 非BCrypt格式的密码无法判断
+            return false;
+        }
+    }
+    
     /**
      * 验证密码格式
      */
@@ -6,13 +6,19 @@ import com.google.zxing.WriterException;
 import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 二维码工具类
@@ -20,10 +26,59 @@ import java.util.Map;
 @Component
 public class QrCodeUtil {
     
+    private static final String SCAN_URL_TEMPLATE = "https://gdutsyjx.gdut.edu.cn/signlab/student/scan?qr=%s";
+    
+    private static final byte TOKEN_VERSION = 1;
+    private static final byte FLAG_MULTI_CLASS = 0x01;
+    private static final int HEADER_LENGTH = 7;
+    private static final int NONCE_LENGTH = 2;
+    private static final int TAG_LENGTH = 8;
+    private static final int MAX_COURSE_ID_LENGTH = 64;
+    private static final int MAX_TOKEN_CHARS = 256;
+    private static final int MIN_SECRET_BYTES = 32;
+    
+    // 解码缓冲区按线程复用
+    private static final ThreadLocal<byte[]> DECODE_BUFFER = ThreadLocal.withInitial(() -> new byte[MAX_TOKEN_CHARS]);
+    
+    @Value("${qr.token.secret}")
+    private String tokenSecret;
+    
+    // 是否接受旧版未签名的二维码内容
+    @Value("${qr.token.accept-legacy:false}")
+    private boolean acceptLegacy;
+    
+    private ThreadLocal<Mac> macHolder;
+    
+    @PostConstruct
+    public void init() {
+        // 密钥过短时签名可被暴力破解，拒绝启动
+        if (tokenSecret == null || tokenSecret.getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("二维码签名密钥未配置或长度不足" + MIN_SECRET_BYTES
+                    + "字节，请设置环境变量 QR_TOKEN_SECRET");
+        }
+        SecretKeySpec key = new SecretKeySpec(tokenSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        macHolder = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (Exception e) {
+                throw new IllegalStateException("初始化二维码签名失败", e);
+            }
+        });
+    }
+    
     /**
      * 生成二维码图片的Base64字符串
      */
     public String generateQrCodeBase64(String content, int width, int height) {
+        return toDataUri(generateQrCodePng(content, width, height));
+    }
+    
+    /**
+     * 生成二维码PNG图片字节
+     */
+    public byte[] generateQrCodePng(String content, int width, int height) {
         try {
             QRCodeWriter qrCodeWriter = new QRCodeWriter();
             Map<EncodeHintType, Object> hints = new HashMap<>();
@@ -35,8 +90,7 @@ public class QrCodeUtil {
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             MatrixToImageWriter.writeToStream(bitMatrix, "PNG", outputStream);
             
-            byte[] imageBytes = outputStream.toByteArray();
-            return "data:image/png;base64," + Base64.getEncoder().encodeToString(imageBytes);
+            return outputStream.toByteArray();
             
         } catch (WriterException | IOException e) {
             throw new RuntimeException("生成二维码失败：" + e.getMessage());
@@ -44,87 +98,142 @@ public class QrCodeUtil {
     }
     
     /**
-     * 生成签到二维码内容
+     * PNG图片字节转为data URI
      */
-    public String generateAttendanceQrContent(String courseId, String teacherCode, String classCode, Long timestamp) {
-        // 构建二维码内容：课程ID|老师工号|班级编号|时间戳|随机校验码
-        String randomCode = String.valueOf(System.currentTimeMillis() % 10000);
-        String content = String.format("%s|%s|%s|%d|%s", courseId, teacherCode, classCode, timestamp, randomCode);
-        
-        // Base64编码
-        return Base64.getEncoder().encodeToString(content.getBytes());
+    public String toDataUri(byte[] pngBytes) {
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(pngBytes);
     }
     
     /**
-     * 生成多班级签到二维码内容
+     * 生成签到二维码内容（签名令牌）
      */
-    public String generateMultiClassAttendanceQrContent(String courseId, String teacherCode, Long timestamp) {
-        // 构建多班级二维码内容：课程ID|老师工号|MULTI|时间戳|随机校验码
-        String randomCode = String.valueOf(System.currentTimeMillis() % 10000);
-        String content = String.format("%s|%s|MULTI|%d|%s", courseId, teacherCode, timestamp, randomCode);
-        
-        // Base64编码
-        return Base64.getEncoder().encodeToString(content.getBytes());
+    public String generateAttendanceQrContent(String courseId, Long timestamp) {
+        return generateAttendanceToken(courseId, false, timestamp);
+    }
+    
+    /**
+     * 生成多班级签到二维码内容（签名令牌）
+     */
+    public String generateMultiClassAttendanceQrContent(String courseId, Long timestamp) {
+        return generateAttendanceToken(courseId, true, timestamp);
     }
     
     /**
      * 生成签到二维码URL（用于微信扫码跳转）
      */
-    public String generateAttendanceQrUrl(String courseId, String teacherCode, String classCode, Long timestamp) {
-        // 构建二维码内容：课程ID|老师工号|班级编号|时间戳|随机校验码
-        String randomCode = String.valueOf(System.currentTimeMillis() % 10000);
-        String content = String.format("%s|%s|%s|%d|%s", courseId, teacherCode, classCode, timestamp, randomCode);
-        
-        // Base64编码
-        String encodedContent = Base64.getEncoder().encodeToString(content.getBytes());
-
-        // 生成URL格式的二维码内容
-        return String.format("https://gdutsyjx.gdut.edu.cn/signlab/student/scan?qr=%s", encodedContent);
+    public String generateAttendanceQrUrl(String courseId, Long timestamp) {
+        return String.format(SCAN_URL_TEMPLATE, generateAttendanceQrContent(courseId, timestamp));
     }
     
     /**
      * 生成多班级签到二维码URL（用于微信扫码跳转）
      */
-    public String generateMultiClassAttendanceQrUrl(String courseId, String teacherCode, Long timestamp) {
-        // 构建多班级二维码内容：课程ID|老师工号|MULTI|时间戳|随机校验码
-        String randomCode = String.valueOf(System.currentTimeMillis() % 10000);
-        String content = String.format("%s|%s|MULTI|%d|%s", courseId, teacherCode, timestamp, randomCode);
+    public String generateMultiClassAttendanceQrUrl(String courseId, Long timestamp) {
+        return String.format(SCAN_URL_TEMPLATE, generateMultiClassAttendanceQrContent(courseId, timestamp));
+    }
+    
+    /**
+     * 生成签到令牌
+     * 格式：版本(1) | 标志位(1) | 时间戳秒(4) | 课程ID长度(1) | 课程ID | 随机数(2) | HMAC-SHA256截断(8)
+     * 整体使用URL安全的Base64编码（无填充）
+     */
+    public String generateAttendanceToken(String courseId, boolean multiClass, long timestamp) {
+        byte[] courseIdBytes = courseId.getBytes(StandardCharsets.US_ASCII);
+        if (courseIdBytes.length > MAX_COURSE_ID_LENGTH) {
+            throw new RuntimeException("课程ID过长，无法生成二维码");
+        }
         
-        // Base64编码
-        String encodedContent = Base64.getEncoder().encodeToString(content.getBytes());
-
-        // 生成URL格式的二维码内容
-        return String.format("https://gdutsyjx.gdut.edu.cn/signlab/student/scan?qr=%s", encodedContent);
+        int bodyLength = HEADER_LENGTH + courseIdBytes.length + NONCE_LENGTH;
+        byte[] token = new byte[bodyLength + TAG_LENGTH];
+        token[0] = TOKEN_VERSION;
+        token[1] = multiClass ? FLAG_MULTI_CLASS : 0;
+        token[2] = (byte) (timestamp >>> 24);
+        token[3] = (byte) (timestamp >>> 16);
+        token[4] = (byte) (timestamp >>> 8);
+        token[5] = (byte) timestamp;
+        token[6] = (byte) courseIdBytes.length;
+        System.arraycopy(courseIdBytes, 0, token, HEADER_LENGTH, courseIdBytes.length);
+        int nonce = ThreadLocalRandom.current().nextInt(1 << 16);
+        token[bodyLength - 2] = (byte) (nonce >>> 8);
+        token[bodyLength - 1] = (byte) nonce;
+        
+        byte[] tag = sign(token, bodyLength);
+        System.arraycopy(tag, 0, token, bodyLength, TAG_LENGTH);
+        
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
     }
     
     /**
-     * 解析签到二维码内容
+     * 解析并校验签到二维码
+     * 签名不正确的令牌直接拒绝，无需访问数据库
      */
-    public Map<String, String> parseAttendanceQrContent(String qrContent) {
+    public AttendanceQrToken parseAttendanceQrToken(String qrContent) {
+        if (qrContent == null || qrContent.isEmpty() || qrContent.length() > MAX_TOKEN_CHARS) {
+            throw new RuntimeException("二维码无效");
+        }
+        
+        byte[] buffer = DECODE_BUFFER.get();
+        int length;
         try {
-            // Base64解码
-            String decodedContent = new String(Base64.getDecoder().decode(qrContent));
+            length = Base64.getUrlDecoder().decode(qrContent.getBytes(StandardCharsets.US_ASCII), buffer);
+        } catch (IllegalArgumentException e) {
+            // 不是新格式令牌，按旧格式处理
+            return parseLegacyQrContent(qrContent);
+        }
+        
+        if (length < HEADER_LENGTH + NONCE_LENGTH + TAG_LENGTH || buffer[0] != TOKEN_VERSION) {
+            return parseLegacyQrContent(qrContent);
+        }
+        
+        int courseIdLength = buffer[6] & 0xFF;
+        int bodyLength = HEADER_LENGTH + courseIdLength + NONCE_LENGTH;
+        if (courseIdLength == 0 || bodyLength + TAG_LENGTH != length) {
+            throw new RuntimeException("二维码无效");
+        }
+        
+        // 常量时间比较签名
+        byte[] expectedTag = sign(buffer, bodyLength);
+        int diff = 0;
+        for (int i = 0; i < TAG_LENGTH; i++) {
+            diff |= expectedTag[i] ^ buffer[bodyLength + i];
+        }
+        if (diff != 0) {
+            throw new RuntimeException("二维码无效");
+        }
+        
+        long timestamp = ((buffer[2] & 0xFFL) << 24) | ((buffer[3] & 0xFFL) << 16)
+                | ((buffer[4] & 0xFFL) << 8) | (buffer[5] & 0xFFL);
+        String courseId = new String(buffer, HEADER_LENGTH, courseIdLength, StandardCharsets.US_ASCII);
+        boolean multiClass = (buffer[1] & FLAG_MULTI_CLASS) != 0;
+        return new AttendanceQrToken(courseId, timestamp, multiClass);
+    }
+    
+    /**
+     * 解析旧版Base64竖线分隔格式：课程ID|老师工号|班级编号|时间戳|随机校验码
+     * 旧格式没有签名，仅在开启兼容时接受
+     */
+    private AttendanceQrToken parseLegacyQrContent(String qrContent) {
+        if (!acceptLegacy) {
+            throw new RuntimeException("二维码无效");
+        }
+        try {
+            String decodedContent = new String(Base64.getDecoder().decode(qrContent), StandardCharsets.UTF_8);
             String[] parts = decodedContent.split("\\|");
-            
-            Map<String, String> result = new HashMap<>();
-            if (parts.length >= 4) {
-                result.put("courseId", parts[0]);
-                result.put("teacherCode", parts[1]);
-                result.put("classCode", parts[2]);
-                result.put("timestamp", parts[3]);
-                if (parts.length > 4) {
-                    result.put("randomCode", parts[4]);
-                }
-                
-                // 判断是否为多班级二维码
-                result.put("isMultiClass", "MULTI".equals(parts[2]) ? "true" : "false");
+            if (parts.length < 4) {
+                throw new RuntimeException("二维码无效");
             }
-            return result;
-        } catch (Exception e) {
+            return new AttendanceQrToken(parts[0], Long.parseLong(parts[3]), "MULTI".equals(parts[2]));
+        } catch (RuntimeException e) {
             throw new RuntimeException("二维码内容解析失败：" + e.getMessage());
         }
     }
     
+    private byte[] sign(byte[] data, int length) {
+        Mac mac = macHolder.get();
+        mac.update(data, 0, length);
+        return mac.doFinal();
+    }
+    
     /**
      * 验证二维码是否过期
      * @param timestamp 二维码生成时间戳（秒）
@@ -164,5 +273,31 @@ public class QrCodeUtil {
             return (int) (validSeconds - timeDiff); // 剩余时间
         }
     }
+    
+    /**
+     * 签到二维码令牌
+     */
+    public static class AttendanceQrToken {
+        private final String courseId;
+        private final long timestamp;
+        private final boolean multiClass;
+        
+        public AttendanceQrToken(String courseId, long timestamp, boolean multiClass) {
+            this.courseId = courseId;
+            this.timestamp = timestamp;
+            this.multiClass = multiClass;
+        }
+        
+        public String getCourseId() {
+            return courseId;
+        }
+        
+        public long getTimestamp() {
+            return timestamp;
+        }
+        
+        public boolean isMultiClass() {
+            return multiClass;
+        }
+    }
 }
-
@@ -98,24 +98,8 @@ public class TimeSlotParser {
                 return new CourseStatusInfo(3, "时间段解析失败", 0);
             }
             
-            LocalDateTime now = LocalDateTime.now();
-            LocalDateTime courseStart = date.atTime(timeSlotInfo.getStartTime());
-            LocalDateTime courseEnd = date.atTime(timeSlotInfo.getEndTime());
-            
-            // 判断课程状态
-            if (now.isBefore(courseStart)) {
-                // 即将开始
-                long minutes = java.time.Duration.between(now, courseStart).toMinutes();
-                return new CourseStatusInfo(1, "即将开始", (int) minutes);
-            } else if (now.isAfter(courseEnd)) {
-                // 已结束
-                long minutes = java.time.Duration.between(courseEnd, now).toMinutes();
-                return new CourseStatusInfo(3, "已结束", (int) minutes);
-            } else {
-                // 正在进行
-                long minutes = java.time.Duration.between(now, courseEnd).toMinutes();
-                return new CourseStatusInfo(2, "正在进行", (int) minutes);
-            }
+            return getCourseStatus(date.atTime(timeSlotInfo.getStartTime()),
+                    date.atTime(timeSlotInfo.getEndTime()), LocalDateTime.now());
             
         } catch (DateTimeParseException e) {
             log.error("解析课程日期失败: {}", courseDate, e);
@@ -126,6 +110,25 @@ public class TimeSlotParser {
         }
     }
     
+    /**
+     * 根据已解析的上下课时间计算课程状态
+     */
+    public CourseStatusInfo getCourseStatus(LocalDateTime courseStart, LocalDateTime courseEnd, LocalDateTime now) {
+        if (now.isBefore(courseStart)) {
+            // 即将开始
+            long minutes = java.time.Duration.between(now, courseStart).toMinutes();
+            return new CourseStatusInfo(1, "即将开始", (int) minutes);
+        } else if (now.isAfter(courseEnd)) {
+            // 已结束
+            long minutes = java.time.Duration.between(courseEnd, now).toMinutes();
+            return new CourseStatusInfo(3, "已结束", (int) minutes);
+        } else {
+            // 正在进行
+            long minutes = java.time.Duration.between(now, courseEnd).toMinutes();
+            return new CourseStatusInfo(2, "正在进行", (int) minutes);
+        }
+    }
+    
     /**
      * 时间段信息
      */
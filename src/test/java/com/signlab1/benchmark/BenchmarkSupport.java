@@ -0,0 +1,37 @@
+package com.signlab1.benchmark;
+
+import com.signlab1.util.JwtUtil;
+import com.signlab1.util.QrCodeUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 基准测试公共初始化：不启动Spring容器，按 application.yml 的默认配置手动构造工具类
+ */
+final class BenchmarkSupport {
+
+    static final String JWT_SECRET = "signlab2024secretkeyforsignlab2024secretkey";
+    static final long JWT_EXPIRATION_SECONDS = 2592000L;
+    static final String QR_TOKEN_SECRET = "benchmark-only-qr-token-secret-not-for-production";
+
+    private BenchmarkSupport() {
+    }
+
+    static JwtUtil jwtUtil() {
+        JwtUtil jwtUtil = new JwtUtil(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtUtil, "secret", JWT_SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", JWT_EXPIRATION_SECONDS);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaxSize", 10000);
+        ReflectionTestUtils.setField(jwtUtil, "cacheTtlSeconds", 300L);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    static QrCodeUtil qrCodeUtil() {
+        QrCodeUtil qrCodeUtil = new QrCodeUtil();
+        ReflectionTestUtils.setField(qrCodeUtil, "tokenSecret", QR_TOKEN_SECRET);
+        ReflectionTestUtils.setField(qrCodeUtil, "acceptLegacy", false);
+        qrCodeUtil.init();
+        return qrCodeUtil;
+    }
+}
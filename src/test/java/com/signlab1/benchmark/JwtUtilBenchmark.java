@@ -0,0 +1,70 @@
+package com.signlab1.benchmark;
+
+import com.signlab1.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT生成和解析
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = BenchmarkSupport.jwtUtil();
+        token = jwtUtil.generateToken("3121004567", "student", "张三");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken("3121004567", "student", "张三");
+    }
+
+    @Benchmark
+    public String parseUsername() {
+        return jwtUtil.getUsernameFromToken(token);
+    }
+
+    /**
+     * 分别通过三个getter取用户名、角色和过期状态（改造前 JwtAuthenticationFilter 的调用方式）
+     */
+    @Benchmark
+    public void separateGetters(Blackhole blackhole) {
+        blackhole.consume(jwtUtil.getUsernameFromToken(token));
+        blackhole.consume(jwtUtil.getRoleFromToken(token));
+        blackhole.consume(jwtUtil.isTokenExpired(token));
+    }
+
+    /**
+     * JwtAuthenticationFilter 每个请求的解析路径：解析一次Claims
+     */
+    @Benchmark
+    public void authenticationFilterPath(Blackhole blackhole) {
+        Claims claims = jwtUtil.parseClaims(token);
+        blackhole.consume(claims.getSubject());
+        blackhole.consume(claims.get("role", String.class));
+        blackhole.consume(claims.getExpiration().after(new Date()));
+    }
+}
@@ -0,0 +1,54 @@
+package com.signlab1.benchmark;
+
+import com.signlab1.util.PasswordUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 密码加密、校验和格式检查
+ * BCrypt单次耗时在毫秒级，使用平均耗时模式
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class PasswordUtilBenchmark {
+
+    private static final String RAW_PASSWORD = "signlab123";
+
+    private PasswordUtil passwordUtil;
+    private String encodedPassword;
+
+    @Setup
+    public void setUp() {
+        passwordUtil = new PasswordUtil(10);
+        encodedPassword = passwordUtil.encode(RAW_PASSWORD);
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordUtil.encode(RAW_PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordUtil.matches(RAW_PASSWORD, encodedPassword);
+    }
+
+    @Benchmark
+    public boolean isValidPassword() {
+        return passwordUtil.isValidPassword(RAW_PASSWORD);
+    }
+}
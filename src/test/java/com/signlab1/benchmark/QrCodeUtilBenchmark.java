@@ -0,0 +1,62 @@
+package com.signlab1.benchmark;
+
+import com.signlab1.util.QrCodeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 二维码生成、渲染和解析
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QrCodeUtilBenchmark {
+
+    private static final String COURSE_ID = "KC25000123";
+
+    private QrCodeUtil qrCodeUtil;
+    private long timestamp;
+    private String qrContent;
+    private String qrUrl;
+
+    @Setup
+    public void setUp() {
+        qrCodeUtil = BenchmarkSupport.qrCodeUtil();
+        timestamp = System.currentTimeMillis() / 1000;
+        qrContent = qrCodeUtil.generateAttendanceQrContent(COURSE_ID, timestamp);
+        qrUrl = qrCodeUtil.generateAttendanceQrUrl(COURSE_ID, timestamp);
+    }
+
+    @Benchmark
+    public String encodeToken() {
+        return qrCodeUtil.generateAttendanceQrContent(COURSE_ID, timestamp);
+    }
+
+    @Benchmark
+    public byte[] renderPng() {
+        return qrCodeUtil.generateQrCodePng(qrUrl, 300, 300);
+    }
+
+    @Benchmark
+    public String renderBase64() {
+        return qrCodeUtil.generateQrCodeBase64(qrUrl, 300, 300);
+    }
+
+    @Benchmark
+    public QrCodeUtil.AttendanceQrToken parseToken() {
+        return qrCodeUtil.parseAttendanceQrToken(qrContent);
+    }
+}
@@ -0,0 +1,80 @@
+package com.signlab1.benchmark;
+
+import com.signlab1.entity.Class;
+import com.signlab1.entity.Course;
+import com.signlab1.mapper.ClassMapper;
+import com.signlab1.service.ScheduleParserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 课表文本解析（班级已存在，不产生写库）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScheduleParserBenchmark {
+
+    // 一门课一学期的典型课表：16个时间段
+    private static final String SCHEDULE_TEXT = String.join(";",
+            "1周 星期二[6-9节]实验4-211", "2周 星期二[6-9节]实验4-211", "3周 星期二[6-9节]实验4-211",
+            "4周 星期二[6-9节]实验4-211", "5周 星期二[6-9节]实验4-211", "6周 星期二[6-9节]实验4-211",
+            "7周 星期二[6-9节]实验4-211", "8周 星期二[6-9节]实验4-211", "9周 星期四[1-2节]实验4-305",
+            "10周 星期四[1-2节]实验4-305", "11周 星期四[1-2节]实验4-305", "12周 星期四[1-2节]实验4-305",
+            "13周 星期四[1-2节]实验4-305", "14周 星期四[1-2节]实验4-305", "15周 星期四[1-2节]实验4-305",
+            "16周 星期四[1-2节]实验4-305");
+
+    private ScheduleParserService scheduleParserService;
+    private LocalDate semesterStartDate;
+
+    @Setup
+    public void setUp() {
+        Class clazz = new Class();
+        clazz.setClassCode("CL12345601");
+        clazz.setClassName("计算机科学与技术1班");
+        scheduleParserService = new ScheduleParserService(stubClassMapper(clazz), null);
+        semesterStartDate = LocalDate.of(2025, 9, 1);
+    }
+
+    @Benchmark
+    public List<Course> parseSchedule() {
+        return scheduleParserService.parseSchedule(SCHEDULE_TEXT, "数据结构实验", "T001", "计算机科学与技术1班", semesterStartDate);
+    }
+
+    /**
+     * 按班级名称查询始终返回同一个班级
+     */
+    private static ClassMapper stubClassMapper(Class clazz) {
+        return (ClassMapper) Proxy.newProxyInstance(ClassMapper.class.getClassLoader(), new java.lang.Class<?>[]{ClassMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "selectOne":
+                            return clazz;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "StubClassMapper";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,168 @@
+package com.signlab1.benchmark;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.signlab1.dto.StudentInfoDto;
+import com.signlab1.entity.AttendanceRecord;
+import com.signlab1.entity.Class;
+import com.signlab1.entity.Course;
+import com.signlab1.entity.StudentClassRelation;
+import com.signlab1.entity.User;
+import com.signlab1.mapper.AttendanceRecordMapper;
+import com.signlab1.mapper.ClassMapper;
+import com.signlab1.mapper.CourseMapper;
+import com.signlab1.mapper.StudentClassRelationMapper;
+import com.signlab1.mapper.UserMapper;
+import com.signlab1.service.TeacherService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 老师学生列表的内存组装（Mapper返回预先生成的数据，不访问数据库）
+ * 签到记录数为学生数的10倍，各规模的耗时应随数据量线性增长
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TeacherStudentsBenchmark {
+
+    private static final String TEACHER = "T001";
+    private static final int CLASS_COUNT = 20;
+    private static final int COURSES_PER_CLASS = 50;
+    // 跨班签到学生占比
+    private static final double CROSS_CLASS_RATIO = 0.1;
+
+    @Param({"500", "1000", "2500", "5000"})
+    private int students;
+
+    private TeacherService teacherService;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+
+        List<Class> classes = new ArrayList<>();
+        List<Course> courses = new ArrayList<>();
+        LocalDate startDate = LocalDate.of(2025, 9, 1);
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            Class clazz = new Class();
+            clazz.setClassCode(String.format("CL%08d", c));
+            clazz.setClassName("班级" + c);
+            classes.add(clazz);
+            for (int i = 0; i < COURSES_PER_CLASS; i++) {
+                Course course = new Course();
+                course.setCourseId(String.format("KC%04d%04d", c, i));
+                course.setCourseName("课程" + c + "-" + i);
+                course.setTeacherUsername(TEACHER);
+                course.setClassCode(clazz.getClassCode());
+                course.setCourseDate(startDate.plusDays(i).toString());
+                course.setTimeSlot("08:30-10:05");
+                courses.add(course);
+            }
+        }
+
+        // 本班学生平均分配到各班级；跨班学生绑定在其他老师的班级
+        int crossStudents = (int) (students * CROSS_CLASS_RATIO);
+        int classStudents = students - crossStudents;
+        List<User> users = new ArrayList<>();
+        List<StudentClassRelation> classRelations = new ArrayList<>();
+        List<StudentClassRelation> crossRelations = new ArrayList<>();
+        List<String> studentCodes = new ArrayList<>();
+        List<String> studentClassCodes = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            String studentCode = String.format("S%08d", i);
+            User user = new User();
+            user.setUsername(studentCode);
+            user.setName("学生" + i);
+            users.add(user);
+            studentCodes.add(studentCode);
+
+            StudentClassRelation relation = new StudentClassRelation();
+            relation.setStudentUsername(studentCode);
+            if (i < classStudents) {
+                relation.setClassCode(classes.get(i % CLASS_COUNT).getClassCode());
+                classRelations.add(relation);
+            } else {
+                relation.setClassCode("OTHER" + (i % 5));
+                crossRelations.add(relation);
+            }
+            studentClassCodes.add(relation.getClassCode());
+        }
+        for (int i = 0; i < 5; i++) {
+            Class clazz = new Class();
+            clazz.setClassCode("OTHER" + i);
+            clazz.setClassName("外班" + i);
+            classes.add(clazz);
+        }
+
+        List<AttendanceRecord> records = new ArrayList<>();
+        LocalDateTime baseTime = startDate.atTime(8, 30);
+        for (int i = 0; i < students * 10; i++) {
+            AttendanceRecord record = new AttendanceRecord();
+            int student = random.nextInt(studentCodes.size());
+            record.setCourseId(courses.get(random.nextInt(courses.size())).getCourseId());
+            record.setStudentUsername(studentCodes.get(student));
+            record.setClassCode(studentClassCodes.get(student));
+            record.setAttendanceTime(baseTime.plusMinutes(random.nextInt(200_000)));
+            record.setAttendanceStatus(1);
+            records.add(record);
+        }
+
+        teacherService = new TeacherService(
+                stubMapper(CourseMapper.class, wrapper -> courses),
+                stubMapper(ClassMapper.class, wrapper -> classes),
+                stubMapper(AttendanceRecordMapper.class, wrapper -> records),
+                null,
+                stubMapper(StudentClassRelationMapper.class,
+                        wrapper -> wrapper.getSqlSegment().contains("student_username") ? crossRelations : classRelations),
+                stubMapper(UserMapper.class, wrapper -> users),
+                null, null, null, null, null, null, null, null);
+    }
+
+    @Benchmark
+    public List<StudentInfoDto> getTeacherStudents() {
+        return teacherService.getTeacherStudents(TEACHER);
+    }
+
+    /**
+     * selectList 按查询条件返回预先生成的数据
+     */
+    @SuppressWarnings("unchecked")
+    private static <M> M stubMapper(java.lang.Class<M> type, Function<Wrapper<?>, List<?>> selectList) {
+        return (M) Proxy.newProxyInstance(type.getClassLoader(), new java.lang.Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "selectList":
+                            return selectList.apply((Wrapper<?>) args[0]);
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "Stub" + type.getSimpleName();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,51 @@
+package com.signlab1.benchmark;
+
+import com.signlab1.util.TimeSlotParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间段解析和课程状态计算
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeSlotParserBenchmark {
+
+    @Param({"08:30-10:05", "下午"})
+    private String timeSlot;
+
+    private TimeSlotParser timeSlotParser;
+    private String courseDate;
+
+    @Setup
+    public void setUp() {
+        timeSlotParser = new TimeSlotParser();
+        courseDate = LocalDate.now().toString();
+    }
+
+    @Benchmark
+    public TimeSlotParser.TimeSlotInfo parseTimeSlot() {
+        return timeSlotParser.parseTimeSlot(timeSlot);
+    }
+
+    @Benchmark
+    public TimeSlotParser.CourseStatusInfo getCourseStatus() {
+        return timeSlotParser.getCourseStatus(courseDate, timeSlot);
+    }
+}
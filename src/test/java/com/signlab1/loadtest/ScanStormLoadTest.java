@@ -0,0 +1,259 @@
+package com.signlab1.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.signlab1.support.QueryCountInterceptor;
+import com.signlab1.support.QueryCountTestConfig;
+import com.signlab1.util.JwtUtil;
+import com.signlab1.util.QrCodeUtil;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 扫码签到压测：模拟整班学生在二维码有效期内同时扫码
+ *
+ * 默认不执行，运行方式：mvn -Ploadtest test
+ * 可通过系统属性调整规模和阈值，例如：
+ * mvn -Ploadtest test -Dloadtest.students=600 -Dloadtest.concurrency=200 -Dloadtest.maxP99Ms=1500
+ */
+@Tag("loadtest")
+@ActiveProfiles("h2")
+@Import(QueryCountTestConfig.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ScanStormLoadTest {
+
+    private static final String TEACHER = "LT_T001";
+    private static final String CLASS_CODE = "LTCLASS01";
+    private static final String COURSE_ID = "KCLT000001";
+
+    private final int studentCount = Integer.getInteger("loadtest.students", 300);
+    private final int concurrency = Integer.getInteger("loadtest.concurrency", 100);
+    // 重复扫码比例，模拟学生连续点击
+    private final double duplicateRatio = Double.parseDouble(System.getProperty("loadtest.duplicateRatio", "0.1"));
+    private final long maxP99Ms = Long.getLong("loadtest.maxP99Ms", 3000);
+    private final double maxQueriesPerScan = Double.parseDouble(System.getProperty("loadtest.maxQueriesPerScan", "10"));
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private QrCodeUtil qrCodeUtil;
+
+    @Autowired
+    private QueryCountInterceptor queryCountInterceptor;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void scanStorm() throws Exception {
+        // 1. 准备数据：一个老师、一个班级、一门今天全天的课程和绑定到该班级的学生
+        List<String> students = seedData();
+
+        // 2. 构造请求：每个学生一次，另按比例追加重复扫码
+        List<ScanRequest> requests = new ArrayList<>();
+        for (String student : students) {
+            requests.add(new ScanRequest(student, jwtUtil.generateToken(student, "student", "压测学生" + student)));
+        }
+        int duplicates = (int) (students.size() * duplicateRatio);
+        for (int i = 0; i < duplicates; i++) {
+            requests.add(requests.get(i));
+        }
+        Collections.shuffle(requests);
+
+        // 3. 同时发起扫码
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newFixedThreadPool(concurrency))
+                .build();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        CountDownLatch startGate = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(requests.size());
+        long[] latencies = new long[requests.size()];
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+        queryCountInterceptor.reset();
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            ScanRequest request = requests.get(i);
+            pool.execute(() -> {
+                try {
+                    startGate.await();
+                    long start = System.nanoTime();
+                    String outcome = scan(httpClient, request);
+                    latencies[index] = System.nanoTime() - start;
+                    outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+
+        long wallStart = System.nanoTime();
+        startGate.countDown();
+        assertTrue(finished.await(5, TimeUnit.MINUTES), "压测未在5分钟内完成");
+        long wallNanos = System.nanoTime() - wallStart;
+        pool.shutdown();
+
+        // 4. 等待异步写入落库后核对记录数
+        int persisted = awaitPersisted(students.size(), Duration.ofSeconds(30));
+        long queries = queryCountInterceptor.getTotal();
+
+        // 5. 输出报告
+        Arrays.sort(latencies);
+        Map<String, Long> outcomeCounts = new TreeMap<>();
+        outcomes.forEach((k, v) -> outcomeCounts.put(k, v.sum()));
+        double queriesPerScan = (double) queries / requests.size();
+        System.out.println("========== 扫码签到压测报告 ==========");
+        System.out.printf("学生数: %d, 请求数: %d, 并发: %d%n", students.size(), requests.size(), concurrency);
+        System.out.printf("总耗时: %.1f ms, 吞吐量: %.1f req/s%n",
+                wallNanos / 1e6, requests.size() / (wallNanos / 1e9));
+        System.out.printf("延迟(ms) p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                percentileMs(latencies, 50), percentileMs(latencies, 90),
+                percentileMs(latencies, 99), latencies[latencies.length - 1] / 1e6);
+        System.out.println("结果分布: " + outcomeCounts);
+        System.out.printf("SQL执行次数: %d (%.2f 次/请求), 分类: %s%n",
+                queries, queriesPerScan, new TreeMap<>(queryCountInterceptor.getCountsByType()));
+        System.out.printf("落库签到记录: %d%n", persisted);
+        System.out.println("======================================");
+
+        // 6. 校验：每个学生恰好签到成功一次，重复扫码全部被拒绝
+        assertEquals(students.size(), outcomeCounts.getOrDefault("SUCCESS", 0L), "签到成功数与学生数不一致");
+        long rejectedDuplicates = outcomeCounts.entrySet().stream()
+                .filter(e -> e.getKey().contains("您已经签到过了"))
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+        assertEquals(duplicates, rejectedDuplicates, "重复扫码未被全部拒绝");
+        assertEquals(students.size(), persisted, "落库签到记录数与学生数不一致");
+        assertTrue(percentileMs(latencies, 99) <= maxP99Ms, "p99延迟超过阈值 " + maxP99Ms + "ms");
+        assertTrue(queriesPerScan <= maxQueriesPerScan, "每次扫码的SQL次数超过阈值 " + maxQueriesPerScan);
+    }
+
+    private List<String> seedData() {
+        jdbcTemplate.update("DELETE FROM attendance_records WHERE course_id = ?", COURSE_ID);
+        jdbcTemplate.update("DELETE FROM course_attendance_summary WHERE course_id = ?", COURSE_ID);
+        jdbcTemplate.update("DELETE FROM student_class_relations WHERE class_code = ?", CLASS_CODE);
+        jdbcTemplate.update("DELETE FROM courses WHERE course_id = ?", COURSE_ID);
+        jdbcTemplate.update("DELETE FROM classes WHERE class_code = ?", CLASS_CODE);
+        jdbcTemplate.update("DELETE FROM users WHERE username LIKE 'LT\\_%'");
+
+        jdbcTemplate.update("INSERT INTO users (username, name, role, password_set) VALUES (?, ?, 'teacher', 0)",
+                TEACHER, "压测老师");
+        jdbcTemplate.update("INSERT INTO classes (class_code, class_name, verification_code, student_count) VALUES (?, ?, ?, ?)",
+                CLASS_CODE, "压测班级", "123456", studentCount);
+        jdbcTemplate.update("INSERT INTO courses (course_id, course_name, teacher_username, class_code, location, course_date, time_slot) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                COURSE_ID, "压测课程", TEACHER, CLASS_CODE, "压测教室", LocalDate.now().toString(), "00:00-23:59");
+
+        List<String> students = new ArrayList<>(studentCount);
+        List<Object[]> userRows = new ArrayList<>(studentCount);
+        List<Object[]> relationRows = new ArrayList<>(studentCount);
+        for (int i = 0; i < studentCount; i++) {
+            String username = String.format("LT_S%05d", i);
+            students.add(username);
+            userRows.add(new Object[]{username, "压测学生" + i});
+            relationRows.add(new Object[]{username, CLASS_CODE});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, name, role, password_set) VALUES (?, ?, 'student', 0)", userRows);
+        jdbcTemplate.batchUpdate("INSERT INTO student_class_relations (student_username, class_code) VALUES (?, ?)", relationRows);
+        return students;
+    }
+
+    /**
+     * 发起一次扫码，返回 SUCCESS、HTTP状态码或接口返回的错误信息
+     */
+    private String scan(HttpClient httpClient, ScanRequest request) {
+        try {
+            // 每次扫码使用当前时间生成二维码，与老师端轮换的二维码一致
+            String qrData = qrCodeUtil.generateAttendanceQrContent(COURSE_ID, System.currentTimeMillis() / 1000);
+            String body = objectMapper.writeValueAsString(Map.of("qrData", qrData));
+            HttpRequest httpRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:" + port + "/api/student/attendance/scan"))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .header("Authorization", "Bearer " + request.token)
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return "HTTP " + response.statusCode();
+            }
+            JsonNode json = objectMapper.readTree(response.body());
+            return json.path("code").asInt() == 200 ? "SUCCESS" : json.path("message").asText();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "INTERRUPTED";
+        } catch (Exception e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+
+    private int awaitPersisted(int expected, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        int persisted;
+        do {
+            persisted = countPersisted();
+            if (persisted >= expected) {
+                break;
+            }
+            Thread.sleep(100);
+        } while (System.nanoTime() < deadline);
+        return persisted;
+    }
+
+    private int countPersisted() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM attendance_records WHERE course_id = ? AND is_deleted = 0", Integer.class, COURSE_ID);
+        return count == null ? 0 : count;
+    }
+
+    private static double percentileMs(long[] sortedNanos, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(index, sortedNanos.length - 1))] / 1e6;
+    }
+
+    private static final class ScanRequest {
+        private final String student;
+        private final String token;
+
+        private ScanRequest(String student, String token) {
+            this.student = student;
+            this.token = token;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.signlab1.service;
+
+import com.signlab1.dto.AttendanceRecordDto;
+import com.signlab1.support.QueryCountTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 老师修改签到状态后，学生签到记录缓存在调用返回时即反映修改结果
+ */
+@ActiveProfiles("h2")
+@Import(QueryCountTestConfig.class)
+@SpringBootTest(properties = "summary.reconcile.backfill-on-startup=false")
+class AttendanceOverrideVisibilityTest {
+
+    private static final String TEACHER = "OV_T001";
+    private static final String CLASS_CODE = "OVCLASS01";
+    private static final String STUDENT = "OV_S001";
+    private static final String COURSE_ID = "KCOV000001";
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private TeacherService teacherService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seedData() {
+        jdbcTemplate.update("DELETE FROM attendance_records WHERE course_id = ?", COURSE_ID);
+        jdbcTemplate.update("DELETE FROM course_attendance_summary WHERE course_id = ?", COURSE_ID);
+        jdbcTemplate.update("DELETE FROM student_class_relations WHERE student_username = ?", STUDENT);
+        jdbcTemplate.update("DELETE FROM courses WHERE course_id = ?", COURSE_ID);
+        jdbcTemplate.update("DELETE FROM classes WHERE class_code = ?", CLASS_CODE);
+        jdbcTemplate.update("DELETE FROM users WHERE username LIKE 'OV\\_%'");
+
+        jdbcTemplate.update("INSERT INTO users (username, name, role, password_set) VALUES (?, ?, 'teacher', 0)",
+                TEACHER, "测试老师");
+        jdbcTemplate.update("INSERT INTO users (username, name, role, password_set) VALUES (?, ?, 'student', 0)",
+                STUDENT, "测试学生");
+        jdbcTemplate.update("INSERT INTO classes (class_code, class_name, verification_code, student_count) VALUES (?, ?, ?, ?)",
+                CLASS_CODE, "测试班级", "123456", 1);
+        jdbcTemplate.update("INSERT INTO student_class_relations (student_username, class_code) VALUES (?, ?)",
+                STUDENT, CLASS_CODE);
+        jdbcTemplate.update("INSERT INTO courses (course_id, course_name, teacher_username, class_code, "
+                + "location, course_date, time_slot) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                COURSE_ID, "测试课程", TEACHER, CLASS_CODE, "测试教室",
+                LocalDate.now().minusDays(1).toString(), "08:00-09:40");
+    }
+
+    @Test
+    void overrideIsVisibleImmediately() {
+        // 预热缓存
+        assertTrue(studentService.getAttendanceRecords(STUDENT).isEmpty());
+
+        teacherService.updateStudentAttendance(COURSE_ID, STUDENT, 1);
+        List<AttendanceRecordDto> records = studentService.getAttendanceRecords(STUDENT);
+        assertEquals(1, records.size());
+        assertEquals(COURSE_ID, records.get(0).getCourseId());
+
+        teacherService.updateStudentAttendance(COURSE_ID, STUDENT, 0);
+        assertTrue(studentService.getAttendanceRecords(STUDENT).isEmpty());
+    }
+}
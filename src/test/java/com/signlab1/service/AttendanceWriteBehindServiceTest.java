@@ -0,0 +1,95 @@
+package com.signlab1.service;
+
+import com.signlab1.entity.AttendanceRecord;
+import com.signlab1.event.AttendanceChangedEvent;
+import com.signlab1.mapper.AttendanceRecordMapper;
+import com.signlab1.mapper.CourseAttendanceSummaryMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 签到异步写入失败补偿测试：签到最终未落库时撤销花名册标记并发布取消签到事件
+ */
+class AttendanceWriteBehindServiceTest {
+
+    private static final String COURSE_ID = "KCWB000001";
+    private static final String STUDENT = "WB_S001";
+
+    private AttendanceRecordMapper attendanceRecordMapper;
+    private CourseRosterService courseRosterService;
+    private ApplicationEventPublisher eventPublisher;
+    private AttendanceWriteBehindService writeBehindService;
+
+    @BeforeEach
+    void setUp() {
+        attendanceRecordMapper = mock(AttendanceRecordMapper.class);
+        courseRosterService = mock(CourseRosterService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        CourseAttendanceSummaryService summaryService = new CourseAttendanceSummaryService(
+                mock(CourseAttendanceSummaryMapper.class), attendanceRecordMapper, courseRosterService, meterRegistry);
+        writeBehindService = new AttendanceWriteBehindService(
+                summaryService, courseRosterService, eventPublisher, meterRegistry);
+        ReflectionTestUtils.setField(writeBehindService, "enabled", true);
+        ReflectionTestUtils.setField(writeBehindService, "queueCapacity", 16);
+        ReflectionTestUtils.setField(writeBehindService, "flushSize", 8);
+        ReflectionTestUtils.setField(writeBehindService, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(writeBehindService, "offerTimeoutMs", 50L);
+        writeBehindService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writeBehindService.shutdown();
+    }
+
+    @Test
+    void failedRecordIsCompensated() throws InterruptedException {
+        when(attendanceRecordMapper.batchInsertIgnore(anyList())).thenThrow(new RuntimeException("模拟数据库写入失败"));
+
+        AttendanceRecord record = new AttendanceRecord();
+        record.setCourseId(COURSE_ID);
+        record.setStudentUsername(STUDENT);
+        record.setAttendanceTime(LocalDateTime.now());
+        record.setAttendanceStatus(1);
+        record.setIsCrossClass(0);
+        assertTrue(writeBehindService.submit(record));
+        assertTrue(writeBehindService.hasPendingForStudent(STUDENT));
+
+        // 批量写入和逐条重试都失败后撤销花名册标记
+        verify(courseRosterService, timeout(2000)).updateAttendance(COURSE_ID, STUDENT, false);
+        ArgumentCaptor<Object> eventCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, timeout(2000)).publishEvent(eventCaptor.capture());
+        AttendanceChangedEvent event = (AttendanceChangedEvent) eventCaptor.getValue();
+        assertEquals(COURSE_ID, event.getCourseId());
+        assertEquals(STUDENT, event.getStudentCode());
+        assertFalse(event.isAttended());
+        assertNull(event.getAttendanceTime());
+
+        // 不再视为待写入，学生可以重新扫码
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (writeBehindService.isPending(COURSE_ID, STUDENT) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(writeBehindService.isPending(COURSE_ID, STUDENT));
+        assertFalse(writeBehindService.hasPendingForStudent(STUDENT));
+    }
+}
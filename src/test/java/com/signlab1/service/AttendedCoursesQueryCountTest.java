@@ -0,0 +1,156 @@
+package com.signlab1.service;
+
+import com.signlab1.dto.AttendedCourseDto;
+import com.signlab1.support.QueryCountInterceptor;
+import com.signlab1.support.QueryCountTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 已签到课程查询回归测试：SQL次数不随学生已签到的课程数增长
+ */
+@ActiveProfiles("h2")
+@Import(QueryCountTestConfig.class)
+@SpringBootTest(properties = "summary.reconcile.backfill-on-startup=false")
+class AttendedCoursesQueryCountTest {
+
+    private static final String TEACHER = "AC_T001";
+    private static final String CLASS_CODE = "ACCLASS01";
+    private static final String OTHER_CLASS_CODE = "ACCLASS02";
+    private static final String FEW_COURSES_STUDENT = "AC_S001";
+    private static final String MANY_COURSES_STUDENT = "AC_S002";
+    private static final String LEGACY_STUDENT = "AC_S003";
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private QueryCountInterceptor queryCountInterceptor;
+
+    @BeforeEach
+    void seedData() {
+        jdbcTemplate.update("DELETE FROM attendance_records WHERE student_username LIKE 'AC\\_%'");
+        jdbcTemplate.update("DELETE FROM student_class_relations WHERE student_username LIKE 'AC\\_%'");
+        jdbcTemplate.update("DELETE FROM courses WHERE course_id LIKE 'KCAC%'");
+        jdbcTemplate.update("DELETE FROM classes WHERE class_code LIKE 'ACCLASS%'");
+        jdbcTemplate.update("DELETE FROM users WHERE username LIKE 'AC\\_%'");
+
+        jdbcTemplate.update("INSERT INTO users (username, name, role, password_set) VALUES (?, ?, 'teacher', 0)",
+                TEACHER, "测试老师");
+        for (String student : List.of(FEW_COURSES_STUDENT, MANY_COURSES_STUDENT, LEGACY_STUDENT)) {
+            jdbcTemplate.update("INSERT INTO users (username, name, role, password_set) VALUES (?, ?, 'student', 0)",
+                    student, "测试学生" + student);
+            jdbcTemplate.update("INSERT INTO student_class_relations (student_username, class_code) VALUES (?, ?)",
+                    student, CLASS_CODE);
+        }
+        jdbcTemplate.update("INSERT INTO classes (class_code, class_name, verification_code, student_count) VALUES (?, ?, ?, ?)",
+                CLASS_CODE, "测试班级", "123456", 3);
+        jdbcTemplate.update("INSERT INTO classes (class_code, class_name, verification_code, student_count) VALUES (?, ?, ?, ?)",
+                OTHER_CLASS_CODE, "其他班级", "654321", 0);
+
+        // 第一门课程属于其他班级（跨班签到），其余属于本班
+        List<Object[]> courseRows = new ArrayList<>();
+        LocalDate firstDate = LocalDate.now().minusDays(40);
+        for (int i = 0; i < 30; i++) {
+            courseRows.add(new Object[]{courseId(i), "测试课程" + i, TEACHER, i == 0 ? OTHER_CLASS_CODE : CLASS_CODE,
+                    "测试教室", firstDate.plusDays(i).toString(), "08:00-09:40"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO courses (course_id, course_name, teacher_username, class_code, "
+                + "location, course_date, time_slot) VALUES (?, ?, ?, ?, ?, ?, ?)", courseRows);
+
+        insertAttendance(FEW_COURSES_STUDENT, 2, true);
+        insertAttendance(MANY_COURSES_STUDENT, 30, true);
+        insertAttendance(LEGACY_STUDENT, 30, false);
+    }
+
+    @Test
+    void queryCountDoesNotDependOnCourseCount() {
+        // 预热引用数据缓存，只统计稳定状态下的SQL次数
+        studentService.getAttendedCourses(FEW_COURSES_STUDENT);
+        studentService.getAttendedCourses(MANY_COURSES_STUDENT);
+
+        queryCountInterceptor.reset();
+        List<AttendedCourseDto> few = studentService.getAttendedCourses(FEW_COURSES_STUDENT);
+        long fewQueries = queryCountInterceptor.getTotal();
+
+        queryCountInterceptor.reset();
+        List<AttendedCourseDto> many = studentService.getAttendedCourses(MANY_COURSES_STUDENT);
+        long manyQueries = queryCountInterceptor.getTotal();
+
+        assertEquals(2, few.size());
+        assertEquals(30, many.size());
+        assertEquals(1, fewQueries, "已分类签到记录应只需一条聚合查询");
+        assertEquals(fewQueries, manyQueries, "SQL次数随已签到课程数增长");
+    }
+
+    @Test
+    void legacyRecordsUseBoundedQueries() {
+        studentService.getAttendedCourses(LEGACY_STUDENT);
+
+        queryCountInterceptor.reset();
+        List<AttendedCourseDto> courses = studentService.getAttendedCourses(LEGACY_STUDENT);
+
+        assertEquals(30, courses.size());
+        assertTrue(queryCountInterceptor.getTotal() <= 3, "未回填班级归属的记录查询次数超过上限");
+        for (AttendedCourseDto course : courses) {
+            boolean crossClass = course.getCourseId().equals(courseId(0));
+            assertEquals(crossClass, course.getIsCrossClass());
+            assertEquals(crossClass ? "其他班级" : "测试班级", course.getClassName());
+            assertEquals("测试老师", course.getTeacherName());
+            assertEquals("08:00", course.getStartTime());
+            assertEquals("09:40", course.getEndTime());
+        }
+    }
+
+    @Test
+    void storedClassificationIsReturned() {
+        List<AttendedCourseDto> courses = studentService.getAttendedCourses(MANY_COURSES_STUDENT);
+
+        // 按最近签到时间降序
+        for (int i = 1; i < courses.size(); i++) {
+            assertFalse(courses.get(i).getAttendanceTime().isAfter(courses.get(i - 1).getAttendanceTime()));
+        }
+        for (AttendedCourseDto course : courses) {
+            boolean crossClass = course.getCourseId().equals(courseId(0));
+            assertEquals(crossClass, course.getIsCrossClass());
+            assertEquals(crossClass ? "其他班级" : "测试班级", course.getClassName());
+            assertEquals(1, course.getAttendanceCount());
+        }
+    }
+
+    /**
+     * 为学生写入前 courseCount 门课程的签到记录
+     * @param classified 是否写入班级归属，false 模拟升级前尚未回填的历史记录
+     */
+    private void insertAttendance(String student, int courseCount, boolean classified) {
+        List<Object[]> rows = new ArrayList<>();
+        LocalDateTime firstTime = LocalDateTime.now().minusDays(40).withHour(8).withMinute(5).withSecond(0).withNano(0);
+        for (int i = 0; i < courseCount; i++) {
+            rows.add(new Object[]{courseId(i), student, firstTime.plusDays(i),
+                    classified ? CLASS_CODE : null, classified ? (i == 0 ? 1 : 0) : null});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO attendance_records (course_id, student_username, attendance_time, "
+                + "attendance_status, ip_address, class_code, is_cross_class) VALUES (?, ?, ?, 1, '10.0.0.1', ?, ?)", rows);
+    }
+
+    private static String courseId(int index) {
+        return String.format("KCAC%06d", index);
+    }
+}
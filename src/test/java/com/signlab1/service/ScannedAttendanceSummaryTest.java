@@ -0,0 +1,102 @@
+package com.signlab1.service;
+
+import com.signlab1.entity.AttendanceRecord;
+import com.signlab1.support.QueryCountTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 扫码签到统计回归测试：重复提交已存在的有效签到记录时课程统计不变
+ */
+@ActiveProfiles("h2")
+@Import(QueryCountTestConfig.class)
+@SpringBootTest(properties = "summary.reconcile.backfill-on-startup=false")
+class ScannedAttendanceSummaryTest {
+
+    private static final String TEACHER = "SU_T001";
+    private static final String CLASS_CODE = "SUCLASS01";
+    private static final String STUDENT = "SU_S001";
+    private static final String COURSE_ID = "KCSU000001";
+
+    @Autowired
+    private CourseAttendanceSummaryService courseAttendanceSummaryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seedData() {
+        jdbcTemplate.update("DELETE FROM attendance_records WHERE course_id = ?", COURSE_ID);
+        jdbcTemplate.update("DELETE FROM course_attendance_summary WHERE course_id = ?", COURSE_ID);
+        jdbcTemplate.update("DELETE FROM student_class_relations WHERE student_username = ?", STUDENT);
+        jdbcTemplate.update("DELETE FROM courses WHERE course_id = ?", COURSE_ID);
+        jdbcTemplate.update("DELETE FROM classes WHERE class_code = ?", CLASS_CODE);
+        jdbcTemplate.update("DELETE FROM users WHERE username LIKE 'SU\\_%'");
+
+        jdbcTemplate.update("INSERT INTO users (username, name, role, password_set) VALUES (?, ?, 'teacher', 0)",
+                TEACHER, "测试老师");
+        jdbcTemplate.update("INSERT INTO users (username, name, role, password_set) VALUES (?, ?, 'student', 0)",
+                STUDENT, "测试学生");
+        jdbcTemplate.update("INSERT INTO classes (class_code, class_name, verification_code, student_count) VALUES (?, ?, ?, ?)",
+                CLASS_CODE, "测试班级", "123456", 1);
+        jdbcTemplate.update("INSERT INTO student_class_relations (student_username, class_code) VALUES (?, ?)",
+                STUDENT, CLASS_CODE);
+        jdbcTemplate.update("INSERT INTO courses (course_id, course_name, teacher_username, class_code, "
+                + "location, course_date, time_slot) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                COURSE_ID, "测试课程", TEACHER, CLASS_CODE, "测试教室", LocalDate.now().toString(), "08:00-09:40");
+    }
+
+    @Test
+    void duplicateLiveRecordIsNotCountedTwice() {
+        assertEquals(0, attendedCount());
+
+        courseAttendanceSummaryService.saveScannedAttendance(List.of(scannedRecord()));
+        assertEquals(1, attendedCount());
+
+        // 已存在有效记录时再次提交，记录不被覆盖，统计不变
+        courseAttendanceSummaryService.saveScannedAttendance(List.of(scannedRecord()));
+        assertEquals(1, attendedCount());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM attendance_records WHERE course_id = ? AND is_deleted = 0",
+                Integer.class, COURSE_ID));
+    }
+
+    @Test
+    void revivedRecordIsCounted() {
+        jdbcTemplate.update("INSERT INTO attendance_records (course_id, student_username, attendance_time, "
+                + "attendance_status, ip_address, class_code, is_cross_class, is_deleted) "
+                + "VALUES (?, ?, ?, 1, '10.0.0.1', ?, 0, 1)", COURSE_ID, STUDENT, LocalDateTime.now().minusHours(1), CLASS_CODE);
+        assertEquals(0, attendedCount());
+
+        // 恢复已逻辑删除的记录计为一次新签到
+        courseAttendanceSummaryService.saveScannedAttendance(List.of(scannedRecord()));
+        assertEquals(1, attendedCount());
+    }
+
+    private int attendedCount() {
+        return courseAttendanceSummaryService.getSummary(COURSE_ID).getAttendedCount();
+    }
+
+    private static AttendanceRecord scannedRecord() {
+        AttendanceRecord record = new AttendanceRecord();
+        record.setCourseId(COURSE_ID);
+        record.setStudentUsername(STUDENT);
+        record.setAttendanceTime(LocalDateTime.now());
+        record.setAttendanceStatus(1);
+        record.setIpAddress("10.0.0.1");
+        record.setClassCode(CLASS_CODE);
+        record.setIsCrossClass(0);
+        return record;
+    }
+}
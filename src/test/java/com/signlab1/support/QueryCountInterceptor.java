@@ -0,0 +1,58 @@
+package com.signlab1.support;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Connection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL执行次数统计（测试用），按语句类型分别计数
+ */
+@Intercepts({@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})})
+public class QueryCountInterceptor implements Interceptor {
+
+    private final AtomicLong total = new AtomicLong();
+    private final Map<String, LongAdder> byType = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        StatementHandler handler = (StatementHandler) invocation.getTarget();
+        total.incrementAndGet();
+        byType.computeIfAbsent(statementType(handler.getBoundSql().getSql()), k -> new LongAdder()).increment();
+        return invocation.proceed();
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * 按语句类型（SELECT/INSERT/UPDATE/DELETE）统计的次数
+     */
+    public Map<String, Long> getCountsByType() {
+        Map<String, Long> counts = new ConcurrentHashMap<>();
+        byType.forEach((type, count) -> counts.put(type, count.sum()));
+        return counts;
+    }
+
+    public void reset() {
+        total.set(0);
+        byType.clear();
+    }
+
+    private static String statementType(String sql) {
+        String trimmed = sql.trim();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? "OTHER" : trimmed.substring(0, end).toUpperCase();
+    }
+}
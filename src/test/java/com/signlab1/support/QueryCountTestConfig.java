@@ -0,0 +1,16 @@
+package com.signlab1.support;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * 注册SQL计数拦截器，MyBatis自动配置会收集容器中的Interceptor
+ */
+@TestConfiguration
+public class QueryCountTestConfig {
+
+    @Bean
+    public QueryCountInterceptor queryCountInterceptor() {
+        return new QueryCountInterceptor();
+    }
+}
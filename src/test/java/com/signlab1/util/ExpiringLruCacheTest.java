@@ -0,0 +1,67 @@
+package com.signlab1.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 缓存失效与加载写回测试
+ */
+class ExpiringLruCacheTest {
+
+    @Test
+    void invalidatingOtherKeyKeepsLoadResult() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10, 60);
+
+        String loaded = cache.get("a", key -> {
+            cache.invalidate("b");
+            return "A";
+        });
+
+        assertEquals("A", loaded);
+        assertEquals("A", cache.get("a"));
+    }
+
+    @Test
+    void invalidatingSameKeyDiscardsLoadResult() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10, 60);
+
+        String loaded = cache.get("a", key -> {
+            cache.invalidate("a");
+            return "stale";
+        });
+
+        assertEquals("stale", loaded);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void bulkInvalidationDiscardsAllLoadResults() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10, 60);
+        long generation = cache.currentGeneration();
+
+        cache.invalidateIf(key -> key.startsWith("x"));
+        cache.putIfGeneration("a", "A", generation);
+
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void droppedInvalidationRecordsStillDiscardOlderLoads() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(2, 60);
+        long generation = cache.currentGeneration();
+
+        // 失效记录超过容量后最早的记录被丢弃，早于它发起的加载按已失效处理
+        cache.invalidateAll(List.of("a", "b", "c"));
+        cache.putIfGeneration("a", "A", generation);
+        cache.putIfGeneration("d", "D", generation);
+
+        assertNull(cache.get("a"));
+        assertNull(cache.get("d"));
+        cache.putIfGeneration("d", "D", cache.currentGeneration());
+        assertEquals("D", cache.get("d"));
+    }
+}
@@ -0,0 +1,162 @@
+package com.signlab1.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 签到二维码令牌签名与解析测试
+ */
+class QrCodeUtilTest {
+
+    private static final String SECRET = "unit-test-only-qr-token-secret-0123456789";
+    private static final String COURSE_ID = "KC2024000001";
+
+    private QrCodeUtil qrCodeUtil;
+
+    @BeforeEach
+    void setUp() {
+        qrCodeUtil = newQrCodeUtil(false);
+    }
+
+    @Test
+    void roundTrip() {
+        long timestamp = System.currentTimeMillis() / 1000;
+
+        QrCodeUtil.AttendanceQrToken single = qrCodeUtil.parseAttendanceQrToken(
+                qrCodeUtil.generateAttendanceQrContent(COURSE_ID, timestamp));
+        assertEquals(COURSE_ID, single.getCourseId());
+        assertEquals(timestamp, single.getTimestamp());
+        assertFalse(single.isMultiClass());
+
+        QrCodeUtil.AttendanceQrToken multi = qrCodeUtil.parseAttendanceQrToken(
+                qrCodeUtil.generateMultiClassAttendanceQrContent(COURSE_ID, timestamp));
+        assertEquals(COURSE_ID, multi.getCourseId());
+        assertTrue(multi.isMultiClass());
+    }
+
+    @Test
+    void flippedBitIsRejected() {
+        byte[] token = decode(qrCodeUtil.generateAttendanceQrContent(COURSE_ID, System.currentTimeMillis() / 1000));
+
+        // 签名中的任意一位被修改
+        byte[] tampered = token.clone();
+        tampered[tampered.length - 1] ^= 0x01;
+        assertRejected(encode(tampered));
+
+        // 课程ID被修改，签名不变
+        tampered = token.clone();
+        tampered[7] ^= 0x01;
+        assertRejected(encode(tampered));
+    }
+
+    @Test
+    void truncatedOrOverLongTokenIsRejected() {
+        String token = qrCodeUtil.generateAttendanceQrContent(COURSE_ID, System.currentTimeMillis() / 1000);
+
+        for (int i = 1; i < token.length(); i++) {
+            assertRejected(token.substring(0, i));
+        }
+        assertRejected(token + "AAAA");
+        assertRejected(token + "A".repeat(300));
+        assertRejected("");
+        assertRejected("二维码");
+    }
+
+    @Test
+    void wrongVersionIsRejected() {
+        byte[] token = decode(qrCodeUtil.generateAttendanceQrContent(COURSE_ID, System.currentTimeMillis() / 1000));
+
+        // 版本号错误但签名正确
+        token[0] = 2;
+        int bodyLength = token.length - 8;
+        byte[] tag = hmac(token, bodyLength);
+        System.arraycopy(tag, 0, token, bodyLength, 8);
+        assertRejected(encode(token));
+    }
+
+    @Test
+    void expiredTimestampIsInvalid() {
+        long now = System.currentTimeMillis() / 1000;
+
+        QrCodeUtil.AttendanceQrToken expired = qrCodeUtil.parseAttendanceQrToken(
+                qrCodeUtil.generateAttendanceQrContent(COURSE_ID, now - 600));
+        assertFalse(qrCodeUtil.isQrCodeValid(expired.getTimestamp(), 300));
+        assertEquals(0, qrCodeUtil.getRemainingTime(expired.getTimestamp(), 300));
+
+        QrCodeUtil.AttendanceQrToken future = qrCodeUtil.parseAttendanceQrToken(
+                qrCodeUtil.generateAttendanceQrContent(COURSE_ID, now + 600));
+        assertFalse(qrCodeUtil.isQrCodeValid(future.getTimestamp(), 300));
+
+        QrCodeUtil.AttendanceQrToken fresh = qrCodeUtil.parseAttendanceQrToken(
+                qrCodeUtil.generateAttendanceQrContent(COURSE_ID, now));
+        assertTrue(qrCodeUtil.isQrCodeValid(fresh.getTimestamp(), 300));
+    }
+
+    @Test
+    void legacyPayloadRequiresOptIn() {
+        long timestamp = System.currentTimeMillis() / 1000;
+        String legacy = Base64.getEncoder().encodeToString(
+                (COURSE_ID + "|T001|MULTI|" + timestamp + "|1234").getBytes(StandardCharsets.UTF_8));
+
+        assertRejected(legacy);
+
+        QrCodeUtil.AttendanceQrToken token = newQrCodeUtil(true).parseAttendanceQrToken(legacy);
+        assertEquals(COURSE_ID, token.getCourseId());
+        assertEquals(timestamp, token.getTimestamp());
+        assertTrue(token.isMultiClass());
+    }
+
+    @Test
+    void shortSecretIsRefused() {
+        QrCodeUtil util = new QrCodeUtil();
+        ReflectionTestUtils.setField(util, "tokenSecret", "too-short");
+        assertThrows(IllegalStateException.class, util::init);
+    }
+
+    /**
+     * 只允许抛出统一的“二维码无效”异常，不泄漏解析过程中的其他异常
+     */
+    private void assertRejected(String token) {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> qrCodeUtil.parseAttendanceQrToken(token));
+        assertEquals(RuntimeException.class, e.getClass());
+        assertEquals("二维码无效", e.getMessage());
+    }
+
+    private static QrCodeUtil newQrCodeUtil(boolean acceptLegacy) {
+        QrCodeUtil util = new QrCodeUtil();
+        ReflectionTestUtils.setField(util, "tokenSecret", SECRET);
+        ReflectionTestUtils.setField(util, "acceptLegacy", acceptLegacy);
+        util.init();
+        return util;
+    }
+
+    private static byte[] hmac(byte[] data, int length) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update(data, 0, length);
+            return mac.doFinal();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] decode(String token) {
+        return Base64.getUrlDecoder().decode(token);
+    }
+
+    private static String encode(byte[] token) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+}
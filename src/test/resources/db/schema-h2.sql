@@ -0,0 +1,140 @@
+-- H2（MySQL兼容模式）测试库表结构，与 database/signlab1_init.sql 保持一致
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL UNIQUE,
+    name VARCHAR(100) NOT NULL,
+    password VARCHAR(255),
+    role VARCHAR(20) NOT NULL,
+    password_set TINYINT DEFAULT 0,
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_deleted TINYINT DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS classes (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    class_code VARCHAR(20) NOT NULL UNIQUE,
+    class_name VARCHAR(100) NOT NULL,
+    verification_code VARCHAR(10) NOT NULL,
+    student_count INT DEFAULT 0,
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_deleted TINYINT DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS courses (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    course_id VARCHAR(20) NOT NULL UNIQUE,
+    course_name VARCHAR(200) NOT NULL,
+    teacher_username VARCHAR(50) NOT NULL,
+    class_code VARCHAR(20) NOT NULL,
+    location VARCHAR(100),
+    course_date DATE NOT NULL,
+    time_slot VARCHAR(20) NOT NULL,
+    week_number INT,
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_deleted TINYINT DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS student_class_relations (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    student_username VARCHAR(50) NOT NULL,
+    class_code VARCHAR(20) NOT NULL,
+    bind_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    is_deleted TINYINT DEFAULT 0,
+    CONSTRAINT uk_student_class UNIQUE (student_username, class_code)
+);
+
+CREATE TABLE IF NOT EXISTS attendance_records (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    course_id VARCHAR(20) NOT NULL,
+    student_username VARCHAR(50) NOT NULL,
+    attendance_time DATETIME NOT NULL,
+    attendance_status TINYINT DEFAULT 1,
+    ip_address VARCHAR(50),
+    class_code VARCHAR(20),
+    is_cross_class TINYINT,
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_deleted TINYINT DEFAULT 0,
+    CONSTRAINT uk_course_student UNIQUE (course_id, student_username)
+);
+
+CREATE TABLE IF NOT EXISTS multi_class_courses (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    course_id VARCHAR(20) NOT NULL,
+    class_code VARCHAR(20) NOT NULL,
+    teacher_username VARCHAR(50) NOT NULL,
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_deleted TINYINT DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS course_attendance_summary (
+    course_id VARCHAR(20) PRIMARY KEY,
+    roster_size INT NOT NULL DEFAULT 0,
+    attended_count INT NOT NULL DEFAULT 0,
+    cross_class_count INT NOT NULL DEFAULT 0,
+    manual_count INT NOT NULL DEFAULT 0,
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS class_week_attendance_rollup (
+    class_code VARCHAR(20) NOT NULL,
+    week_start DATE NOT NULL,
+    session_count INT NOT NULL DEFAULT 0,
+    expected_count INT NOT NULL DEFAULT 0,
+    attended_count INT NOT NULL DEFAULT 0,
+    update_time DATETIME NOT NULL,
+    PRIMARY KEY (class_code, week_start)
+);
+
+CREATE TABLE IF NOT EXISTS student_course_attendance_rollup (
+    student_username VARCHAR(50) NOT NULL,
+    course_name VARCHAR(200) NOT NULL,
+    session_count INT NOT NULL DEFAULT 0,
+    attended_count INT NOT NULL DEFAULT 0,
+    update_time DATETIME NOT NULL,
+    PRIMARY KEY (student_username, course_name)
+);
+
+CREATE TABLE IF NOT EXISTS class_photos (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    course_id VARCHAR(20) NOT NULL,
+    student_username VARCHAR(50) NOT NULL,
+    photo_name VARCHAR(200) NOT NULL,
+    photo_path VARCHAR(500) NOT NULL,
+    remark TEXT,
+    file_size BIGINT,
+    upload_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_deleted TINYINT DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS student_documents (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    course_id VARCHAR(20) NOT NULL,
+    student_username VARCHAR(50) NOT NULL,
+    document_name VARCHAR(200) NOT NULL,
+    document_path VARCHAR(500) NOT NULL,
+    file_size BIGINT,
+    export_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_deleted TINYINT DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS idx_courses_teacher_username ON courses(teacher_username);
+CREATE INDEX IF NOT EXISTS idx_courses_class_code ON courses(class_code);
+CREATE INDEX IF NOT EXISTS idx_courses_course_date ON courses(course_date);
+CREATE INDEX IF NOT EXISTS idx_courses_teacher_date ON courses(teacher_username, course_date, time_slot, course_id);
+CREATE INDEX IF NOT EXISTS idx_attendance_course_id ON attendance_records(course_id);
+CREATE INDEX IF NOT EXISTS idx_attendance_student_username ON attendance_records(student_username);
+CREATE INDEX IF NOT EXISTS idx_attendance_course_cross ON attendance_records(course_id, is_cross_class);
+CREATE INDEX IF NOT EXISTS idx_attendance_class_code ON attendance_records(class_code);
+CREATE INDEX IF NOT EXISTS idx_attendance_student_time ON attendance_records(student_username, attendance_time);
+CREATE INDEX IF NOT EXISTS idx_relations_class_code ON student_class_relations(class_code, is_deleted, student_username);
+CREATE INDEX IF NOT EXISTS idx_multi_class_course_id ON multi_class_courses(course_id);